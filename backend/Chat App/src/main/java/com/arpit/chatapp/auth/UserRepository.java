@@ -1,9 +1,16 @@
 package com.arpit.chatapp.auth;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByEmail(String email);
+
+    // Bulk identity lookup — never pulls password hashes
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ 'name': 1, 'email': 1 }")
+    List<User> findIdentitiesByIdIn(Collection<String> ids);
 }
@@ -1,18 +1,31 @@
 package com.arpit.chatapp.chat;
 
+import com.arpit.chatapp.security.CurrentUser;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/users/me")
 public class ChatController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final ChatService chatService;
+    private final SyncService syncService;
+    private final ConversationTransferService transferService;
 
-    public ChatController(ChatService chatService) {
+    public ChatController(
+            ChatService chatService,
+            SyncService syncService,
+            ConversationTransferService transferService
+    ) {
         this.chatService = chatService;
+        this.syncService = syncService;
+        this.transferService = transferService;
     }
 
     // inside ChatController.java
@@ -22,9 +35,7 @@ public class ChatController {
             @PathVariable String conversationId,
             HttpServletRequest request
     ) {
-        String userId = (String) request.getAttribute("userId"); // Or however you get current user
-        System.out.println("for read" + userId);
-        chatService.markMessagesAsRead(conversationId, userId);
+        chatService.markMessagesAsRead(conversationId, CurrentUser.of(request));
     }
 
     // ✅ SEND MESSAGE
@@ -33,7 +44,7 @@ public class ChatController {
             HttpServletRequest request,
             @RequestBody SendMessageRequest body
     ) {
-        String senderId = (String) request.getAttribute("myUserId");
+        String senderId = CurrentUser.of(request);
 
 //        System.out.println("SENDER ID = " + senderId);
 //        System.out.println("RECEIVER ID = " + body.getReceiverId());
@@ -42,7 +53,8 @@ public class ChatController {
         return chatService.sendMessage(
                 senderId,
                 body.getReceiverId(),
-                body.getContent()
+                body.getContent(),
+                body.getClientMessageId()
         );
     }
 
@@ -56,14 +68,46 @@ public class ChatController {
 
     // ✅ GET ALL MESSAGES WITH A FRIEND
 
+    // ?before=<nextCursor> pages back in time, ?after=<prevCursor> catches up
     @GetMapping("/messages/{friendUserId}")
-    public List<MessageResponse> getMessagesWithFriend(
-            @RequestParam String myUserId,
-            @PathVariable String friendUserId
+    public MessagePageResponse getMessagesWithFriend(
+            @PathVariable String friendUserId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            HttpServletRequest request
     ) {
-        System.out.println("SENDER ID = " + myUserId);
-        return chatService.getMessagesWithUser(myUserId, friendUserId);
+        return chatService.getMessagesWithUser(CurrentUser.of(request), friendUserId, before, after, limit);
     }
 
+    // ✅ DELTA SYNC (reconnect: everything after ?since=, then resume from the returned seq)
+    @GetMapping("/sync")
+    public SyncResponse sync(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "200") int limit,
+            HttpServletRequest request
+    ) {
+        return syncService.sync(CurrentUser.of(request), since, limit);
+    }
 
+    // ✅ EXPORT / IMPORT (NDJSON, streamed: one message per line)
+    @GetMapping(value = "/messages/{friendUserId}/export", produces = NDJSON)
+    public StreamingResponseBody exportConversation(
+            @PathVariable String friendUserId,
+            HttpServletRequest request
+    ) {
+        String userId = CurrentUser.of(request);
+        return out -> transferService.exportConversation(userId, friendUserId, out);
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON)
+    public StreamingResponseBody exportAccount(HttpServletRequest request) {
+        String userId = CurrentUser.of(request);
+        return out -> transferService.exportAccount(userId, out);
+    }
+
+    @PostMapping(value = "/import", consumes = NDJSON)
+    public ImportResult importMessages(HttpServletRequest request) throws IOException {
+        return transferService.importMessages(CurrentUser.of(request), request.getInputStream());
+    }
 }
@@ -1,173 +1,453 @@
 package com.arpit.chatapp.chat;
 
-import com.arpit.chatapp.auth.User;
-import com.arpit.chatapp.auth.UserRepository;
-import com.arpit.chatapp.user.UserProfile;
-import com.arpit.chatapp.user.UserProfileRepository;
+import com.arpit.chatapp.exception.BadRequestException;
+import com.arpit.chatapp.exception.UnauthorizedException;
+import com.arpit.chatapp.search.MessageSearchService;
+import com.arpit.chatapp.user.IdentityHydrator;
+import com.arpit.chatapp.user.UserIdentity;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class ChatService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final ConversationRepository conversationRepo;
-    private final UserRepository userRepo;
-    private final UserProfileRepository profileRepo;
     private final MessageRepository messageRepo;
+    private final IdentityHydrator identityHydrator;
+    private final MessageWritePipeline writePipeline;
+    private final MessageTailCache tailCache;
+    private final RecentChatsCache recentChatsCache;
+    private final MessageSearchService searchService;
+    private final UserSequenceService sequences;
+    private final MessageArchive archive;
+    private final SendDeduplicator deduplicator;
+    private final GroupMemberRepository groupMemberRepo;
+    private final GroupFanout groupFanout;
 
     public ChatService(
             ConversationRepository conversationRepo,
-            UserRepository userRepo,
-            UserProfileRepository profileRepo,
-            MessageRepository messageRepo
+            MessageRepository messageRepo,
+            IdentityHydrator identityHydrator,
+            MessageWritePipeline writePipeline,
+            MessageTailCache tailCache,
+            RecentChatsCache recentChatsCache,
+            MessageSearchService searchService,
+            UserSequenceService sequences,
+            MessageArchive archive,
+            SendDeduplicator deduplicator,
+            GroupMemberRepository groupMemberRepo,
+            GroupFanout groupFanout
     ) {
         this.conversationRepo = conversationRepo;
-        this.userRepo = userRepo;
-        this.profileRepo = profileRepo;
         this.messageRepo = messageRepo;
+        this.identityHydrator = identityHydrator;
+        this.writePipeline = writePipeline;
+        this.tailCache = tailCache;
+        this.recentChatsCache = recentChatsCache;
+        this.searchService = searchService;
+        this.sequences = sequences;
+        this.archive = archive;
+        this.deduplicator = deduplicator;
+        this.groupMemberRepo = groupMemberRepo;
+        this.groupFanout = groupFanout;
     }
 
     // ✅ GET RECENT CHATS
-    // inside ChatService.java
 
     public List<RecentChatResponse> getRecentChats(String userId) {
 
-        return conversationRepo
+        List<RecentChatResponse> cached = recentChatsCache.get(userId);
+        if (cached != null) return cached;
+
+        recentChatsCache.beginLoad(userId);
+
+        List<Conversation> direct = conversationRepo
                 .findByParticipantIdsContainingOrderByLastUpdatedDesc(userId)
                 .stream()
                 // Remove self-chat
-                .filter(conv -> conv.getParticipantIds().stream().anyMatch(id -> !id.equals(userId)))
-                .map(conv -> {
+                .filter(conv -> friendOf(conv, userId) != null)
+                .toList();
 
-                    // 1. Identify the friend
-                    String friendId = conv.getParticipantIds().stream()
-                            .filter(id -> !id.equals(userId))
-                            .findFirst()
-                            .orElse(null);
+        // Groups are found through the user's memberships, not participantIds
+        Map<String, GroupMember> memberships = groupMemberRepo.findByUserId(userId).stream()
+                .collect(Collectors.toMap(GroupMember::getConversationId, Function.identity()));
 
-                    if (friendId == null) return null; // Safety check
+        List<Conversation> conversations = new ArrayList<>(direct);
+        if (!memberships.isEmpty()) {
+            conversationRepo.findAllById(memberships.keySet()).forEach(conversations::add);
+            conversations.sort(Comparator.comparing(Conversation::getLastUpdated).reversed());
+        }
 
-                    // 2. Get Friend Details
-                    User user = userRepo.findById(friendId).orElse(null);
-                    UserProfile profile = profileRepo.findById(friendId).orElse(null);
+        // 1. Resolve every friend in one round-trip per collection
+        Map<String, UserIdentity> friends = identityHydrator.hydrate(
+                direct.stream().map(conv -> friendOf(conv, userId)).toList()
+        );
 
-                    String displayName = (profile != null && profile.getDisplayName() != null)
-                            ? profile.getDisplayName()
-                            : (user != null ? user.getName() : "Unknown");
+        List<RecentChatResponse> chats = conversations.stream()
+                .map(conv -> {
+                    if (conv.isGroup()) {
+                        return groupChat(conv, memberships.get(conv.getId()));
+                    }
 
-                    String profilePhoto = (profile != null) ? profile.getProfilePhoto() : null;
+                    String friendId = friendOf(conv, userId);
+                    UserIdentity friend = friends.getOrDefault(friendId, identityHydrator.unknown(friendId));
 
-                    // ✅ 3. FIX: QUERY THE DATABASE FOR THE ACTUAL COUNT
-                    // (Make sure you use the 'long' variable type)
-                    long unreadCount = messageRepo.countByConversationIdAndReceiverIdAndIsReadFalse(
-                            conv.getId(),
-                            userId  // Ensure we count messages sent TO me
-                    );
+                    // 2. Unread count is denormalized on the conversation
+                    int unreadCount = unreadCountFor(conv, userId);
 
                     return new RecentChatResponse(
                             conv.getId(),
                             friendId,
-                            displayName,
-                            profilePhoto,
+                            friend.getDisplayName(),
+                            friend.getProfilePhoto(),
                             conv.getLastMessage(),
                             conv.getLastUpdated().toString(),
-                            (int) unreadCount // ✅ Pass the real count (cast long to int)
+                            unreadCount
                     );
                 })
                 .collect(Collectors.toList());
+
+        recentChatsCache.put(userId, chats);
+        return chats;
+    }
+
+    // Unread comes from the member row or the seq distance, depending on the group's fan-out
+    private RecentChatResponse groupChat(Conversation group, GroupMember member) {
+        RecentChatResponse chat = new RecentChatResponse(
+                group.getId(),
+                null,
+                group.getName(),
+                null,
+                group.getLastMessage(),
+                group.getLastUpdated().toString(),
+                groupFanout.unread(group, member)
+        );
+        chat.group = true;
+        return chat;
+    }
+
+    private String friendOf(Conversation conv, String userId) {
+        return conv.getParticipantIds().stream()
+                .filter(id -> !id.equals(userId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private int unreadCountFor(Conversation conv, String userId) {
+        Integer cached = conv.getUnreadCounts() != null
+                ? conv.getUnreadCounts().get(userId)
+                : null;
+
+        if (cached != null) return cached;
+
+        // Legacy conversation: count once from the messages, then keep the counter
+        int count = (int) messageRepo.countByConversationIdAndReceiverIdAndIsReadFalse(conv.getId(), userId);
+        conversationRepo.initUnreadIfMissing(conv.getId(), userId, count);
+        return count;
     }
-    // inside ChatService.java
+
 
     public void markMessagesAsRead(String conversationId, String userId) {
-        // Find all unread messages sent TO me in this conversation
-        List<Message> unreadMessages = messageRepo.findByConversationIdAndReceiverIdAndIsReadFalse(conversationId, userId);
+        Conversation conversation = conversationRepo.findById(conversationId).orElse(null);
+        if (conversation == null) return;
+
+        if (conversation.isGroup()) {
+            if (!groupMemberRepo.existsById(GroupMember.idFor(conversationId, userId))) {
+                throw new UnauthorizedException("Not a member of this group");
+            }
+            // Groups: only the reader's member row changes
+            groupMemberRepo.markRead(conversationId, userId, conversation.getSeq());
+            tailCache.onRead(conversationId, userId);
+            recentChatsCache.onRead(conversationId, userId);
+            return;
+        }
 
-        if (!unreadMessages.isEmpty()) {
-            unreadMessages.forEach(m -> m.setRead(true));
-            messageRepo.saveAll(unreadMessages); // Batch update
+        // Only a participant moves their own marker (and bumps both sides' sync seqs)
+        if (conversation.getParticipantIds() == null || !conversation.getParticipantIds().contains(userId)) {
+            throw new UnauthorizedException("Not a participant in this conversation");
         }
+
+        // Both sides see the change: my counter resets, my friend's receipts turn read.
+        // One allocation for all participants
+        Map<String, Integer> counts = new HashMap<>();
+        conversation.getParticipantIds().forEach(participant -> counts.put(participant, 1));
+        Map<String, Long> syncSeqs = sequences.allocate(counts);
+
+        // O(1): advance my watermark, never touch the message documents
+        conversationRepo.markRead(conversationId, userId, syncSeqs);
+        tailCache.onRead(conversationId, userId);
+        recentChatsCache.onRead(conversationId, userId);
     }
 
-    // ✅ SEND MESSAGE (already working)
+    // ✅ SEND MESSAGE
     public SendMessageResponse sendMessage(
             String senderId,
             String receiverId,
             String content
     ) {
+        return sendMessage(senderId, receiverId, content, null);
+    }
 
-        System.out.println(senderId + receiverId + content);
+    // With a clientMessageId, a retry returns the original response instead of sending again
+    public SendMessageResponse sendMessage(
+            String senderId,
+            String receiverId,
+            String content,
+            String clientMessageId
+    ) {
 
         if (senderId == null || receiverId == null || content == null) {
-            throw new RuntimeException("Invalid message data");
+            throw new BadRequestException("Invalid message data");
         }
 
-        Conversation conversation = conversationRepo
-                .findConversationBetween(senderId, receiverId)
-                .orElseGet(() -> {
-                    Conversation c = new Conversation();
-                    c.setParticipantIds(List.of(senderId, receiverId));
-                    c.setLastUpdated(Instant.now()); // 🔥 REQUIRED
-                    return conversationRepo.save(c);
-                });
+        return deduplicator.send(
+                senderId,
+                Conversation.directId(senderId, receiverId),
+                clientMessageId,
+                () -> send(senderId, receiverId, content, clientMessageId)
+        );
+    }
+
+    private SendMessageResponse send(
+            String senderId,
+            String receiverId,
+            String content,
+            String clientMessageId
+    ) {
+
+        // Derived from the pair — no lookup, and concurrent first messages can't fork it
+        String conversationId = Conversation.directId(senderId, receiverId);
 
         Message message = new Message();
-        message.setConversationId(conversation.getId());
+        message.setConversationId(conversationId);
         message.setSenderId(senderId);
         message.setReceiverId(receiverId);
         message.setContent(content);
+        message.setClientMessageId(clientMessageId);
+
+        // Next position in the conversation (creates the conversation on first message). Not gap-free:
+        // a store that fails after this, or a retry that loses the dedup race, leaves a hole
+        message.setSeq(conversationRepo.nextSeq(conversationId, List.of(senderId, receiverId)));
 
-        message = messageRepo.save(message);
+        // The participants' change-stream seqs are stamped by the write itself (see store)
+        message = store(message);
+        recentChatsCache.onSend(message);
 
-        conversation.setLastMessage(content);
-        conversation.setLastUpdated(message.getTimestamp());
-        conversationRepo.save(conversation);
+        return toSendResponse(message);
+    }
+
+    // Write path shared by direct and group sends; the message has its seq already
+    Message store(Message message) {
+        if (writePipeline.isEnabled()) {
+            // Group commit: returns once the batch holding this message is durable
+            message = await(writePipeline.submit(message));
+        } else {
+            // Both participants' change-stream seqs in one allocation (the pipeline does a batch at once)
+            sequences.stamp(List.of(message));
+            message = messageRepo.append(message);
+
+            // One atomic upsert creates the conversation or bumps its metadata/counters
+            conversationRepo.recordMessage(message.getConversationId(), message);
+        }
+
+        tailCache.onSend(message);
+
+        // The message is stored: a failed index must not fail the send (the client would
+        // retry and send it twice). The backfill (chat.search.backfill.enabled) fills the gap
+        try {
+            searchService.index(message);
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Search index failed for message " + message.getId() + ": " + e.getMessage());
+        }
+        return message;
+    }
+
+    // The write's own exception, not a CompletionException: the handlers map it to its status
+    private Message await(CompletableFuture<Message> write) {
+        try {
+            return write.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
 
+    SendMessageResponse toSendResponse(Message message) {
         return new SendMessageResponse(
                 message.getId(),
-                conversation.getId(),
-                senderId,
-                receiverId,
-                content,
-                message.getTimestamp().toString()
+                message.getConversationId(),
+                message.getSenderId(),
+                message.getReceiverId(),
+                message.getContent(),
+                message.getTimestamp().toString(),
+                message.getSeq(),
+                message.getClientMessageId()
         );
     }
 
-    public List<MessageResponse> getMessagesWithUser(
+    // ✅ PAGED HISTORY (keyset on seq, newest page first)
+    public MessagePageResponse getMessagesWithUser(
             String myUserId,
-            String friendUserId
+            String friendUserId,
+            String before,
+            String after,
+            int limit
     ) {
-        System.out.println("===== GET MESSAGES DEBUG =====");
-        System.out.println("myUserId      = " + myUserId);
-        System.out.println("friendUserId  = " + friendUserId);
-
-        List<Message> rawMessages =
-                messageRepo.findMessagesBetweenUsers(myUserId, friendUserId);
-
-        System.out.println("Mongo result count = " + rawMessages.size());
-
-        rawMessages.forEach(m -> {
-            System.out.println(
-                    "MSG -> sender=" + m.getSenderId()
-                            + ", receiver=" + m.getReceiverId()
-                            + ", content=" + m.getContent()
-            );
-        });
-
-        return rawMessages.stream()
-                .sorted((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()))
-                .map(msg -> new MessageResponse(
-                        msg.getId(),
-                        msg.getSenderId(),
-                        msg.getReceiverId(),
-                        msg.getContent(),
-                        msg.getTimestamp().toString()
-                ))
-                .toList();
+        return getConversationPage(Conversation.directId(myUserId, friendUserId), before, after, limit);
+    }
+
+    // Any conversation by id; callers check the reader may see it
+    MessagePageResponse getConversationPage(
+            String conversationId,
+            String before,
+            String after,
+            int limit
+    ) {
+        if (before != null && after != null) {
+            throw new BadRequestException("Use either 'before' or 'after', not both");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        boolean firstPage = before == null && after == null;
+
+        // Fetch one extra row to know whether another page exists
+        List<Message> rows;
+        Map<String, ReadMarker> readMarkers;
+
+        MessageTailCache.CachedPage cached = firstPage
+                ? tailCache.newest(conversationId, pageSize + 1)
+                : null;
+
+        if (cached != null) {
+            // Chat open served from memory: no conversation lookup, no history query
+            rows = cached.newestFirst();
+            readMarkers = cached.readMarkers();
+        } else {
+            if (firstPage) tailCache.beginLoad(conversationId);
+
+            boolean filled = false;
+            try {
+                Conversation conversation = conversationRepo.findById(conversationId).orElse(null);
+
+                if (conversation == null) {
+                    return new MessagePageResponse(List.of(), null, null, false);
+                }
+
+                // A first page also warms the tail cache, so read at least a full tail
+                int fetch = firstPage && tailCache.isEnabled()
+                        ? Math.max(pageSize, tailCache.getTailSize()) + 1
+                        : pageSize + 1;
+
+                rows = loadHistory(
+                        conversation,
+                        before != null ? MessageCursor.decode(before) : null,
+                        after != null ? MessageCursor.decode(after) : null,
+                        fetch
+                );
+                readMarkers = conversation.getReadMarkers();
+
+                if (firstPage) {
+                    tailCache.fill(conversation, rows, rows.size() == fetch);
+                    filled = true;
+                    if (rows.size() > pageSize + 1) rows = rows.subList(0, pageSize + 1);
+                }
+            } finally {
+                // Unknown id or failed read: fill never ran to release the load
+                if (firstPage && !filled) tailCache.endLoad(conversationId);
+            }
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Message> page = new ArrayList<>(hasMore ? rows.subList(0, pageSize) : rows);
+
+        // Always hand the client oldest → newest
+        if (after == null) {
+            Collections.reverse(page);
+        }
+
+        if (page.isEmpty()) {
+            return new MessagePageResponse(List.of(), null, null, false);
+        }
+
+        boolean olderExists = after != null || hasMore;
+        String nextCursor = olderExists ? MessageCursor.of(page.get(0)).encode() : null;
+        String prevCursor = MessageCursor.of(page.get(page.size() - 1)).encode();
+
+        return new MessagePageResponse(
+                page.stream().map(msg -> toResponse(msg, readMarkers)).toList(),
+                nextCursor,
+                prevCursor,
+                hasMore
+        );
     }
 
+    // Hot collection first; the archive only when the page runs past archivedUpTo
+    private List<Message> loadHistory(Conversation conversation, MessageCursor before, MessageCursor after, int limit) {
+        String conversationId = conversation.getId();
+        long archivedUpTo = conversation.getArchivedUpTo();
+
+        if (after != null) {
+            // Oldest first: archived part (if the cursor is in it), then hot
+            List<Message> rows = new ArrayList<>();
+            if (after.getSeq() < archivedUpTo) {
+                rows.addAll(archive.findHistory(conversationId, null, after, limit));
+            }
+            if (rows.size() < limit) {
+                MessageCursor from = rows.isEmpty() ? after : MessageCursor.of(rows.get(rows.size() - 1));
+                rows.addAll(messageRepo.findHistory(conversationId, null, from, limit - rows.size()));
+            }
+            return rows;
+        }
 
+        // Newest first: hot, then continue below whatever hot ran out at
+        List<Message> rows = new ArrayList<>(messageRepo.findHistory(conversationId, before, null, limit));
+        if (rows.size() < limit && archivedUpTo > 0) {
+            long below = rows.isEmpty()
+                    ? (before != null ? before.getSeq() : Long.MAX_VALUE)
+                    : rows.get(rows.size() - 1).getSeq();
+            below = Math.min(below, archivedUpTo + 1);
+
+            rows.addAll(archive.findHistory(conversationId, new MessageCursor(below), null, limit - rows.size()));
+        }
+        return rows;
+    }
+
+    private MessageResponse toResponse(Message msg, Map<String, ReadMarker> readMarkers) {
+        return new MessageResponse(
+                msg.getId(),
+                msg.getSenderId(),
+                msg.getReceiverId(),
+                msg.getContent(),
+                msg.getTimestamp().toString(),
+                msg.getSeq(),
+                isRead(msg, readMarkers)
+        );
+    }
+
+    // Read receipt = the receiver's watermark has passed this message
+    private boolean isRead(Message msg, Map<String, ReadMarker> readMarkers) {
+        // Group messages have no single receiver to report on
+        if (msg.getReceiverId() == null) return false;
+
+        ReadMarker marker = readMarkers != null
+                ? readMarkers.get(msg.getReceiverId())
+                : null;
+
+        if (marker == null) return msg.isRead(); // legacy flag
+
+        return marker.covers(msg.getSeq(), msg.getTimestamp()) || msg.isRead();
+    }
 
 }
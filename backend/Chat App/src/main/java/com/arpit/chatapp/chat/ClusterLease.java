@@ -0,0 +1,72 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Named leases in {@code migration_locks}, for startup migrations and
+ * background jobs that every node runs but only one should do at a time.
+ * The holder renews as it goes; a lease left by a node that died lapses
+ * after its duration and the next node to try takes it over.
+ */
+@Component
+public class ClusterLease {
+
+    static final String COLLECTION = "migration_locks";
+
+    private final MongoTemplate mongoTemplate;
+
+    // This process; a restarted node doesn't inherit its old leases
+    private final String owner = UUID.randomUUID().toString();
+
+    public ClusterLease(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Takes the lease if nobody holds it or the holder let it lapse
+    public boolean acquire(String name, Duration duration) {
+        try {
+            mongoTemplate.upsert(
+                    new Query(Criteria.where("_id").is(name).and("until").lt(new Date())),
+                    new Update().set("owner", owner).set("until", until(duration)),
+                    COLLECTION
+            );
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    public void renew(String name, Duration duration) {
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(name).and("owner").is(owner)),
+                new Update().set("until", until(duration)),
+                COLLECTION
+        );
+    }
+
+    // By anyone, this process included
+    public boolean isHeld(String name) {
+        return mongoTemplate.exists(
+                new Query(Criteria.where("_id").is(name).and("until").gte(new Date())),
+                COLLECTION
+        );
+    }
+
+    public void release(String name) {
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(name).and("owner").is(owner)), COLLECTION);
+    }
+
+    private Date until(Duration duration) {
+        return Date.from(Instant.now().plus(duration));
+    }
+}
@@ -1,10 +1,14 @@
 package com.arpit.chatapp.chat;
 
+import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Document(collection = "conversations")
 public class Conversation {
@@ -12,14 +16,80 @@ public class Conversation {
     @Id
     private String id;
 
+    // Null on documents that predate groups: DIRECT
+    private ConversationType type;
+
+    // Groups only; their members are in group_members, not participantIds
+    private String name;
+    private int memberCount;
+    private FanoutMode fanout;
+
+    @Indexed
     private List<String> participantIds;
     private String lastMessage;
+    private String lastMessageId;
+    private String lastSenderId;
     private Instant lastUpdated;
+    // seq of the message the last* fields show: a write that lands late can't roll them back
+    private long lastSeq;
+
+    // Messages sent here so far; the next one gets seq + 1 (see nextSeq)
+    private long seq;
+
+    // Messages up to this seq live in message_archive (0 = none)
+    private long archivedUpTo;
+
+    // userId -> messages that participant hasn't read yet
+    private Map<String, Integer> unreadCounts = new HashMap<>();
+
+    // userId -> read watermark (replaces per-message isRead flips)
+    private Map<String, ReadMarker> readMarkers = new HashMap<>();
+
+    // userId -> that user's sequence number of the latest change here
+    private Map<String, Long> syncSeqs = new HashMap<>();
+
+    // Legacy ids ConversationIdMigration folded in here, so a rerun doesn't fold them twice
+    private List<String> mergedFrom;
+
+    /**
+     * One conversation per pair: the id is the sorted participant ids,
+     * so both sides derive the same _id without a lookup.
+     */
+    public static String directId(String userA, String userB) {
+        return userA.compareTo(userB) <= 0
+                ? userA + "_" + userB
+                : userB + "_" + userA;
+    }
+
+    // Groups get a fresh id; the prefix keeps them apart from pair ids
+    public static String newGroupId() {
+        return "g_" + new ObjectId().toHexString();
+    }
 
     public String getId() {
         return id;
     }
 
+    public boolean isGroup() {
+        return type == ConversationType.GROUP;
+    }
+
+    public ConversationType getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMemberCount() {
+        return memberCount;
+    }
+
+    public FanoutMode getFanout() {
+        return fanout;
+    }
+
     public List<String> getParticipantIds() {
         return participantIds;
     }
@@ -28,14 +98,58 @@ public class Conversation {
         return lastMessage;
     }
 
+    public String getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public String getLastSenderId() {
+        return lastSenderId;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public long getArchivedUpTo() {
+        return archivedUpTo;
+    }
+
     public Instant getLastUpdated() {
         return lastUpdated;
     }
 
+    public Map<String, Integer> getUnreadCounts() {
+        return unreadCounts;
+    }
+
+    public Map<String, ReadMarker> getReadMarkers() {
+        return readMarkers;
+    }
+
     public void setId(String id) {
         this.id = id;
     }
 
+    public void setType(ConversationType type) {
+        this.type = type;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setMemberCount(int memberCount) {
+        this.memberCount = memberCount;
+    }
+
+    public void setFanout(FanoutMode fanout) {
+        this.fanout = fanout;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
     public void setParticipantIds(List<String> participantIds) {
         this.participantIds = participantIds;
     }
@@ -44,7 +158,39 @@ public class Conversation {
         this.lastMessage = lastMessage;
     }
 
+    public void setLastMessageId(String lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public void setLastSenderId(String lastSenderId) {
+        this.lastSenderId = lastSenderId;
+    }
+
     public void setLastUpdated(Instant lastUpdated) {
         this.lastUpdated = lastUpdated;
     }
+
+    public Map<String, Long> getSyncSeqs() {
+        return syncSeqs;
+    }
+
+    public void setUnreadCounts(Map<String, Integer> unreadCounts) {
+        this.unreadCounts = unreadCounts;
+    }
+
+    public void setReadMarkers(Map<String, ReadMarker> readMarkers) {
+        this.readMarkers = readMarkers;
+    }
+
+    public void setSyncSeqs(Map<String, Long> syncSeqs) {
+        this.syncSeqs = syncSeqs;
+    }
+
+    public List<String> getMergedFrom() {
+        return mergedFrom;
+    }
+
+    public void setMergedFrom(List<String> mergedFrom) {
+        this.mergedFrom = mergedFrom;
+    }
 }
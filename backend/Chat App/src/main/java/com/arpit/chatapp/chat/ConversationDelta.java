@@ -0,0 +1,38 @@
+package com.arpit.chatapp.chat;
+
+/**
+ * Current state of one conversation, as seen by the syncing user.
+ * Profile data is left out: clients already have it from /chats.
+ */
+public class ConversationDelta {
+
+    public String conversationId;
+    public String friendId;
+
+    public String lastMessage;
+    public String lastMessageId;
+    public String lastUpdated;
+
+    public int unreadCount;
+
+    // Newest of my messages my friend has read (null if none)
+    public String friendReadUpTo;
+
+    public ConversationDelta(
+            String conversationId,
+            String friendId,
+            String lastMessage,
+            String lastMessageId,
+            String lastUpdated,
+            int unreadCount,
+            String friendReadUpTo
+    ) {
+        this.conversationId = conversationId;
+        this.friendId = friendId;
+        this.lastMessage = lastMessage;
+        this.lastMessageId = lastMessageId;
+        this.lastUpdated = lastUpdated;
+        this.unreadCount = unreadCount;
+        this.friendReadUpTo = friendReadUpTo;
+    }
+}
@@ -0,0 +1,156 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites conversations created before ids were derived from the
+ * participant pair (ObjectId _id) onto {@link Conversation#directId}.
+ * Duplicates produced by the old find-then-save race collapse into one.
+ * Cheap no-op once nothing legacy is left.
+ * <p>
+ * Every node fires this on startup; the {@code conversation-ids} lease lets
+ * one of them run it. Each step is safe to repeat after a crash: a merge
+ * records the legacy id it folded in ({@code mergedFrom}) in the same
+ * update, so a rerun never counts the same unread messages twice.
+ */
+@Component
+public class ConversationIdMigration {
+
+    static final String LEASE_NAME = "conversation-ids";
+    private static final Duration LEASE = Duration.ofMinutes(5);
+
+    private final ConversationRepository conversationRepo;
+    private final MongoTemplate mongoTemplate;
+    private final ClusterLease lease;
+    private final boolean enabled;
+
+    public ConversationIdMigration(
+            ConversationRepository conversationRepo,
+            MongoTemplate mongoTemplate,
+            ClusterLease lease,
+            @Value("${chat.migration.conversation-ids.enabled:true}") boolean enabled
+    ) {
+        this.conversationRepo = conversationRepo;
+        this.mongoTemplate = mongoTemplate;
+        this.lease = lease;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void migrate() {
+        if (!enabled) return;
+
+        List<Conversation> legacy = conversationRepo.findLegacyConversations();
+        if (legacy.isEmpty()) return;
+
+        if (!lease.acquire(LEASE_NAME, LEASE)) {
+            System.out.println("🔁 Conversation id migration is running on another node; skipping");
+            return;
+        }
+
+        try {
+            for (Conversation old : legacy) {
+                lease.renew(LEASE_NAME, LEASE);
+                migrate(old);
+            }
+        } finally {
+            lease.release(LEASE_NAME);
+        }
+
+        System.out.println("🔁 Migrated " + legacy.size() + " conversations to deterministic ids");
+    }
+
+    // ---------- HELPERS ----------
+
+    private void migrate(Conversation old) {
+        String legacyId = old.getId();
+        List<String> participants = old.getParticipantIds();
+        if (participants == null || participants.size() != 2) return;
+
+        String newId = Conversation.directId(participants.get(0), participants.get(1));
+
+        // 1. Repoint history first so nothing is orphaned if we stop midway
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("conversationId").is(legacyId)),
+                new Update().set("conversationId", newId),
+                Message.class
+        );
+
+        // 2. Create or merge into the deterministic conversation. A send may create
+        // the target between the lookup and the insert: merge into it then
+        Conversation target = conversationRepo.findById(newId).orElse(null);
+        if (target == null) {
+            old.setId(newId);
+            old.setParticipantIds(participants.stream().sorted().distinct().toList());
+            old.setMergedFrom(List.of(legacyId));
+            try {
+                conversationRepo.insert(old);
+            } catch (DuplicateKeyException e) {
+                target = conversationRepo.findById(newId).orElse(null);
+            }
+        }
+        if (target != null) merge(legacyId, old, target);
+
+        // 3. Drop the legacy document
+        conversationRepo.deleteById(legacyId);
+    }
+
+    /**
+     * Folds {@code from} into {@code into} in one update, guarded on
+     * {@code mergedFrom}: a rerun after a crash (before the legacy document
+     * was deleted) matches nothing instead of adding the unread counts again.
+     */
+    private void merge(String legacyId, Conversation from, Conversation into) {
+        Update update = new Update().addToSet("mergedFrom", legacyId);
+
+        Map<String, Integer> unread = from.getUnreadCounts();
+        if (unread != null) {
+            unread.forEach((userId, count) -> update.inc("unreadCounts." + userId, count));
+        }
+
+        // Per reader, whichever marker reached further
+        Map<String, ReadMarker> markers = from.getReadMarkers();
+        Map<String, ReadMarker> existing = into.getReadMarkers() != null ? into.getReadMarkers() : Map.of();
+        if (markers != null) {
+            markers.forEach((userId, marker) -> {
+                if (further(marker, existing.get(userId))) update.set("readMarkers." + userId, marker);
+            });
+        }
+
+        boolean newer = from.getLastUpdated() != null
+                && (into.getLastUpdated() == null || from.getLastUpdated().isAfter(into.getLastUpdated()));
+
+        if (newer) {
+            update.set("lastMessage", from.getLastMessage())
+                    .set("lastMessageId", from.getLastMessageId())
+                    .set("lastSenderId", from.getLastSenderId())
+                    .set("lastUpdated", from.getLastUpdated());
+        }
+
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(into.getId()).and("mergedFrom").ne(legacyId)),
+                update,
+                Conversation.class
+        );
+    }
+
+    // Legacy markers carry no seq, only when they were written
+    private boolean further(ReadMarker marker, ReadMarker than) {
+        if (than == null || than.getAt() == null) return marker.getAt() != null;
+        return marker.getAt() != null && marker.getAt().isAfter(than.getAt());
+    }
+}
@@ -4,14 +4,14 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
 import java.util.List;
-import java.util.Optional;
 
 public interface ConversationRepository
-        extends MongoRepository<Conversation, String> {
+        extends MongoRepository<Conversation, String>, ConversationRepositoryCustom {
 
     List<Conversation>
     findByParticipantIdsContainingOrderByLastUpdatedDesc(String userId);
 
-    @Query("{ 'participantIds': { $all: [?0, ?1] } }")
-    Optional<Conversation> findConversationBetween(String user1, String user2);
+    // Pre-deterministic-id conversations, picked up by ConversationIdMigration
+    @Query("{ '_id': { $type: 'objectId' } }")
+    List<Conversation> findLegacyConversations();
 }
@@ -0,0 +1,55 @@
+package com.arpit.chatapp.chat;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Atomic, single-statement updates on conversation documents
+ * that derived query methods can't express ($inc / conditional $set).
+ */
+public interface ConversationRepositoryCustom {
+
+    // Atomic $inc of the conversation's message counter (creating the
+    // conversation if needed); the value is the new message's seq
+    long nextSeq(String conversationId, Collection<String> participantIds);
+
+    // Groups: $inc the counter of an existing group; null if there is no such group
+    Conversation nextGroupSeq(String conversationId);
+
+    // Groups: $inc memberCount by delta; the group as it is afterwards
+    Conversation changeMemberCount(String conversationId, int delta);
+
+    // Groups: move to `to` only if still on `from`; false if someone else switched it first
+    boolean switchFanout(String conversationId, FanoutMode from, FanoutMode to);
+
+    // Upsert: create the conversation on first message, otherwise
+    // $set last-message metadata and $inc the receiver's unread counter
+    void recordMessage(String conversationId, Message message);
+
+    // Same as recordMessage for a whole batch: one bulk write, one upsert per conversation
+    void recordMessages(List<Message> messages);
+
+    // Move the reader's watermark to the conversation's last message
+    // and zero their counter — one statement, however much was unread.
+    // syncSeqs: participant -> sequence number stamped on this change
+    void markRead(String conversationId, String userId, Map<String, Long> syncSeqs);
+
+    // Archiver: messages up to seq are now in message_archive ($max, never moves back)
+    void markArchived(String conversationId, long upToSeq);
+
+    // Import: create the conversation if needed and move its counter and
+    // last-message metadata to `last`; imported history counts as read
+    void recordImport(String conversationId, Message last);
+
+    // One-time backfill for conversations created before counters existed
+    void initUnreadIfMissing(String conversationId, String userId, int count);
+
+    // Dashboard totals, read off the counters instead of scanning messages
+    long sumUnreadMessages(String userId);
+
+    long countUnreadConversations(String userId);
+
+    // Delta sync: the user's conversations that changed after `since`
+    List<Conversation> findChangedSince(String userId, long since);
+}
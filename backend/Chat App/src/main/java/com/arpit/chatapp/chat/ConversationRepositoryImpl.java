@@ -0,0 +1,273 @@
+package com.arpit.chatapp.chat;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.Fields;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+public class ConversationRepositoryImpl implements ConversationRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ConversationRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public long nextSeq(String conversationId, Collection<String> participantIds) {
+        Set<String> participants = new TreeSet<>(participantIds);
+
+        Update update = new Update()
+                .inc("seq", 1)
+                .setOnInsert("participantIds", new ArrayList<>(participants));
+        participants.forEach(userId -> update.setOnInsert(unreadField(userId), 0));
+
+        Conversation conversation = mongoTemplate.findAndModify(
+                byId(conversationId),
+                update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Conversation.class
+        );
+        return conversation.getSeq();
+    }
+
+    @Override
+    public Conversation nextGroupSeq(String conversationId) {
+        return mongoTemplate.findAndModify(
+                groupById(conversationId),
+                new Update().inc("seq", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                Conversation.class
+        );
+    }
+
+    @Override
+    public Conversation changeMemberCount(String conversationId, int delta) {
+        return mongoTemplate.findAndModify(
+                groupById(conversationId),
+                new Update().inc("memberCount", delta),
+                FindAndModifyOptions.options().returnNew(true),
+                Conversation.class
+        );
+    }
+
+    @Override
+    public boolean switchFanout(String conversationId, FanoutMode from, FanoutMode to) {
+        Query query = new Query(Criteria.where("_id").is(conversationId).and("fanout").is(from));
+        return mongoTemplate.updateFirst(query, new Update().set("fanout", to), Conversation.class)
+                .getModifiedCount() > 0;
+    }
+
+    @Override
+    public void recordMessage(String conversationId, Message message) {
+        mongoTemplate.upsert(byId(conversationId), messageUpdate(List.of(message)), Conversation.class);
+    }
+
+    @Override
+    public void recordMessages(List<Message> messages) {
+        if (messages.isEmpty()) return;
+
+        Map<String, List<Message>> byConversation = messages.stream()
+                .collect(Collectors.groupingBy(Message::getConversationId, LinkedHashMap::new, Collectors.toList()));
+
+        // One upsert per conversation, all sent in a single unordered bulk write
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        byConversation.forEach((conversationId, batch) ->
+                bulk.upsert(byId(conversationId), messageUpdate(batch)));
+        bulk.execute();
+    }
+
+    @Override
+    public void markRead(String conversationId, String userId, Map<String, Long> syncSeqs) {
+        // Pipeline update so the watermark copies the document's own
+        // lastMessageId/lastUpdated/lastSeq atomically with the counter reset
+        AggregationUpdate update = AggregationUpdate.update()
+                .set(markerField(userId) + ".messageId").toValueOf(Fields.field("lastMessageId"))
+                .set(markerField(userId) + ".at").toValueOf(Fields.field("lastUpdated"))
+                .set(markerField(userId) + ".seq").toValueOf(Fields.field("lastSeq"))
+                .set(unreadField(userId)).toValue(0);
+
+        // $max: a slower concurrent change must not move a sequence backwards
+        syncSeqs.forEach((participant, seq) -> update
+                .set(syncField(participant))
+                .toValueOf(AccumulatorOperators.Max.maxOf(syncField(participant))
+                        .and(LiteralOperators.Literal.asLiteral(seq))));
+
+        mongoTemplate.updateFirst(byId(conversationId), update, Conversation.class);
+    }
+
+    @Override
+    public void markArchived(String conversationId, long upToSeq) {
+        mongoTemplate.updateFirst(byId(conversationId), new Update().max("archivedUpTo", upToSeq), Conversation.class);
+    }
+
+    @Override
+    public void recordImport(String conversationId, Message last) {
+        Set<String> participants = new TreeSet<>(List.of(last.getSenderId(), last.getReceiverId()));
+
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("seq").toValueOf(AccumulatorOperators.Max.maxOf("seq").and(LiteralOperators.Literal.asLiteral(last.getSeq())))
+                .set("participantIds").toValueOf(onInsert("participantIds", new ArrayList<>(participants)));
+        participants.forEach(userId -> update.set(unreadField(userId)).toValueOf(onInsert(unreadField(userId), 0)));
+        setLastMessage(update, last);
+
+        mongoTemplate.upsert(byId(conversationId), update, Conversation.class);
+    }
+
+    @Override
+    public void initUnreadIfMissing(String conversationId, String userId, int count) {
+        Query query = new Query(Criteria.where("_id").is(conversationId)
+                .and(unreadField(userId)).exists(false));
+
+        mongoTemplate.updateFirst(query, new Update().set(unreadField(userId), count), Conversation.class);
+    }
+
+    @Override
+    public long sumUnreadMessages(String userId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(unreadFor(userId)),
+                Aggregation.group().sum(unreadField(userId)).as("total")
+        );
+
+        Document result = mongoTemplate
+                .aggregate(aggregation, Conversation.class, Document.class)
+                .getUniqueMappedResult();
+
+        return result != null ? ((Number) result.get("total")).longValue() : 0L;
+    }
+
+    @Override
+    public long countUnreadConversations(String userId) {
+        return mongoTemplate.count(new Query(unreadFor(userId)), Conversation.class);
+    }
+
+    @Override
+    public List<Conversation> findChangedSince(String userId, long since) {
+        return mongoTemplate.find(
+                new Query(Criteria.where("participantIds").is(userId).and(syncField(userId)).gt(since)),
+                Conversation.class
+        );
+    }
+
+    // ---------- HELPERS ----------
+
+    // Folds one conversation's messages into a single upsert:
+    // newest message wins the metadata, receivers' counters add up.
+    // A pipeline update, so the metadata only moves forward (see setLastMessage)
+    private AggregationUpdate messageUpdate(List<Message> messages) {
+        Message last = messages.stream()
+                .max(MessageRepositoryImpl.KEYSET)
+                .orElseThrow();
+
+        Map<String, Integer> increments = new HashMap<>();
+        Set<String> participants = new TreeSet<>();
+        for (Message m : messages) {
+            // Group messages have no receiver: members' state lives in group_members
+            if (m.getReceiverId() == null) continue;
+
+            increments.merge(m.getReceiverId(), 1, Integer::sum);
+            participants.add(m.getSenderId());
+            participants.add(m.getReceiverId());
+        }
+
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("participantIds").toValueOf(onInsert("participantIds", new ArrayList<>(participants)));
+
+        // Receivers' counters go up; everyone else's start at 0 on insert
+        participants.forEach(userId -> {
+            Integer count = increments.get(userId);
+            update.set(unreadField(userId)).toValueOf(count == null
+                    ? onInsert(unreadField(userId), 0)
+                    : ArithmeticOperators.Add.valueOf(onInsert(unreadField(userId), 0)).add(count));
+        });
+
+        // Highest sequence number each participant got in this batch
+        Map<String, Long> syncSeqs = new HashMap<>();
+        for (Message m : messages) {
+            if (m.getSenderSeq() != null) syncSeqs.merge(m.getSenderId(), m.getSenderSeq(), Math::max);
+            if (m.getReceiverSeq() != null) syncSeqs.merge(m.getReceiverId(), m.getReceiverSeq(), Math::max);
+        }
+        syncSeqs.forEach((userId, seq) -> update
+                .set(syncField(userId))
+                .toValueOf(AccumulatorOperators.Max.maxOf(syncField(userId))
+                        .and(LiteralOperators.Literal.asLiteral(seq))));
+
+        setLastMessage(update, last);
+        return update;
+    }
+
+    // last* only take a message with a higher seq than the one they show: batches from
+    // two nodes (or a slow and a fast write) can land in either order.
+    // lastSeq goes last: each set is its own stage and the others compare against the old value
+    private void setLastMessage(AggregationUpdate update, Message last) {
+        AggregationExpression newer = ComparisonOperators
+                .valueOf(ConditionalOperators.ifNull("lastSeq").then(0L))
+                .lessThanValue(last.getSeq());
+
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("lastMessage", last.getContent());
+        fields.put("lastMessageId", last.getId());
+        fields.put("lastSenderId", last.getSenderId());
+        // As a Date: a literal inside an expression isn't run through the converters
+        fields.put("lastUpdated", Date.from(last.getTimestamp()));
+        fields.put("lastSeq", last.getSeq());
+
+        fields.forEach((field, value) -> update.set(field).toValueOf(ConditionalOperators.when(newer)
+                .thenValueOf(LiteralOperators.Literal.asLiteral(value))
+                .otherwiseValueOf(field)));
+    }
+
+    // $setOnInsert for pipeline updates: the current value, or this one on a new document
+    private AggregationExpression onInsert(String field, Object value) {
+        return ConditionalOperators.ifNull(field).thenValueOf(LiteralOperators.Literal.asLiteral(value));
+    }
+
+    private Criteria unreadFor(String userId) {
+        return Criteria.where("participantIds").is(userId)
+                .and(unreadField(userId)).gt(0);
+    }
+
+    private Query groupById(String conversationId) {
+        return new Query(Criteria.where("_id").is(conversationId).and("type").is(ConversationType.GROUP));
+    }
+
+    private Query byId(String conversationId) {
+        return new Query(Criteria.where("_id").is(conversationId));
+    }
+
+    private String unreadField(String userId) {
+        return "unreadCounts." + userId;
+    }
+
+    private String markerField(String userId) {
+        return "readMarkers." + userId;
+    }
+
+    private String syncField(String userId) {
+        return "syncSeqs." + userId;
+    }
+}
@@ -0,0 +1,253 @@
+package com.arpit.chatapp.chat;
+
+import com.arpit.chatapp.exception.BadRequestException;
+import com.arpit.chatapp.search.MessageSearchService;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Moves conversations between environments as NDJSON, one message per line.
+ * <p>
+ * Export walks Mongo cursors (archive segments, then the hot tier) and
+ * writes as it reads, so memory stays flat whatever the history size.
+ * Import reads line by line and writes in batches: one insertMany for the
+ * messages, one upsert per conversation and one insertMany of search
+ * postings per batch.
+ * <p>
+ * Import only takes the lines the importing user sent: an export carries
+ * both sides of a conversation, and the other side's messages are skipped
+ * rather than written under someone else's name. It only fills
+ * conversations that have no messages in this environment yet (so the
+ * first participant to import restores their side); lines for any other
+ * conversation are skipped too. A failed import keeps the
+ * batches written before the bad line.
+ */
+@Service
+public class ConversationTransferService {
+
+    private static final int IMPORT_BATCH = 1000;
+    private static final int WRITE_BUFFER = 64 * 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageRepository messageRepo;
+    private final ConversationRepository conversationRepo;
+    private final MessageArchive archive;
+    private final MessageSearchService searchService;
+    private final MessageTailCache tailCache;
+    private final RecentChatsCache recentChatsCache;
+    private final ObjectMapper objectMapper;
+
+    public ConversationTransferService(
+            MongoTemplate mongoTemplate,
+            MessageRepository messageRepo,
+            ConversationRepository conversationRepo,
+            MessageArchive archive,
+            MessageSearchService searchService,
+            MessageTailCache tailCache,
+            RecentChatsCache recentChatsCache,
+            ObjectMapper objectMapper
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageRepo = messageRepo;
+        this.conversationRepo = conversationRepo;
+        this.archive = archive;
+        this.searchService = searchService;
+        this.tailCache = tailCache;
+        this.recentChatsCache = recentChatsCache;
+        this.objectMapper = objectMapper;
+    }
+
+    // ✅ EXPORT
+
+    public void exportConversation(String userId, String friendUserId, OutputStream out) throws IOException {
+        if (userId == null || friendUserId == null) {
+            throw new BadRequestException("Invalid export request");
+        }
+
+        Writer writer = writer(out);
+        writeConversation(Conversation.directId(userId, friendUserId), writer);
+        writer.flush();
+    }
+
+    // Every conversation of the user, one after the other
+    public void exportAccount(String userId, OutputStream out) throws IOException {
+        if (userId == null) {
+            throw new BadRequestException("Invalid export request");
+        }
+
+        Query query = new Query(Criteria.where("participantIds").is(userId));
+        query.fields().include("_id");
+
+        Writer writer = writer(out);
+        try (Stream<Conversation> conversations = mongoTemplate.stream(query, Conversation.class)) {
+            Iterator<Conversation> it = conversations.iterator();
+            while (it.hasNext()) {
+                writeConversation(it.next().getId(), writer);
+            }
+        }
+        writer.flush();
+    }
+
+    // ✅ IMPORT
+
+    public ImportResult importMessages(String userId, InputStream in) throws IOException {
+        if (userId == null) {
+            throw new BadRequestException("Invalid import request");
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        Set<String> accepted = new HashSet<>();
+        Set<String> refused = new HashSet<>();
+        List<Message> batch = new ArrayList<>(IMPORT_BATCH);
+        long imported = 0;
+        long skipped = 0;
+        long lineNumber = 0;
+
+        String raw;
+        while ((raw = reader.readLine()) != null) {
+            lineNumber++;
+            if (raw.isBlank()) continue;
+
+            Message message = parse(raw, lineNumber, userId);
+            if (!userId.equals(message.getSenderId())) {
+                skipped++;
+                continue;
+            }
+            String conversationId = message.getConversationId();
+
+            if (!accepted.contains(conversationId)) {
+                if (refused.contains(conversationId) || hasMessages(conversationId)) {
+                    refused.add(conversationId);
+                    skipped++;
+                    continue;
+                }
+                accepted.add(conversationId);
+            }
+
+            batch.add(message);
+            if (batch.size() == IMPORT_BATCH) {
+                imported += flush(batch);
+                batch = new ArrayList<>(IMPORT_BATCH);
+            }
+        }
+
+        if (!batch.isEmpty()) imported += flush(batch);
+
+        // The caches only follow single sends; drop what the import made stale
+        accepted.forEach(tailCache::invalidate);
+        if (!accepted.isEmpty()) recentChatsCache.invalidate(userId);
+
+        System.out.println("📥 Imported " + imported + " messages into " + accepted.size() + " conversations");
+        return new ImportResult(imported, skipped, accepted.size());
+    }
+
+    // ---------- HELPERS ----------
+
+    private Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER);
+    }
+
+    private void writeConversation(String conversationId, Writer writer) throws IOException {
+        // Archive first (oldest); hot copies of anything archived are skipped
+        long archivedUpTo = Long.MIN_VALUE;
+
+        try (Stream<Message> archived = archive.streamConversation(conversationId)) {
+            Iterator<Message> it = archived.iterator();
+            while (it.hasNext()) {
+                Message m = it.next();
+                writeLine(m, writer);
+                archivedUpTo = Math.max(archivedUpTo, m.getSeq());
+            }
+        }
+
+        try (Stream<Message> hot = messageRepo.streamConversation(conversationId)) {
+            Iterator<Message> it = hot.iterator();
+            while (it.hasNext()) {
+                Message m = it.next();
+                if (m.getSeq() > archivedUpTo) writeLine(m, writer);
+            }
+        }
+    }
+
+    private void writeLine(Message m, Writer writer) throws IOException {
+        writer.write(objectMapper.writeValueAsString(MessageExportLine.of(m)));
+        writer.write('\n');
+    }
+
+    private Message parse(String raw, long lineNumber, String userId) {
+        MessageExportLine line;
+        try {
+            line = objectMapper.readValue(raw, MessageExportLine.class);
+        } catch (JacksonException e) {
+            throw new BadRequestException("Invalid NDJSON at line " + lineNumber);
+        }
+
+        if (line.senderId == null || line.receiverId == null || line.content == null
+                || line.seq == null || line.timestamp == null) {
+            throw new BadRequestException("Missing fields at line " + lineNumber);
+        }
+        if (!userId.equals(line.senderId) && !userId.equals(line.receiverId)) {
+            throw new BadRequestException("Line " + lineNumber + " is not one of your messages");
+        }
+
+        Message m = new Message();
+        m.setId(line.id != null && ObjectId.isValid(line.id) ? line.id : new ObjectId().toHexString());
+        m.setConversationId(Conversation.directId(line.senderId, line.receiverId));
+        m.setSenderId(line.senderId);
+        m.setReceiverId(line.receiverId);
+        m.setContent(line.content);
+        m.setSeq(line.seq);
+        try {
+            m.setTimestamp(Instant.parse(line.timestamp));
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid timestamp at line " + lineNumber);
+        }
+        return m;
+    }
+
+    private boolean hasMessages(String conversationId) {
+        return conversationRepo.findById(conversationId)
+                .map(conv -> conv.getSeq() > 0)
+                .orElse(false);
+    }
+
+    private int flush(List<Message> batch) {
+        messageRepo.appendAll(batch);
+
+        Map<String, Message> newest = batch.stream().collect(Collectors.toMap(
+                Message::getConversationId,
+                m -> m,
+                (a, b) -> MessageRepositoryImpl.KEYSET.compare(a, b) >= 0 ? a : b
+        ));
+        newest.forEach(conversationRepo::recordImport);
+
+        searchService.indexAll(batch);
+        return batch.size();
+    }
+}
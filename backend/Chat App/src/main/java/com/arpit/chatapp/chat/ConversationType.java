@@ -0,0 +1,13 @@
+package com.arpit.chatapp.chat;
+
+/**
+ * What a conversation is; documents without a type are {@link #DIRECT}.
+ */
+public enum ConversationType {
+
+    // Two people; participants and per-user state live on the conversation
+    DIRECT,
+
+    // Any number of members; membership and read state live in group_members
+    GROUP
+}
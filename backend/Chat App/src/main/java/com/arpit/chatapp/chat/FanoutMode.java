@@ -0,0 +1,13 @@
+package com.arpit.chatapp.chat;
+
+/**
+ * How a group send reaches its members' unread state (see {@link GroupFanout}).
+ */
+public enum FanoutMode {
+
+    // Every send bumps each member's counter: reads are free, sends cost one write per member
+    WRITE,
+
+    // Sends touch only the conversation; unread = conversation seq - member's readSeq, worked out on read
+    READ
+}
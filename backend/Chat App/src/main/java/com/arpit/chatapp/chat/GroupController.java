@@ -0,0 +1,73 @@
+package com.arpit.chatapp.chat;
+
+import com.arpit.chatapp.security.CurrentUser;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/users/me/groups")
+public class GroupController {
+
+    private final GroupService groupService;
+
+    public GroupController(GroupService groupService) {
+        this.groupService = groupService;
+    }
+
+    // ✅ CREATE GROUP
+    @PostMapping
+    public GroupResponse createGroup(
+            @RequestBody GroupRequest body,
+            HttpServletRequest request
+    ) {
+        return groupService.createGroup(CurrentUser.of(request), body.getName(), body.getMemberIds());
+    }
+
+    // ✅ MEMBERS
+    @PostMapping("/{groupId}/members")
+    public GroupResponse addMembers(
+            @PathVariable String groupId,
+            @RequestBody GroupRequest body,
+            HttpServletRequest request
+    ) {
+        return groupService.addMembers(CurrentUser.of(request), groupId, body.getMemberIds());
+    }
+
+    @DeleteMapping("/{groupId}/members/me")
+    public void leaveGroup(
+            @PathVariable String groupId,
+            HttpServletRequest request
+    ) {
+        groupService.leaveGroup(CurrentUser.of(request), groupId);
+    }
+
+    // ✅ SEND / HISTORY / READ
+    @PostMapping("/{groupId}/messages")
+    public SendMessageResponse sendMessage(
+            @PathVariable String groupId,
+            @RequestBody SendMessageRequest body,
+            HttpServletRequest request
+    ) {
+        return groupService.sendMessage(CurrentUser.of(request), groupId, body.getContent(), body.getClientMessageId());
+    }
+
+    // Same cursors as direct history: ?before= pages back, ?after= catches up
+    @GetMapping("/{groupId}/messages")
+    public MessagePageResponse getMessages(
+            @PathVariable String groupId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            HttpServletRequest request
+    ) {
+        return groupService.getMessages(CurrentUser.of(request), groupId, before, after, limit);
+    }
+
+    @PostMapping("/{groupId}/read")
+    public void markRead(
+            @PathVariable String groupId,
+            HttpServletRequest request
+    ) {
+        groupService.markRead(CurrentUser.of(request), groupId);
+    }
+}
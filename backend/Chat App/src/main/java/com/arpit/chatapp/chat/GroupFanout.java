@@ -0,0 +1,96 @@
+package com.arpit.chatapp.chat;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides how a group send reaches its members' unread state.
+ * <p>
+ * Small groups fan out on write: each send bumps every member's counter
+ * in one multi-document update, so listing chats is a plain read. Past
+ * {@code fanout-on-read-above} members that update gets too expensive, so
+ * large groups fan out on read: a send touches only the conversation and
+ * the sender's own row, and unread is conversation seq minus the member's
+ * readSeq, worked out when the chat list is built.
+ * <p>
+ * The mode follows the member count and is re-checked on every membership
+ * change. Switching to WRITE rebuilds the counters from read positions.
+ */
+@Component
+public class GroupFanout {
+
+    private final GroupMemberRepository memberRepo;
+    private final ConversationRepository conversationRepo;
+    private final int readAbove;
+
+    private final AtomicLong writeSends = new AtomicLong();
+    private final AtomicLong readSends = new AtomicLong();
+    private final AtomicLong memberWrites = new AtomicLong();
+
+    public GroupFanout(
+            GroupMemberRepository memberRepo,
+            ConversationRepository conversationRepo,
+            @Value("${chat.group.fanout-on-read-above:100}") int readAbove,
+            MeterRegistry meterRegistry
+    ) {
+        this.memberRepo = memberRepo;
+        this.conversationRepo = conversationRepo;
+        this.readAbove = readAbove;
+
+        FunctionCounter.builder("chat.group.sends", writeSends, AtomicLong::get)
+                .tag("fanout", "write").register(meterRegistry);
+        FunctionCounter.builder("chat.group.sends", readSends, AtomicLong::get)
+                .tag("fanout", "read").register(meterRegistry);
+        FunctionCounter.builder("chat.group.member-writes", memberWrites, AtomicLong::get).register(meterRegistry);
+    }
+
+    public FanoutMode modeFor(int memberCount) {
+        return memberCount > readAbove ? FanoutMode.READ : FanoutMode.WRITE;
+    }
+
+    /**
+     * Applies a send at {@code seq} to the members' state.
+     * @return member documents written (the write amplification of this send)
+     */
+    public long onSend(Conversation group, String senderId, long seq) {
+        long written;
+
+        if (group.getFanout() == FanoutMode.READ) {
+            memberRepo.recordOwnSend(group.getId(), senderId, seq);
+            written = 1;
+            readSends.incrementAndGet();
+        } else {
+            written = memberRepo.recordSend(group.getId(), senderId, seq);
+            writeSends.incrementAndGet();
+        }
+
+        memberWrites.addAndGet(written);
+        return written;
+    }
+
+    public int unread(Conversation group, GroupMember member) {
+        if (group.getFanout() == FanoutMode.READ) {
+            return (int) Math.max(0, group.getSeq() - member.getReadSeq());
+        }
+        return member.getUnread();
+    }
+
+    // After a membership change: move the group to the mode its size calls for
+    public void rebalance(Conversation group) {
+        FanoutMode current = group.getFanout();
+        FanoutMode wanted = modeFor(group.getMemberCount());
+        if (current == wanted) return;
+
+        if (!conversationRepo.switchFanout(group.getId(), current, wanted)) return;
+
+        // Counters weren't kept while on READ; a send racing this may be counted twice until read
+        if (wanted == FanoutMode.WRITE) {
+            Conversation now = conversationRepo.findById(group.getId()).orElse(group);
+            memberRepo.rebuildUnread(group.getId(), now.getSeq());
+        }
+    }
+}
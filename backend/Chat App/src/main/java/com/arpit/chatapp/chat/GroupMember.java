@@ -0,0 +1,73 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One member of a group conversation and their read state. Kept out of
+ * the conversation document so a group of thousands doesn't turn every
+ * send into a rewrite of a huge document.
+ */
+@Document(collection = "group_members")
+@CompoundIndexes({
+        @CompoundIndex(name = "conv_user", def = "{ 'conversationId': 1, 'userId': 1 }"),
+        @CompoundIndex(name = "user_joined", def = "{ 'userId': 1, 'joinedAt': -1 }")
+})
+public class GroupMember {
+
+    // conversationId + ":" + userId
+    @Id
+    private String id;
+
+    private String conversationId;
+    private String userId;
+    private Instant joinedAt;
+
+    // Highest seq this member has read (or sent)
+    private long readSeq;
+
+    // Maintained only while the group fans out on write
+    private int unread;
+
+    public static String idFor(String conversationId, String userId) {
+        return conversationId + ":" + userId;
+    }
+
+    public static GroupMember of(String conversationId, String userId, long readSeq) {
+        GroupMember member = new GroupMember();
+        member.id = idFor(conversationId, userId);
+        member.conversationId = conversationId;
+        member.userId = userId;
+        member.joinedAt = Instant.now();
+        member.readSeq = readSeq;
+        return member;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Instant getJoinedAt() {
+        return joinedAt;
+    }
+
+    public long getReadSeq() {
+        return readSeq;
+    }
+
+    public int getUnread() {
+        return unread;
+    }
+}
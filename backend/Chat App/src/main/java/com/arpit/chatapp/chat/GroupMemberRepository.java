@@ -0,0 +1,12 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface GroupMemberRepository
+        extends MongoRepository<GroupMember, String>, GroupMemberRepositoryCustom {
+
+    // Every group the user is in
+    List<GroupMember> findByUserId(String userId);
+}
@@ -0,0 +1,26 @@
+package com.arpit.chatapp.chat;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Bulk statements over a group's members, each one round-trip
+ * however many members it touches.
+ */
+public interface GroupMemberRepositoryCustom {
+
+    // Fan-out on write: every other member's counter +1, the sender's read position moves to seq
+    long recordSend(String conversationId, String senderId, long seq);
+
+    // Fan-out on read: only the sender's read position moves
+    void recordOwnSend(String conversationId, String senderId, long seq);
+
+    // Read position to seq ($max) and counter to zero
+    void markRead(String conversationId, String userId, long seq);
+
+    // Switching to fan-out on write: counters rebuilt from the read positions
+    void rebuildUnread(String conversationId, long seq);
+
+    // Member ids in batches of up to batchSize, streamed off one cursor
+    void forEachMemberBatch(String conversationId, int batchSize, Consumer<List<String>> batch);
+}
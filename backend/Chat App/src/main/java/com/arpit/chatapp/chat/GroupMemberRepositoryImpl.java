@@ -0,0 +1,110 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class GroupMemberRepositoryImpl implements GroupMemberRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public GroupMemberRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public long recordSend(String conversationId, String senderId, long seq) {
+        // One pipeline update over all members: the sender reads up to seq, everyone else gets +1
+        ComparisonOperators.Eq isSender = ComparisonOperators.Eq
+                .valueOf("userId")
+                .equalToValue(senderId);
+
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("unread").toValue(ConditionalOperators
+                        .when(isSender)
+                        .thenValueOf("unread")
+                        .otherwiseValueOf(ArithmeticOperators.Add.valueOf("unread").add(1)))
+                .set("readSeq").toValue(ConditionalOperators
+                        .when(isSender)
+                        .thenValueOf(AccumulatorOperators.Max.maxOf("readSeq")
+                                .and(LiteralOperators.Literal.asLiteral(seq)))
+                        .otherwiseValueOf("readSeq"));
+
+        return mongoTemplate.updateMulti(byConversation(conversationId), update, GroupMember.class)
+                .getModifiedCount();
+    }
+
+    @Override
+    public void recordOwnSend(String conversationId, String senderId, long seq) {
+        mongoTemplate.updateFirst(
+                byId(conversationId, senderId),
+                new Update().max("readSeq", seq),
+                GroupMember.class
+        );
+    }
+
+    @Override
+    public void markRead(String conversationId, String userId, long seq) {
+        mongoTemplate.updateFirst(
+                byId(conversationId, userId),
+                new Update().max("readSeq", seq).set("unread", 0),
+                GroupMember.class
+        );
+    }
+
+    @Override
+    public void rebuildUnread(String conversationId, long seq) {
+        // unread = max(0, seq - readSeq), per member, in one statement
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("unread").toValue(AccumulatorOperators.Max
+                        .maxOf(ArithmeticOperators.Subtract
+                                .valueOf(LiteralOperators.Literal.asLiteral(seq))
+                                .subtract("readSeq"))
+                        .and(LiteralOperators.Literal.asLiteral(0)));
+
+        mongoTemplate.updateMulti(byConversation(conversationId), update, GroupMember.class);
+    }
+
+    @Override
+    public void forEachMemberBatch(String conversationId, int batchSize, Consumer<List<String>> batch) {
+        Query query = byConversation(conversationId);
+        query.fields().include("userId");
+        query.cursorBatchSize(batchSize);
+
+        List<String> pending = new ArrayList<>(batchSize);
+        try (Stream<GroupMember> members = mongoTemplate.stream(query, GroupMember.class)) {
+            Iterator<GroupMember> it = members.iterator();
+            while (it.hasNext()) {
+                pending.add(it.next().getUserId());
+                if (pending.size() == batchSize) {
+                    batch.accept(pending);
+                    pending = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!pending.isEmpty()) batch.accept(pending);
+    }
+
+    // ---------- HELPERS ----------
+
+    private Query byConversation(String conversationId) {
+        return new Query(Criteria.where("conversationId").is(conversationId));
+    }
+
+    private Query byId(String conversationId, String userId) {
+        return new Query(Criteria.where("_id").is(GroupMember.idFor(conversationId, userId)));
+    }
+}
@@ -0,0 +1,7 @@
+package com.arpit.chatapp.chat;
+
+/**
+ * Published after a group message is stored; delivery to the members'
+ * sockets happens off the sender's thread (see GroupDelivery).
+ */
+public record GroupMessageSent(Message message, SendMessageResponse response) {}
@@ -0,0 +1,26 @@
+package com.arpit.chatapp.chat;
+
+import java.util.List;
+
+// Create a group (name + initial members) or add members to one (memberIds only)
+public class GroupRequest {
+
+    private String name;
+    private List<String> memberIds;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<String> getMemberIds() {
+        return memberIds;
+    }
+
+    public void setMemberIds(List<String> memberIds) {
+        this.memberIds = memberIds;
+    }
+}
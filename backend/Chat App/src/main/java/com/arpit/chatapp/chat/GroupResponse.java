@@ -0,0 +1,36 @@
+package com.arpit.chatapp.chat;
+
+public class GroupResponse {
+
+    private String conversationId;
+    private String name;
+    private int memberCount;
+    private FanoutMode fanout;
+
+    public GroupResponse(String conversationId, String name, int memberCount, FanoutMode fanout) {
+        this.conversationId = conversationId;
+        this.name = name;
+        this.memberCount = memberCount;
+        this.fanout = fanout;
+    }
+
+    public static GroupResponse of(Conversation group) {
+        return new GroupResponse(group.getId(), group.getName(), group.getMemberCount(), group.getFanout());
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMemberCount() {
+        return memberCount;
+    }
+
+    public FanoutMode getFanout() {
+        return fanout;
+    }
+}
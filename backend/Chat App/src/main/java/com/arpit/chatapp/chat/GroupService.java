@@ -0,0 +1,190 @@
+package com.arpit.chatapp.chat;
+
+import com.arpit.chatapp.exception.BadRequestException;
+import com.arpit.chatapp.exception.NotFoundException;
+import com.arpit.chatapp.exception.UnauthorizedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Group conversations: membership, sends and history.
+ * <p>
+ * A group send costs one counter bump, one message write and one
+ * conversation update like a direct send, plus whatever the group's
+ * {@link FanoutMode} costs (see {@link GroupFanout}). Socket delivery is
+ * published as a {@link GroupMessageSent} event and done in batches off
+ * the sender's thread.
+ */
+@Service
+public class GroupService {
+
+    private final ConversationRepository conversationRepo;
+    private final GroupMemberRepository memberRepo;
+    private final GroupFanout fanout;
+    private final ChatService chatService;
+    private final SendDeduplicator deduplicator;
+    private final ApplicationEventPublisher events;
+
+    private final int maxMembers;
+
+    public GroupService(
+            ConversationRepository conversationRepo,
+            GroupMemberRepository memberRepo,
+            GroupFanout fanout,
+            ChatService chatService,
+            SendDeduplicator deduplicator,
+            ApplicationEventPublisher events,
+            @Value("${chat.group.max-members:5000}") int maxMembers
+    ) {
+        this.conversationRepo = conversationRepo;
+        this.memberRepo = memberRepo;
+        this.fanout = fanout;
+        this.chatService = chatService;
+        this.deduplicator = deduplicator;
+        this.events = events;
+        this.maxMembers = maxMembers;
+    }
+
+    // ✅ CREATE
+    public GroupResponse createGroup(String creatorId, String name, List<String> memberIds) {
+        if (creatorId == null || name == null || name.isBlank()) {
+            throw new BadRequestException("Invalid group data");
+        }
+
+        Set<String> members = new LinkedHashSet<>();
+        members.add(creatorId);
+        if (memberIds != null) members.addAll(memberIds);
+        members.remove(null);
+
+        if (members.size() > maxMembers) {
+            throw new BadRequestException("Groups are limited to " + maxMembers + " members");
+        }
+
+        Conversation group = new Conversation();
+        group.setId(Conversation.newGroupId());
+        group.setType(ConversationType.GROUP);
+        group.setName(name.trim());
+        group.setParticipantIds(List.of());
+        group.setMemberCount(members.size());
+        group.setFanout(fanout.modeFor(members.size()));
+        group.setLastUpdated(Instant.now());
+        conversationRepo.insert(group);
+
+        memberRepo.insert(members.stream()
+                .map(userId -> GroupMember.of(group.getId(), userId, 0))
+                .toList());
+
+        return GroupResponse.of(group);
+    }
+
+    // ✅ MEMBERSHIP
+
+    // New members start caught up: nothing sent before they joined counts as unread
+    public GroupResponse addMembers(String userId, String groupId, List<String> memberIds) {
+        Conversation group = requireMember(userId, groupId);
+        if (memberIds == null || memberIds.isEmpty()) return GroupResponse.of(group);
+
+        Set<String> candidates = new LinkedHashSet<>(memberIds);
+        candidates.remove(null);
+        memberRepo.findAllById(candidates.stream().map(id -> GroupMember.idFor(groupId, id)).toList())
+                .forEach(existing -> candidates.remove(existing.getUserId()));
+
+        if (candidates.isEmpty()) return GroupResponse.of(group);
+        if (group.getMemberCount() + candidates.size() > maxMembers) {
+            throw new BadRequestException("Groups are limited to " + maxMembers + " members");
+        }
+
+        List<GroupMember> added = new ArrayList<>();
+        for (String memberId : candidates) {
+            added.add(GroupMember.of(groupId, memberId, group.getSeq()));
+        }
+        memberRepo.insert(added);
+
+        Conversation updated = conversationRepo.changeMemberCount(groupId, added.size());
+        fanout.rebalance(updated);
+        return GroupResponse.of(updated);
+    }
+
+    public void leaveGroup(String userId, String groupId) {
+        requireMember(userId, groupId);
+
+        memberRepo.deleteById(GroupMember.idFor(groupId, userId));
+        Conversation updated = conversationRepo.changeMemberCount(groupId, -1);
+        fanout.rebalance(updated);
+    }
+
+    // ✅ SEND
+    public SendMessageResponse sendMessage(String senderId, String groupId, String content, String clientMessageId) {
+        if (senderId == null || groupId == null || content == null) {
+            throw new BadRequestException("Invalid message data");
+        }
+
+        return deduplicator.send(
+                senderId,
+                groupId,
+                clientMessageId,
+                () -> send(senderId, groupId, content, clientMessageId)
+        );
+    }
+
+    private SendMessageResponse send(String senderId, String groupId, String content, String clientMessageId) {
+        // Membership only: nextGroupSeq below is the group lookup
+        if (!memberRepo.existsById(GroupMember.idFor(groupId, senderId))) {
+            throw new UnauthorizedException("Not a member of this group");
+        }
+
+        // Next position (holes are possible if the store below fails); the returned
+        // document also carries the current fan-out mode
+        Conversation group = conversationRepo.nextGroupSeq(groupId);
+        if (group == null) throw new NotFoundException("Group not found");
+
+        Message message = new Message();
+        message.setConversationId(groupId);
+        message.setSenderId(senderId);
+        message.setContent(content);
+        message.setClientMessageId(clientMessageId);
+        message.setSeq(group.getSeq());
+
+        message = chatService.store(message);
+        fanout.onSend(group, senderId, message.getSeq());
+
+        SendMessageResponse response = chatService.toSendResponse(message);
+        events.publishEvent(new GroupMessageSent(message, response));
+        return response;
+    }
+
+    // ✅ HISTORY / READ
+    public MessagePageResponse getMessages(String userId, String groupId, String before, String after, int limit) {
+        requireMember(userId, groupId);
+        return chatService.getConversationPage(groupId, before, after, limit);
+    }
+
+    public void markRead(String userId, String groupId) {
+        requireMember(userId, groupId);
+        chatService.markMessagesAsRead(groupId, userId);
+    }
+
+    // ---------- HELPERS ----------
+
+    private Conversation requireMember(String userId, String groupId) {
+        if (userId == null || groupId == null) {
+            throw new BadRequestException("Invalid group request");
+        }
+
+        Conversation group = conversationRepo.findById(groupId)
+                .filter(Conversation::isGroup)
+                .orElseThrow(() -> new NotFoundException("Group not found"));
+
+        if (!memberRepo.existsById(GroupMember.idFor(groupId, userId))) {
+            throw new UnauthorizedException("Not a member of this group");
+        }
+        return group;
+    }
+}
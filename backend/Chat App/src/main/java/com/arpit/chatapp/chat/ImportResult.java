@@ -0,0 +1,29 @@
+package com.arpit.chatapp.chat;
+
+public class ImportResult {
+
+    private long imported;
+
+    // Lines of conversations that already had messages here
+    private long skipped;
+
+    private int conversations;
+
+    public ImportResult(long imported, long skipped, int conversations) {
+        this.imported = imported;
+        this.skipped = skipped;
+        this.conversations = conversations;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public int getConversations() {
+        return conversations;
+    }
+}
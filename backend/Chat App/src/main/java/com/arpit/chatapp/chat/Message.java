@@ -1,11 +1,26 @@
 package com.arpit.chatapp.chat;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
 @Document(collection = "messages")
+@CompoundIndexes({
+        // History order and cursor key
+        @CompoundIndex(name = "conv_seq", def = "{ 'conversationId': 1, 'seq': -1 }"),
+        // Arrival order of messages that predate seq (MessageSeqMigration)
+        @CompoundIndex(name = "conv_ts_id", def = "{ 'conversationId': 1, 'timestamp': -1, '_id': -1 }"),
+        // Delta sync: one user's changes in sequence order, per side
+        @CompoundIndex(name = "sender_seq", def = "{ 'senderId': 1, 'senderSeq': 1 }"),
+        @CompoundIndex(name = "receiver_seq", def = "{ 'receiverId': 1, 'receiverSeq': 1 }"),
+        // Idempotent sends: a client message id is stored once per sender (see SendDeduplicator).
+        // Partial, not sparse: senderId is always there, so a sparse index would cover every message
+        @CompoundIndex(name = "sender_client_message_id", def = "{ 'senderId': 1, 'clientMessageId': 1 }",
+                unique = true, partialFilter = "{ 'clientMessageId': { '$exists': true } }")
+})
 public class Message {
 
     @Id
@@ -17,6 +32,21 @@ public class Message {
     private String content;
     private Instant timestamp = Instant.now();
 
+    // Set when content is stored compressed: content is then null and
+    // packedContent holds it, decoded only when someone reads it
+    private ContentCodec codec;
+    private byte[] packedContent;
+
+    // Position in the conversation: 1, 2, 3... assigned by Conversation's counter
+    private Long seq;
+
+    // Position in each participant's change sequence (see UserSequence)
+    private Long senderSeq;
+    private Long receiverSeq;
+
+    // The sender's retry key, when the client supplied one (see SendDeduplicator)
+    private String clientMessageId;
+
     private boolean isRead = false;
 
 
@@ -40,13 +70,38 @@ public class Message {
     }
 
     public String getContent() {
-        return content;
+        return codec != null ? codec.decode(packedContent) : content;
+    }
+
+    public ContentCodec getCodec() {
+        return codec;
+    }
+
+    public byte[] getPackedContent() {
+        return packedContent;
     }
 
     public Instant getTimestamp() {
         return timestamp;
     }
 
+    public Long getSeq() {
+        return seq;
+    }
+
+    public Long getSenderSeq() {
+        return senderSeq;
+    }
+
+    public Long getReceiverSeq() {
+        return receiverSeq;
+    }
+
+    // The sequence number this message has in userId's stream
+    public Long seqFor(String userId) {
+        return userId.equals(senderId) ? senderSeq : receiverSeq;
+    }
+
     public void setId(String id) {
         this.id = id;
     }
@@ -65,9 +120,37 @@ public class Message {
 
     public void setContent(String content) {
         this.content = content;
+        this.codec = null;
+        this.packedContent = null;
+    }
+
+    public void setPackedContent(ContentCodec codec, byte[] packedContent) {
+        this.content = null;
+        this.codec = codec;
+        this.packedContent = packedContent;
     }
 
     public void setTimestamp(Instant timestamp) {
         this.timestamp = timestamp;
     }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public void setSenderSeq(Long senderSeq) {
+        this.senderSeq = senderSeq;
+    }
+
+    public void setReceiverSeq(Long receiverSeq) {
+        this.receiverSeq = receiverSeq;
+    }
+
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
 }
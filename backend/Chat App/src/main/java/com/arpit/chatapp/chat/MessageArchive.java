@@ -0,0 +1,147 @@
+package com.arpit.chatapp.chat;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier of message history: compressed per-conversation segments in
+ * {@code message_archive}. Written by {@link MessageArchiver}; read only
+ * when paging goes past what the hot collection still holds.
+ */
+@Component
+public class MessageArchive {
+
+    // Extended JSON keeps longs, dates and binaries exact through the round-trip
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+
+    private final MongoTemplate mongoTemplate;
+
+    public MessageArchive(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Writes one segment from consecutive messages (oldest first).
+     * Idempotent: the same run always lands on the same segment id.
+     */
+    public void write(String conversationId, List<Message> messages) {
+        List<Document> entries = new ArrayList<>(messages.size());
+        for (Message m : messages) {
+            Document entry = new Document();
+            mongoTemplate.getConverter().write(m, entry);
+            entry.remove("conversationId");
+            entry.remove("_class");
+            entries.add(entry);
+        }
+
+        Message first = messages.get(0);
+        Message last = messages.get(messages.size() - 1);
+
+        MessageArchiveSegment segment = new MessageArchiveSegment();
+        segment.setId(MessageArchiveSegment.idFor(conversationId, first.getSeq()));
+        segment.setConversationId(conversationId);
+        segment.setMinSeq(first.getSeq());
+        segment.setMaxSeq(last.getSeq());
+        segment.setMinTimestamp(first.getTimestamp());
+        segment.setMaxTimestamp(last.getTimestamp());
+        segment.setCount(messages.size());
+        segment.setCodec(ContentCodec.DEFLATE);
+        segment.setPayload(ContentCodec.DEFLATE.encode(new Document("m", entries).toJson(JSON)));
+
+        mongoTemplate.save(segment);
+    }
+
+    /**
+     * Same contract as {@link MessageRepositoryCustom#findHistory}, over the archive.
+     */
+    public List<Message> findHistory(String conversationId, MessageCursor before, MessageCursor after, int limit) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        if (before != null) criteria.and("minSeq").lt(before.getSeq());
+        if (after != null) criteria.and("maxSeq").gt(after.getSeq());
+
+        Sort sort = after != null
+                ? Sort.by(Sort.Direction.ASC, "maxSeq")
+                : Sort.by(Sort.Direction.DESC, "maxSeq");
+
+        Comparator<Message> order = after != null
+                ? MessageRepositoryImpl.KEYSET
+                : MessageRepositoryImpl.KEYSET.reversed();
+
+        // Segments stream in order off the cursor until the page is full
+        List<Message> rows = new ArrayList<>();
+        try (Stream<MessageArchiveSegment> segments =
+                     mongoTemplate.stream(new Query(criteria).with(sort), MessageArchiveSegment.class)) {
+            Iterator<MessageArchiveSegment> it = segments.iterator();
+
+            while (it.hasNext() && rows.size() < limit) {
+                decode(it.next()).stream()
+                        .filter(m -> before == null || m.getSeq() < before.getSeq())
+                        .filter(m -> after == null || m.getSeq() > after.getSeq())
+                        .sorted(order)
+                        .forEach(rows::add);
+            }
+        }
+
+        return rows.size() > limit ? rows.subList(0, limit) : rows;
+    }
+
+    /**
+     * Archived messages of one conversation by id, for search hits that
+     * are no longer hot. Only segments overlapping [from, to] are read.
+     */
+    public List<Message> findByIds(String conversationId, Collection<String> ids, Instant from, Instant to) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId)
+                .and("minTimestamp").lte(to)
+                .and("maxTimestamp").gte(from));
+
+        Set<String> wanted = Set.copyOf(ids);
+        return mongoTemplate.find(query, MessageArchiveSegment.class).stream()
+                .flatMap(segment -> decode(segment).stream())
+                .filter(m -> wanted.contains(m.getId()))
+                .toList();
+    }
+
+    /**
+     * Every archived message of a conversation in seq order, one segment
+     * in memory at a time. Close the stream when done.
+     */
+    public Stream<Message> streamConversation(String conversationId) {
+        return mongoTemplate.stream(
+                        new Query(Criteria.where("conversationId").is(conversationId))
+                                .with(Sort.by(Sort.Direction.ASC, "maxSeq")),
+                        MessageArchiveSegment.class)
+                .flatMap(segment -> decode(segment).stream().sorted(MessageRepositoryImpl.KEYSET));
+    }
+
+    // ---------- HELPERS ----------
+
+    @SuppressWarnings("unchecked")
+    private List<Message> decode(MessageArchiveSegment segment) {
+        Document document = Document.parse(segment.getCodec().decode(segment.getPayload()));
+
+        List<Message> messages = new ArrayList<>(segment.getCount());
+        for (Document entry : (List<Document>) document.get("m")) {
+            Message m = mongoTemplate.getConverter().read(Message.class, entry);
+            m.setConversationId(segment.getConversationId());
+            messages.add(m);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,108 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A run of consecutive archived messages of one conversation, stored as a
+ * single compressed blob. Cold history costs one small index entry per
+ * segment instead of one per message in every hot index.
+ */
+@Document(collection = "message_archive")
+@CompoundIndex(name = "conv_max_seq", def = "{ 'conversationId': 1, 'maxSeq': -1 }")
+public class MessageArchiveSegment {
+
+    // conversationId + ":" + minSeq, so re-archiving the same run overwrites it
+    @Id
+    private String id;
+
+    private String conversationId;
+    private long minSeq;
+    private long maxSeq;
+    private Instant minTimestamp;
+    private Instant maxTimestamp;
+    private int count;
+
+    // Messages (without conversationId) as one document, compressed with codec
+    private ContentCodec codec;
+    private byte[] payload;
+
+    public static String idFor(String conversationId, long minSeq) {
+        return conversationId + ":" + minSeq;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public long getMinSeq() {
+        return minSeq;
+    }
+
+    public long getMaxSeq() {
+        return maxSeq;
+    }
+
+    public Instant getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public Instant getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public ContentCodec getCodec() {
+        return codec;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public void setMinSeq(long minSeq) {
+        this.minSeq = minSeq;
+    }
+
+    public void setMaxSeq(long maxSeq) {
+        this.maxSeq = maxSeq;
+    }
+
+    public void setMinTimestamp(Instant minTimestamp) {
+        this.minTimestamp = minTimestamp;
+    }
+
+    public void setMaxTimestamp(Instant maxTimestamp) {
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public void setCodec(ContentCodec codec) {
+        this.codec = codec;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+}
@@ -0,0 +1,146 @@
+package com.arpit.chatapp.chat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Moves messages older than {@code chat.archive.after} out of the hot
+ * collection into {@link MessageArchive} segments, so the hot indexes only
+ * cover recent history.
+ * <p>
+ * Per conversation, oldest first: write a segment, raise the conversation's
+ * archivedUpTo, then delete the hot copies. A crash between steps leaves
+ * messages in both tiers, which readers tolerate and the next run repairs
+ * (segment ids are deterministic). Off by default.
+ */
+@Component
+public class MessageArchiver {
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageRepository messageRepo;
+    private final ConversationRepository conversationRepo;
+    private final MessageArchive archive;
+    private final ClusterLease lease;
+
+    static final String LEASE_NAME = "message-archiver";
+    // Renewed per segment, so it only lapses if the holder stalls or dies
+    private static final Duration LEASE = Duration.ofMinutes(10);
+
+    private final boolean enabled;
+    private final Duration after;
+    private final int segmentSize;
+    private final Duration initialDelay;
+    private final Duration interval;
+
+    private ScheduledExecutorService scheduler;
+
+    public MessageArchiver(
+            MongoTemplate mongoTemplate,
+            MessageRepository messageRepo,
+            ConversationRepository conversationRepo,
+            MessageArchive archive,
+            ClusterLease lease,
+            @Value("${chat.archive.enabled:false}") boolean enabled,
+            @Value("${chat.archive.after:30d}") Duration after,
+            @Value("${chat.archive.segment-size:500}") int segmentSize,
+            @Value("${chat.archive.initial-delay:PT5M}") Duration initialDelay,
+            @Value("${chat.archive.interval:PT1H}") Duration interval
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageRepo = messageRepo;
+        this.conversationRepo = conversationRepo;
+        this.archive = archive;
+        this.lease = lease;
+        this.enabled = enabled;
+        this.after = after;
+        this.segmentSize = segmentSize;
+        this.initialDelay = initialDelay;
+        this.interval = interval;
+    }
+
+    // Its own thread: a long pass must not hold up the shared scheduler (socket sweeps, presence pushes)
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "message-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                run();
+            } catch (RuntimeException e) {
+                System.out.println("⚠️ Archive pass failed: " + e.getMessage());
+            }
+        }, initialDelay.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    public void run() {
+        if (!enabled) return;
+
+        // One node archives at a time; the others skip this round
+        if (!lease.acquire(LEASE_NAME, LEASE)) return;
+        try {
+            archiveColdPrefixes();
+        } finally {
+            lease.release(LEASE_NAME);
+        }
+    }
+
+    // ---------- HELPERS ----------
+
+    private void archiveColdPrefixes() {
+        Instant cutoff = Instant.now().minus(after);
+        long segments = 0;
+        long messages = 0;
+
+        // Conversations are few next to messages; walk their ids off a cursor
+        Query ids = new Query();
+        ids.fields().include("_id");
+
+        try (Stream<Conversation> stream = mongoTemplate.stream(ids, Conversation.class)) {
+            Iterator<Conversation> it = stream.iterator();
+
+            while (it.hasNext()) {
+                String conversationId = it.next().getId();
+
+                List<Message> cold;
+                while (!(cold = messageRepo.findColdPrefix(conversationId, cutoff, segmentSize)).isEmpty()) {
+                    lease.renew(LEASE_NAME, LEASE);
+                    long upTo = cold.get(cold.size() - 1).getSeq();
+
+                    archive.write(conversationId, cold);
+                    conversationRepo.markArchived(conversationId, upTo);
+                    messageRepo.deleteUpTo(conversationId, upTo);
+
+                    segments++;
+                    messages += cold.size();
+                }
+            }
+        }
+
+        if (messages > 0) {
+            System.out.println("🧊 Archived " + messages + " messages into " + segments + " segments");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bucketed layout: consecutive messages of one conversation in a single
+ * document, so a history page touches one or two documents and one index
+ * entry each instead of one per message.
+ */
+@Document(collection = "message_buckets")
+@CompoundIndexes({
+        @CompoundIndex(name = "conv_max_seq", def = "{ 'conversationId': 1, 'maxSeq': -1 }"),
+        // Point lookups of single messages (search results)
+        @CompoundIndex(name = "messages_id", def = "{ 'messages._id': 1 }"),
+        // Delta sync ($elemMatch per side)
+        @CompoundIndex(name = "messages_sender_seq", def = "{ 'messages.senderId': 1, 'messages.senderSeq': 1 }"),
+        @CompoundIndex(name = "messages_receiver_seq", def = "{ 'messages.receiverId': 1, 'messages.receiverSeq': 1 }")
+})
+public class MessageBucket {
+
+    @Id
+    private String id;
+
+    private String conversationId;
+    private Instant minTimestamp;
+    private Instant maxTimestamp;
+    private Long minSeq;
+    private Long maxSeq;
+    private int count;
+
+    // Oldest first; conversationId is left off each entry (it's on the bucket)
+    private List<Message> messages = new ArrayList<>();
+
+    public String getId() {
+        return id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public Instant getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public Instant getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public Long getMinSeq() {
+        return minSeq;
+    }
+
+    public Long getMaxSeq() {
+        return maxSeq;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public void setMinTimestamp(Instant minTimestamp) {
+        this.minTimestamp = minTimestamp;
+    }
+
+    public void setMaxTimestamp(Instant maxTimestamp) {
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public void setMinSeq(Long minSeq) {
+        this.minSeq = minSeq;
+    }
+
+    public void setMaxSeq(Long maxSeq) {
+        this.maxSeq = maxSeq;
+    }
+}
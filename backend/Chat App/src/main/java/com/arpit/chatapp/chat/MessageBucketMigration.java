@@ -0,0 +1,117 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * One-shot rewrite of `messages` into `message_buckets`.
+ * <p>
+ * Streams the source through a cursor (conversation by conversation,
+ * oldest first) and writes full buckets with batched inserts, so memory
+ * stays at one flush worth of buckets whatever the collection size.
+ * The source collection is left untouched, so both layouts can be compared.
+ * Conversations that already have buckets are skipped on re-runs.
+ */
+@Component
+public class MessageBucketMigration {
+
+    private static final int BUCKETS_PER_INSERT = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int bucketSize;
+
+    public MessageBucketMigration(
+            MongoTemplate mongoTemplate,
+            @Value("${chat.migration.message-buckets.enabled:false}") boolean enabled,
+            @Value("${chat.storage.bucket-size:100}") int bucketSize
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.bucketSize = bucketSize;
+    }
+
+    // After ConversationIdMigration and MessageSeqMigration so buckets get final ids and seqs
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(3)
+    public void migrate() {
+        if (!enabled) return;
+
+        Set<String> done = new HashSet<>(mongoTemplate.findDistinct(
+                new Query(), "conversationId", MessageBucket.class, String.class));
+
+        // {conversationId: -1, seq: 1} is conv_seq walked backwards
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "conversationId")
+                .and(Sort.by(Sort.Direction.ASC, "seq")));
+
+        List<MessageBucket> pending = new ArrayList<>();
+        MessageBucket current = null;
+        long messages = 0;
+        long buckets = 0;
+
+        try (Stream<Message> stream = mongoTemplate.stream(query, Message.class)) {
+            Iterator<Message> it = stream.iterator();
+
+            while (it.hasNext()) {
+                Message m = it.next();
+                if (m.getConversationId() == null || done.contains(m.getConversationId())) continue;
+
+                boolean sameConversation = current != null
+                        && current.getConversationId().equals(m.getConversationId());
+
+                if (!sameConversation || current.getCount() >= bucketSize) {
+                    current = newBucket(m.getConversationId());
+                    pending.add(current);
+                    buckets++;
+                }
+
+                add(current, m);
+                messages++;
+
+                // Hold on to the bucket being filled; ship everything before it
+                if (pending.size() > BUCKETS_PER_INSERT) {
+                    mongoTemplate.insert(pending.subList(0, pending.size() - 1), MessageBucket.class);
+                    pending = new ArrayList<>(List.of(current));
+                }
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            mongoTemplate.insert(pending, MessageBucket.class);
+        }
+
+        System.out.println("🪣 Bucketed " + messages + " messages into " + buckets + " buckets");
+    }
+
+    // ---------- HELPERS ----------
+
+    private MessageBucket newBucket(String conversationId) {
+        MessageBucket bucket = new MessageBucket();
+        bucket.setConversationId(conversationId);
+        return bucket;
+    }
+
+    private void add(MessageBucket bucket, Message m) {
+        if (bucket.getMinTimestamp() == null) bucket.setMinTimestamp(m.getTimestamp());
+        bucket.setMaxTimestamp(m.getTimestamp());
+        if (bucket.getMinSeq() == null) bucket.setMinSeq(m.getSeq());
+        bucket.setMaxSeq(m.getSeq());
+        bucket.setCount(bucket.getCount() + 1);
+
+        m.setConversationId(null); // stored once on the bucket
+        bucket.getMessages().add(m);
+    }
+}
@@ -0,0 +1,49 @@
+package com.arpit.chatapp.chat;
+
+import com.arpit.chatapp.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor over a message's seq inside one conversation.
+ * Encoded as base64url("s" + seq) so clients never parse it.
+ */
+public class MessageCursor {
+
+    private static final String PREFIX = "s";
+
+    private final long seq;
+
+    public MessageCursor(long seq) {
+        this.seq = seq;
+    }
+
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getSeq());
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(
+                    Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.UTF_8
+            );
+            if (!raw.startsWith(PREFIX)) throw new IllegalArgumentException(raw);
+            return new MessageCursor(Long.parseLong(raw.substring(PREFIX.length())));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = PREFIX + seq;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+}
@@ -0,0 +1,33 @@
+package com.arpit.chatapp.chat;
+
+/**
+ * One NDJSON line of a conversation export / import.
+ * Per-user sync sequences are environment-local and not carried over.
+ */
+public class MessageExportLine {
+
+    public String conversationId;
+    public String id;
+    public Long seq;
+
+    public String senderId;
+    public String receiverId;
+    public String content;
+
+    // ISO-8601
+    public String timestamp;
+
+    public MessageExportLine() {}
+
+    public static MessageExportLine of(Message m) {
+        MessageExportLine line = new MessageExportLine();
+        line.conversationId = m.getConversationId();
+        line.id = m.getId();
+        line.seq = m.getSeq();
+        line.senderId = m.getSenderId();
+        line.receiverId = m.getReceiverId();
+        line.content = m.getContent();
+        line.timestamp = m.getTimestamp().toString();
+        return line;
+    }
+}
@@ -0,0 +1,13 @@
+package com.arpit.chatapp.chat;
+
+/**
+ * How messages are laid out in Mongo ({@code chat.storage.layout}).
+ */
+public enum MessageLayout {
+
+    // One document per message in `messages`
+    DOCUMENT,
+
+    // Up to N consecutive messages of one conversation per document in `message_buckets`
+    BUCKET
+}
@@ -0,0 +1,45 @@
+package com.arpit.chatapp.chat;
+
+import java.util.List;
+
+public class MessagePageResponse {
+
+    // Oldest first, ready to render
+    private List<MessageResponse> messages;
+
+    // Pass as ?before= to load older messages (null when exhausted)
+    private String nextCursor;
+
+    // Pass as ?after= to load newer messages
+    private String prevCursor;
+
+    private boolean hasMore;
+
+    public MessagePageResponse(
+            List<MessageResponse> messages,
+            String nextCursor,
+            String prevCursor,
+            boolean hasMore
+    ) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<MessageResponse> getMessages() {
+        return messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
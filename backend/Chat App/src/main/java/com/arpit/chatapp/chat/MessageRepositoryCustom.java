@@ -0,0 +1,59 @@
+package com.arpit.chatapp.chat;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Message writes and history reads that work against either
+ * {@link MessageLayout}. Everything on the chat hot path goes through here.
+ */
+public interface MessageRepositoryCustom {
+
+    // Persist one message; its id is assigned on return.
+    // DuplicateKeyException when the sender already stored its clientMessageId
+    Message append(Message message);
+
+    /**
+     * Persist a batch in as few round-trips as the layout allows. Returns the
+     * messages that were stored, in order; one whose sender already stored
+     * its clientMessageId is left out, and the rest of the batch still goes in.
+     */
+    List<Message> appendAll(List<Message> messages);
+
+    // The message a sender stored under a client message id, or null
+    Message findByClientMessageId(String senderId, String clientMessageId);
+
+    /**
+     * Up to {@code limit} messages of a conversation in scan order:
+     * newest first, or oldest first when {@code after} is given.
+     * At most one of {@code before}/{@code after} may be set.
+     */
+    List<Message> findHistory(String conversationId, MessageCursor before, MessageCursor after, int limit);
+
+    // Point lookups by id, in no particular order; unknown ids are skipped
+    List<Message> findByIds(Collection<String> ids);
+
+    /**
+     * Delta sync: the user's messages (sent or received) whose sequence number
+     * in that user's stream is in ({@code since}, {@code upTo}], lowest first.
+     */
+    List<Message> findForSync(String userId, long since, long upTo, int limit);
+
+    /**
+     * Archiver: the oldest messages of a conversation, in seq order, up to the
+     * first one sent at or after {@code cutoff}. Bucket layout returns whole
+     * buckets, so it may go a little past {@code limit}.
+     */
+    List<Message> findColdPrefix(String conversationId, Instant cutoff, int limit);
+
+    // Archiver: drop hot copies of everything up to upToSeq once it is archived
+    void deleteUpTo(String conversationId, long upToSeq);
+
+    /**
+     * Every hot message of a conversation off a cursor, for export.
+     * Roughly seq order (exact within a bucket); close the stream when done.
+     */
+    Stream<Message> streamConversation(String conversationId);
+}
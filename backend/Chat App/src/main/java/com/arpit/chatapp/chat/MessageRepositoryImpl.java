@@ -0,0 +1,359 @@
+package com.arpit.chatapp.chat;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class MessageRepositoryImpl implements MessageRepositoryCustom {
+
+    // Keyset order: the per-conversation seq
+    static final Comparator<Message> KEYSET = Comparator.comparing(Message::getSeq);
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageLayout layout;
+    private final int bucketSize;
+    private final boolean compress;
+    private final int compressAboveBytes;
+
+    public MessageRepositoryImpl(
+            MongoTemplate mongoTemplate,
+            @Value("${chat.storage.layout:DOCUMENT}") MessageLayout layout,
+            @Value("${chat.storage.bucket-size:100}") int bucketSize,
+            @Value("${chat.storage.compression.enabled:true}") boolean compress,
+            @Value("${chat.storage.compression.threshold-bytes:1024}") int compressAboveBytes
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.layout = layout;
+        this.bucketSize = bucketSize;
+        this.compress = compress;
+        this.compressAboveBytes = compressAboveBytes;
+    }
+
+    @Override
+    public Message append(Message message) {
+        List<Message> stored = appendAll(List.of(message));
+        if (stored.isEmpty()) {
+            throw new DuplicateKeyException("clientMessageId " + message.getClientMessageId() + " is already stored");
+        }
+        return stored.get(0);
+    }
+
+    @Override
+    public List<Message> appendAll(List<Message> messages) {
+        if (messages.isEmpty()) return messages;
+
+        // Ids are ours to assign: embedded entries and bulk inserts get no _id back from the driver
+        messages.forEach(m -> {
+            if (m.getId() == null) m.setId(new ObjectId().toHexString());
+        });
+
+        if (layout == MessageLayout.DOCUMENT) {
+            // Insert the stored form; callers keep the plain-content objects.
+            // Unordered, so a duplicate client message id only drops that message
+            List<Message> stored = messages.stream().map(m -> storedForm(m, true)).toList();
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class)
+                        .insert(stored)
+                        .execute();
+                return messages;
+            } catch (BulkOperationException e) {
+                if (!e.getErrors().stream().allMatch(err -> err.getCode() == DUPLICATE_KEY)) throw e;
+
+                Set<Integer> duplicates = e.getErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+                List<Message> inserted = new ArrayList<>(messages.size() - duplicates.size());
+                for (int i = 0; i < messages.size(); i++) {
+                    if (!duplicates.contains(i)) inserted.add(messages.get(i));
+                }
+                return inserted;
+            }
+        }
+
+        // No unique index reaches inside buckets: here only SendDeduplicator's memory catches retries
+
+        Map<String, List<Message>> byConversation = messages.stream()
+                .collect(Collectors.groupingBy(Message::getConversationId, LinkedHashMap::new, Collectors.toList()));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MessageBucket.class);
+        byConversation.forEach((conversationId, batch) -> bulk.upsert(
+                openBucket(conversationId),
+                pushUpdate(conversationId, batch)
+        ));
+        bulk.execute();
+
+        return messages;
+    }
+
+    @Override
+    public Message findByClientMessageId(String senderId, String clientMessageId) {
+        if (layout == MessageLayout.DOCUMENT) {
+            return mongoTemplate.findOne(
+                    new Query(Criteria.where("senderId").is(senderId).and("clientMessageId").is(clientMessageId)),
+                    Message.class
+            );
+        }
+
+        Criteria entry = Criteria.where("senderId").is(senderId).and("clientMessageId").is(clientMessageId);
+        MessageBucket bucket = mongoTemplate.findOne(
+                new Query(Criteria.where("messages").elemMatch(entry)), MessageBucket.class);
+        if (bucket == null) return null;
+
+        return bucket.getMessages().stream()
+                .filter(m -> senderId.equals(m.getSenderId()) && clientMessageId.equals(m.getClientMessageId()))
+                .peek(m -> m.setConversationId(bucket.getConversationId()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Override
+    public List<Message> findHistory(String conversationId, MessageCursor before, MessageCursor after, int limit) {
+        return layout == MessageLayout.DOCUMENT
+                ? findDocumentHistory(conversationId, before, after, limit)
+                : findBucketHistory(conversationId, before, after, limit);
+    }
+
+    @Override
+    public List<Message> findByIds(Collection<String> ids) {
+        if (ids.isEmpty()) return List.of();
+
+        List<ObjectId> objectIds = ids.stream().map(ObjectId::new).toList();
+
+        if (layout == MessageLayout.DOCUMENT) {
+            return mongoTemplate.find(new Query(Criteria.where("_id").in(objectIds)), Message.class);
+        }
+
+        // messages_id (multikey) finds the buckets; then pick the entries out of them
+        Set<String> wanted = Set.copyOf(ids);
+        return mongoTemplate.find(new Query(Criteria.where("messages._id").in(objectIds)), MessageBucket.class)
+                .stream()
+                .flatMap(bucket -> bucket.getMessages().stream()
+                        .peek(m -> m.setConversationId(bucket.getConversationId())))
+                .filter(m -> wanted.contains(m.getId()))
+                .toList();
+    }
+
+    @Override
+    public List<Message> findForSync(String userId, long since, long upTo, int limit) {
+        Comparator<Message> bySeq = Comparator.comparing(m -> m.seqFor(userId));
+
+        if (layout == MessageLayout.DOCUMENT) {
+            // One indexed range scan per side, merged; a self-chat shows up on both
+            Map<String, Message> merged = new LinkedHashMap<>();
+            for (String side : List.of("sender", "receiver")) {
+                Query query = new Query(Criteria.where(side + "Id").is(userId)
+                        .and(side + "Seq").gt(since).lte(upTo))
+                        .with(Sort.by(Sort.Direction.ASC, side + "Seq"))
+                        .limit(limit);
+                mongoTemplate.find(query, Message.class).forEach(m -> merged.putIfAbsent(m.getId(), m));
+            }
+            return merged.values().stream().sorted(bySeq).limit(limit).toList();
+        }
+
+        // Buckets can't be ordered by an entry's seq, so read every bucket with a match
+        Criteria sent = Criteria.where("messages").elemMatch(
+                Criteria.where("senderId").is(userId).and("senderSeq").gt(since).lte(upTo));
+        Criteria received = Criteria.where("messages").elemMatch(
+                Criteria.where("receiverId").is(userId).and("receiverSeq").gt(since).lte(upTo));
+
+        return mongoTemplate.find(new Query(new Criteria().orOperator(sent, received)), MessageBucket.class)
+                .stream()
+                .flatMap(bucket -> bucket.getMessages().stream()
+                        .peek(m -> m.setConversationId(bucket.getConversationId())))
+                .filter(m -> userId.equals(m.getSenderId()) || userId.equals(m.getReceiverId()))
+                .filter(m -> m.seqFor(userId) != null && m.seqFor(userId) > since && m.seqFor(userId) <= upTo)
+                .sorted(bySeq)
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public List<Message> findColdPrefix(String conversationId, Instant cutoff, int limit) {
+        List<Message> oldest;
+
+        if (layout == MessageLayout.DOCUMENT) {
+            oldest = mongoTemplate.find(
+                    new Query(Criteria.where("conversationId").is(conversationId))
+                            .with(Sort.by(Sort.Direction.ASC, "seq"))
+                            .limit(limit),
+                    Message.class);
+        } else {
+            // Only buckets that are entirely cold; they move as a whole
+            Query query = new Query(Criteria.where("conversationId").is(conversationId)
+                    .and("maxTimestamp").lt(cutoff))
+                    .with(Sort.by(Sort.Direction.ASC, "minSeq"))
+                    .limit(Math.max(1, limit / bucketSize));
+
+            oldest = mongoTemplate.find(query, MessageBucket.class).stream()
+                    .flatMap(bucket -> bucket.getMessages().stream()
+                            .peek(m -> m.setConversationId(bucket.getConversationId())))
+                    .sorted(KEYSET)
+                    .toList();
+        }
+
+        // Stop at the first warm message, so the prefix is contiguous in seq
+        List<Message> prefix = new ArrayList<>();
+        for (Message m : oldest) {
+            if (!m.getTimestamp().isBefore(cutoff)) break;
+            prefix.add(m);
+        }
+        return prefix;
+    }
+
+    @Override
+    public void deleteUpTo(String conversationId, long upToSeq) {
+        if (layout == MessageLayout.DOCUMENT) {
+            mongoTemplate.remove(new Query(Criteria.where("conversationId").is(conversationId)
+                    .and("seq").lte(upToSeq)), Message.class);
+        } else {
+            mongoTemplate.remove(new Query(Criteria.where("conversationId").is(conversationId)
+                    .and("maxSeq").lte(upToSeq)), MessageBucket.class);
+        }
+    }
+
+    @Override
+    public Stream<Message> streamConversation(String conversationId) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+
+        if (layout == MessageLayout.DOCUMENT) {
+            return mongoTemplate.stream(
+                    new Query(criteria).with(Sort.by(Sort.Direction.ASC, "seq")),
+                    Message.class);
+        }
+
+        // Closing the flattened stream closes the bucket cursor
+        return mongoTemplate.stream(
+                        new Query(criteria).with(Sort.by(Sort.Direction.ASC, "maxSeq")),
+                        MessageBucket.class)
+                .flatMap(bucket -> bucket.getMessages().stream()
+                        .peek(m -> m.setConversationId(bucket.getConversationId()))
+                        .sorted(KEYSET));
+    }
+
+    // ---------- DOCUMENT LAYOUT ----------
+
+    private List<Message> findDocumentHistory(String conversationId, MessageCursor before, MessageCursor after, int limit) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+
+        if (before != null) {
+            criteria.and("seq").lt(before.getSeq());
+        } else if (after != null) {
+            criteria.and("seq").gt(after.getSeq());
+        }
+
+        // One ordered range scan of conv_seq, stopping at limit
+        Sort.Direction direction = after != null ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Query query = new Query(criteria)
+                .with(Sort.by(direction, "seq"))
+                .limit(limit);
+
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    // ---------- BUCKET LAYOUT ----------
+
+    private List<Message> findBucketHistory(String conversationId, MessageCursor before, MessageCursor after, int limit) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        if (before != null) criteria.and("minSeq").lt(before.getSeq());
+        if (after != null) criteria.and("maxSeq").gt(after.getSeq());
+
+        // The cursor usually lands mid-bucket, so read one bucket more than a full page needs
+        int buckets = (limit + bucketSize - 1) / bucketSize + 1;
+        Sort.Direction direction = after != null ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+        Query query = new Query(criteria)
+                .with(Sort.by(direction, "maxSeq"))
+                .limit(buckets);
+
+        Comparator<Message> order = after != null ? KEYSET : KEYSET.reversed();
+
+        return mongoTemplate.find(query, MessageBucket.class).stream()
+                .flatMap(bucket -> bucket.getMessages().stream()
+                        .peek(m -> m.setConversationId(bucket.getConversationId())))
+                .filter(m -> before == null || m.getSeq() < before.getSeq())
+                .filter(m -> after == null || m.getSeq() > after.getSeq())
+                .sorted(order)
+                .limit(limit)
+                .toList();
+    }
+
+    // The newest bucket still has room; concurrent upserts may briefly open two
+    private Query openBucket(String conversationId) {
+        return new Query(Criteria.where("conversationId").is(conversationId)
+                .and("count").lt(bucketSize));
+    }
+
+    private Update pushUpdate(String conversationId, List<Message> batch) {
+        List<Message> entries = batch.stream().map(this::bucketEntry).toList();
+
+        return new Update()
+                .setOnInsert("conversationId", conversationId)
+                .push("messages").each(entries.toArray())
+                .inc("count", entries.size())
+                .min("minTimestamp", batch.stream().map(Message::getTimestamp).min(Comparator.naturalOrder()).orElseThrow())
+                .max("maxTimestamp", batch.stream().map(Message::getTimestamp).max(Comparator.naturalOrder()).orElseThrow())
+                .min("minSeq", batch.stream().map(Message::getSeq).min(Comparator.naturalOrder()).orElseThrow())
+                .max("maxSeq", batch.stream().map(Message::getSeq).max(Comparator.naturalOrder()).orElseThrow());
+    }
+
+    private Message bucketEntry(Message m) {
+        // conversationId is stored once on the bucket
+        return storedForm(m, false);
+    }
+
+    // What goes to Mongo: a copy, with large content compressed
+    Message storedForm(Message m, boolean withConversation) {
+        Message stored = new Message();
+        stored.setId(m.getId());
+        if (withConversation) stored.setConversationId(m.getConversationId());
+        stored.setSenderId(m.getSenderId());
+        stored.setReceiverId(m.getReceiverId());
+        stored.setTimestamp(m.getTimestamp());
+        stored.setSeq(m.getSeq());
+        stored.setSenderSeq(m.getSenderSeq());
+        stored.setReceiverSeq(m.getReceiverSeq());
+        stored.setClientMessageId(m.getClientMessageId());
+
+        String content = m.getContent();
+        byte[] packed = compress && content != null ? pack(content) : null;
+
+        if (packed != null) {
+            stored.setPackedContent(ContentCodec.DEFLATE, packed);
+        } else {
+            stored.setContent(content);
+        }
+        return stored;
+    }
+
+    // Null when the content is under the threshold or doesn't compress by at least 1/8
+    private byte[] pack(String content) {
+        // Even at 3 UTF-8 bytes per char it stays under the threshold
+        if ((long) content.length() * 3 <= compressAboveBytes) return null;
+
+        int size = content.getBytes(StandardCharsets.UTF_8).length;
+        if (size <= compressAboveBytes) return null;
+
+        byte[] packed = ContentCodec.DEFLATE.encode(content);
+        return packed.length <= size - size / 8 ? packed : null;
+    }
+}
@@ -8,18 +8,26 @@ public class MessageResponse {
     private String content;
     private String timestamp;
 
+    // Position in the conversation; a jump of more than 1 is a gap to refetch, or a hole a failed send left
+    private long seq;
+    private boolean read;
+
     public MessageResponse(
             String id,
             String senderId,
             String receiverId,
             String content,
-            String timestamp
+            String timestamp,
+            long seq,
+            boolean read
     ) {
         this.id = id;
         this.senderId = senderId;
         this.receiverId = receiverId;
         this.content = content;
         this.timestamp = timestamp;
+        this.seq = seq;
+        this.read = read;
     }
 
     public String getId() {
@@ -41,4 +49,12 @@ public class MessageResponse {
     public String getTimestamp() {
         return timestamp;
     }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public boolean isRead() {
+        return read;
+    }
 }
@@ -0,0 +1,197 @@
+package com.arpit.chatapp.chat;
+
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Numbers messages that predate per-conversation seqs, in their old
+ * (timestamp, _id) order, so history can be paged by seq alone.
+ * <p>
+ * A conversation nobody has written to since is claimed first (its counter
+ * jumps to the legacy count) and gets 1..n. One that already took new
+ * messages keeps every live seq as it is: its legacy messages are numbered
+ * down to just below the lowest seq in use, which can go to 0 or below.
+ * Nothing clients hold as a cursor, and nothing another node has cached,
+ * ever changes number, so this is safe while the cluster serves traffic.
+ * <p>
+ * Every node fires this on startup; a lease in {@code migration_locks} lets
+ * one of them do the work while the others skip it. Cheap no-op once every
+ * message has a seq.
+ */
+@Component
+public class MessageSeqMigration {
+
+    private static final int UPDATES_PER_BULK = 500;
+
+    private static final String LEASE_NAME = "message-seqs";
+    // Renewed per conversation, so only a node that died mid-run lets it lapse
+    private static final Duration LEASE = Duration.ofMinutes(5);
+
+    private final MongoTemplate mongoTemplate;
+    private final ClusterLease lease;
+    private final boolean enabled;
+
+    public MessageSeqMigration(
+            MongoTemplate mongoTemplate,
+            ClusterLease lease,
+            @Value("${chat.migration.message-seqs.enabled:true}") boolean enabled
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.lease = lease;
+        this.enabled = enabled;
+    }
+
+    // After ConversationIdMigration so numbering runs on the final conversation ids
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void migrate() {
+        if (!enabled) return;
+
+        List<String> conversationIds = mongoTemplate.findDistinct(
+                new Query(unnumbered()), "conversationId", Message.class, String.class);
+        if (conversationIds.isEmpty()) return;
+
+        // Another node is still moving history onto the final ids; it numbers once that's done
+        if (lease.isHeld(ConversationIdMigration.LEASE_NAME)) {
+            System.out.println("🔢 Conversation ids are still being migrated; skipping message numbering");
+            return;
+        }
+
+        if (!lease.acquire(LEASE_NAME, LEASE)) {
+            System.out.println("🔢 Message numbering is running on another node; skipping");
+            return;
+        }
+
+        long messages = 0;
+        try {
+            for (String conversationId : conversationIds) {
+                if (conversationId == null) continue;
+                lease.renew(LEASE_NAME, LEASE);
+                messages += number(conversationId);
+            }
+        } finally {
+            lease.release(LEASE_NAME);
+        }
+
+        System.out.println("🔢 Numbered " + messages + " messages in " + conversationIds.size() + " conversations");
+    }
+
+    // ---------- HELPERS ----------
+
+    private long number(String conversationId) {
+        Criteria legacy = unnumbered().and("conversationId").is(conversationId);
+        long count = mongoTemplate.count(new Query(legacy), Message.class);
+        if (count == 0) return 0;
+
+        // Claim the counter if nothing was sent here since the upgrade. A missing
+        // document is created as a send would, so the counter (and hasMessages) see n
+        boolean claimed;
+        try {
+            UpdateResult result = mongoTemplate.upsert(
+                    new Query(Criteria.where("_id").is(conversationId).and("seq").exists(false)),
+                    claim(legacy, count),
+                    Conversation.class
+            );
+            claimed = result.getMatchedCount() > 0 || result.getUpsertedId() != null;
+        } catch (DuplicateKeyException e) {
+            claimed = false; // exists with a counter: live sends got there first
+        }
+
+        long first;
+        if (claimed) {
+            first = 1;
+        } else {
+            Long floor = lowestSeq(conversationId);
+            if (floor == null) return 0;
+            first = floor - count;
+        }
+
+        Query oldestFirst = new Query(legacy)
+                .with(Sort.by(Sort.Direction.ASC, "timestamp").and(Sort.by(Sort.Direction.ASC, "_id")));
+        oldestFirst.fields().include("_id");
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class);
+        long next = first;
+        int pending = 0;
+
+        try (Stream<Message> stream = mongoTemplate.stream(oldestFirst, Message.class)) {
+            Iterator<Message> it = stream.iterator();
+
+            while (it.hasNext()) {
+                bulk.updateOne(
+                        new Query(Criteria.where("_id").is(it.next().getId())),
+                        new Update().set("seq", next++)
+                );
+
+                if (++pending == UPDATES_PER_BULK) {
+                    bulk.execute();
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class);
+                    pending = 0;
+                }
+            }
+        }
+
+        if (pending > 0) bulk.execute();
+        return next - first;
+    }
+
+    private Update claim(Criteria legacy, long count) {
+        Update update = new Update().set("seq", count);
+
+        // Direct conversations only predate seqs: the pair comes from any of its messages
+        Message sample = mongoTemplate.findOne(new Query(legacy), Message.class);
+        if (sample != null && sample.getReceiverId() != null) {
+            update.setOnInsert("participantIds",
+                    new ArrayList<>(new TreeSet<>(List.of(sample.getSenderId(), sample.getReceiverId()))));
+        }
+        return update;
+    }
+
+    // Lowest live seq, hot or bucketed; null if archived ones sit below it
+    private Long lowestSeq(String conversationId) {
+        Conversation conversation = mongoTemplate.findOne(
+                new Query(Criteria.where("_id").is(conversationId)), Conversation.class);
+        if (conversation != null && conversation.getArchivedUpTo() > 0) {
+            // The lowest seq is in a segment; numbering below the hot tier would overlap it
+            System.out.println("⚠️ Conversation " + conversationId
+                    + " has archived messages and unnumbered ones; left unnumbered");
+            return null;
+        }
+
+        long floor = 1;
+        Message lowest = mongoTemplate.findOne(
+                new Query(Criteria.where("conversationId").is(conversationId).and("seq").exists(true))
+                        .with(Sort.by(Sort.Direction.ASC, "seq")),
+                Message.class);
+        if (lowest != null) floor = Math.min(floor, lowest.getSeq());
+
+        MessageBucket bucket = mongoTemplate.findOne(
+                new Query(Criteria.where("conversationId").is(conversationId))
+                        .with(Sort.by(Sort.Direction.ASC, "minSeq")),
+                MessageBucket.class);
+        if (bucket != null && bucket.getMinSeq() != null) floor = Math.min(floor, bucket.getMinSeq());
+        return floor;
+    }
+
+    private Criteria unnumbered() {
+        return Criteria.where("seq").exists(false);
+    }
+}
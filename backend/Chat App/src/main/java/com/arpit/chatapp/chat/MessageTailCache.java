@@ -0,0 +1,236 @@
+package com.arpit.chatapp.chat;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last N messages of recently active conversations, so opening a chat
+ * doesn't hit Mongo.
+ * <p>
+ * Filled on first read and kept current by sendMessage (write-through).
+ * Bounded by the estimated heap size of the cached messages, not by
+ * conversation count: least recently used conversations go first.
+ */
+@Component
+public class MessageTailCache {
+
+    // Object headers, ids, timestamps, references — rough but stable
+    private static final int MESSAGE_OVERHEAD_BYTES = 256;
+
+    private final boolean enabled;
+    private final int tailSize;
+    private final long maxBytes;
+
+    // Access-ordered for LRU; every access goes through `this`
+    private final LinkedHashMap<String, Tail> tails = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    // Conversations being loaded from Mongo -> "a send happened meanwhile"
+    private final Map<String, Boolean> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public MessageTailCache(
+            @Value("${chat.cache.tail.enabled:true}") boolean enabled,
+            @Value("${chat.cluster.relay:in-process}") String relay,
+            @Value("${chat.cache.tail.messages-per-conversation:50}") int tailSize,
+            @Value("${chat.cache.tail.max-bytes:67108864}") long maxBytes,
+            MeterRegistry meterRegistry
+    ) {
+        // Only this node's sends and reads keep it current: with more than one
+        // node (any relay but in-process) the others' writes would leave it stale
+        this.enabled = enabled && "in-process".equals(relay);
+        if (enabled && !this.enabled) {
+            System.out.println("⚠️ chat.cache.tail disabled: node-local cache with chat.cluster.relay=" + relay);
+        }
+        this.tailSize = tailSize;
+        this.maxBytes = maxBytes;
+
+        FunctionCounter.builder("chat.cache.tail.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.cache.tail.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.cache.tail.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.cache.tail.bytes", this, MessageTailCache::bytes).register(meterRegistry);
+        Gauge.builder("chat.cache.tail.conversations", this, MessageTailCache::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getTailSize() {
+        return tailSize;
+    }
+
+    /**
+     * Newest-first rows for the first page of history plus the read markers
+     * needed to render receipts, or null on a miss.
+     * A hit needs either {@code rows} cached messages or the whole history.
+     */
+    public synchronized CachedPage newest(String conversationId, int rows) {
+        Tail tail = enabled ? tails.get(conversationId) : null;
+
+        if (tail == null || (tail.messages.size() < rows && tail.hasOlder)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        List<Message> result = new ArrayList<>(Math.min(rows, tail.messages.size()));
+        Iterator<Message> it = tail.messages.descendingMap().values().iterator();
+        while (it.hasNext() && result.size() < rows) {
+            result.add(it.next());
+        }
+        return new CachedPage(result, Map.copyOf(tail.readMarkers));
+    }
+
+    /**
+     * Call before reading the tail from Mongo; pair with {@link #fill}.
+     */
+    public void beginLoad(String conversationId) {
+        if (enabled) loading.put(conversationId, Boolean.FALSE);
+    }
+
+    /**
+     * Drops a load that never reached {@link #fill} (unknown conversation, failed
+     * read); the id comes from the client, so nothing may be left behind for it.
+     */
+    public void endLoad(String conversationId) {
+        if (enabled) loading.remove(conversationId);
+    }
+
+    /**
+     * @param conversation the conversation as read alongside the rows
+     * @param newestFirst  what Mongo returned, newest first
+     * @param hasOlder     whether Mongo has messages older than the last row
+     */
+    public void fill(Conversation conversation, List<Message> newestFirst, boolean hasOlder) {
+        if (!enabled) return;
+
+        String conversationId = conversation.getId();
+
+        // A send raced the read: the rows may already be stale, skip caching
+        if (Boolean.TRUE.equals(loading.remove(conversationId))) return;
+
+        Tail tail = new Tail();
+        int keep = Math.min(tailSize, newestFirst.size());
+        for (int i = keep - 1; i >= 0; i--) {
+            tail.add(newestFirst.get(i));
+        }
+        tail.hasOlder = hasOlder || newestFirst.size() > keep;
+        if (conversation.getReadMarkers() != null) {
+            tail.readMarkers.putAll(conversation.getReadMarkers());
+        }
+
+        synchronized (this) {
+            Tail previous = tails.put(conversationId, tail);
+            if (previous != null) bytes -= previous.bytes;
+            bytes += tail.bytes;
+            evictOverflow();
+        }
+    }
+
+    // Write-through: only extends tails we already hold in full
+    public void onSend(Message message) {
+        if (!enabled) return;
+
+        loading.computeIfPresent(message.getConversationId(), (id, dirty) -> Boolean.TRUE);
+
+        synchronized (this) {
+            Tail tail = tails.get(message.getConversationId());
+            if (tail == null) return;
+
+            bytes -= tail.bytes;
+            tail.add(message);
+            while (tail.messages.size() > tailSize) {
+                tail.removeOldest();
+                tail.hasOlder = true;
+            }
+            bytes += tail.bytes;
+            evictOverflow();
+        }
+    }
+
+    // Mirrors ConversationRepository.markRead: watermark moves to the newest message
+    public synchronized void onRead(String conversationId, String userId) {
+        Tail tail = enabled ? tails.get(conversationId) : null;
+        if (tail == null || tail.messages.isEmpty()) return;
+
+        Message newest = tail.messages.lastEntry().getValue();
+        tail.readMarkers.put(userId, new ReadMarker(newest.getId(), newest.getTimestamp(), newest.getSeq()));
+    }
+
+    // Bulk writes (imports) bypass onSend: drop the tail, the next read refills it
+    public void invalidate(String conversationId) {
+        if (!enabled) return;
+
+        loading.computeIfPresent(conversationId, (id, dirty) -> Boolean.TRUE);
+
+        synchronized (this) {
+            Tail previous = tails.remove(conversationId);
+            if (previous != null) bytes -= previous.bytes;
+        }
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return tails.size();
+    }
+
+    // ---------- HELPERS ----------
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Tail>> it = tails.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    // Counts compressed content at its packed size: it is only inflated per response
+    static long estimate(Message m) {
+        if (m.getPackedContent() != null) {
+            return MESSAGE_OVERHEAD_BYTES + m.getPackedContent().length;
+        }
+        int chars = m.getContent() != null ? m.getContent().length() : 0;
+        return MESSAGE_OVERHEAD_BYTES + 2L * chars;
+    }
+
+    public record CachedPage(List<Message> newestFirst, Map<String, ReadMarker> readMarkers) {}
+
+    private static final class Tail {
+        // seq -> message: concurrent sends may arrive here out of order
+        final TreeMap<Long, Message> messages = new TreeMap<>();
+        final Map<String, ReadMarker> readMarkers = new HashMap<>();
+        boolean hasOlder;
+        long bytes;
+
+        void add(Message m) {
+            Message previous = messages.put(m.getSeq(), m);
+            if (previous != null) bytes -= estimate(previous);
+            bytes += estimate(m);
+        }
+
+        void removeOldest() {
+            bytes -= estimate(messages.pollFirstEntry().getValue());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.arpit.chatapp.chat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit write path for messages.
+ * <p>
+ * Senders enqueue into a bounded queue; one flusher thread drains it every
+ * {@code max-delay-ms} or {@code max-batch} messages, whichever comes first,
+ * and persists the batch with one insertMany (or one bucket bulk write)
+ * plus one bulk conversation upsert, after one bulk allocation of the
+ * participants' change-stream seqs.
+ * Each sender's future completes only after its batch is durable.
+ * <p>
+ * Off by default ({@code chat.write.group-commit.enabled}); when off,
+ * ChatService writes each message directly.
+ */
+@Component
+public class MessageWritePipeline {
+
+    private final MessageRepository messageRepo;
+    private final ConversationRepository conversationRepo;
+    private final UserSequenceService sequences;
+
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long maxDelayMs;
+    private final BlockingQueue<PendingWrite> queue;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public MessageWritePipeline(
+            MessageRepository messageRepo,
+            ConversationRepository conversationRepo,
+            UserSequenceService sequences,
+            @Value("${chat.write.group-commit.enabled:false}") boolean enabled,
+            @Value("${chat.write.group-commit.max-batch:256}") int maxBatch,
+            @Value("${chat.write.group-commit.max-delay-ms:5}") long maxDelayMs,
+            @Value("${chat.write.group-commit.queue-capacity:10000}") int queueCapacity
+    ) {
+        this.messageRepo = messageRepo;
+        this.conversationRepo = conversationRepo;
+        this.sequences = sequences;
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.maxDelayMs = maxDelayMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "message-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) return;
+
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+
+        // Whatever is still queued gets written before we go
+        List<PendingWrite> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) flush(rest);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Completes with the saved message (id assigned) once its batch is persisted.
+     * Blocks while the queue is full — that is the backpressure.
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        if (!running) {
+            throw new IllegalStateException("Group commit is not running");
+        }
+
+        PendingWrite write = new PendingWrite(message);
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.future.completeExceptionally(e);
+        }
+        return write.future;
+    }
+
+    // ---------- FLUSHER ----------
+
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+
+                // Keep collecting until the batch is full or the window closes
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    if (batch.size() >= maxBatch) break;
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() woke us up: flush what we hold, the loop condition ends us
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch = new ArrayList<>(maxBatch);
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<Message> messages = batch.stream().map(w -> w.message).toList();
+        try {
+            // Change-stream seqs for every participant in the batch: one allocation, right before the write
+            sequences.stamp(messages);
+            List<Message> saved = messageRepo.appendAll(messages); // insertMany / bucket $push, ids assigned
+            conversationRepo.recordMessages(saved);
+
+            // appendAll leaves out retries of a stored client message id; their senders replay it
+            Set<Message> stored = Collections.newSetFromMap(new IdentityHashMap<>());
+            stored.addAll(saved);
+            for (PendingWrite write : batch) {
+                if (stored.contains(write.message)) {
+                    write.future.complete(write.message);
+                } else {
+                    write.future.completeExceptionally(new DuplicateKeyException(
+                            "clientMessageId " + write.message.getClientMessageId() + " is already stored"));
+                }
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(w -> w.future.completeExceptionally(e));
+        }
+    }
+
+    private static final class PendingWrite {
+        final Message message;
+        final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        PendingWrite(Message message) {
+            this.message = message;
+        }
+    }
+}
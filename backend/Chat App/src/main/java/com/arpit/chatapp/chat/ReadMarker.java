@@ -0,0 +1,54 @@
+package com.arpit.chatapp.chat;
+
+import java.time.Instant;
+
+/**
+ * How far one participant has read a conversation.
+ * Everything at or before {@code seq} counts as read; markers written
+ * before seqs existed have none and fall back to {@code at}.
+ */
+public class ReadMarker {
+
+    private String messageId;
+    private Instant at;
+    // seq of messageId; 0 on markers that predate it
+    private long seq;
+
+    public ReadMarker() {}
+
+    public ReadMarker(String messageId, Instant at, long seq) {
+        this.messageId = messageId;
+        this.at = at;
+        this.seq = seq;
+    }
+
+    // By seq: timestamps tie, and skew between the nodes that wrote them
+    public boolean covers(Long messageSeq, Instant timestamp) {
+        if (seq > 0 && messageSeq != null) return messageSeq <= seq;
+        return at != null && timestamp != null && !timestamp.isAfter(at);
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public Instant getAt() {
+        return at;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public void setAt(Instant at) {
+        this.at = at;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+}
@@ -13,6 +13,9 @@ public class RecentChatResponse {
 
     public int unreadCount;
 
+    // Group chats: no friend, displayName is the group's name
+    public boolean group;
+
     public RecentChatResponse(
             String conversationId,
             String friendId,
@@ -0,0 +1,209 @@
+package com.arpit.chatapp.chat;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user recent-chats list, so `GET /users/me/chats` doesn't rebuild it
+ * from Mongo on every call.
+ * <p>
+ * Kept current by events instead of rebuilt: a send moves one conversation
+ * to the top and bumps the receiver's unread count, a read zeroes it.
+ * A conversation the list doesn't know yet drops the list (the next read
+ * rebuilds it with the friend's profile). Entries expire after {@code ttl}
+ * so profile edits show up eventually; least recently used users go first
+ * once {@code max-users} is reached.
+ */
+@Component
+public class RecentChatsCache {
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int maxUsers;
+
+    // Access-ordered for LRU; every access goes through `this`
+    private final LinkedHashMap<String, Entry> lists = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Users whose list is being rebuilt from Mongo -> "an event happened meanwhile"
+    private final Map<String, Boolean> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public RecentChatsCache(
+            @Value("${chat.cache.recent-chats.enabled:true}") boolean enabled,
+            @Value("${chat.cluster.relay:in-process}") String relay,
+            @Value("${chat.cache.recent-chats.ttl:60s}") Duration ttl,
+            @Value("${chat.cache.recent-chats.max-users:10000}") int maxUsers,
+            MeterRegistry meterRegistry
+    ) {
+        // Kept current by this node's sends and reads only: with more than one node
+        // (any relay but in-process) another node's writes would leave it stale
+        this.enabled = enabled && "in-process".equals(relay);
+        if (enabled && !this.enabled) {
+            System.out.println("⚠️ chat.cache.recent-chats disabled: node-local cache with chat.cluster.relay=" + relay);
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.maxUsers = maxUsers;
+
+        FunctionCounter.builder("chat.cache.recent-chats.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.cache.recent-chats.misses", misses, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.cache.recent-chats.users", this, RecentChatsCache::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The cached list, newest first, or null on a miss.
+     */
+    public synchronized List<RecentChatResponse> get(String userId) {
+        Entry entry = enabled ? lists.get(userId) : null;
+
+        if (entry == null || System.nanoTime() - entry.loadedAt > ttlNanos) {
+            if (entry != null) lists.remove(userId);
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return List.copyOf(entry.chats);
+    }
+
+    /**
+     * Call before rebuilding the list from Mongo; pair with {@link #put}.
+     */
+    public void beginLoad(String userId) {
+        if (enabled) loading.put(userId, Boolean.FALSE);
+    }
+
+    public synchronized void put(String userId, List<RecentChatResponse> chats) {
+        if (!enabled) return;
+
+        // A send or read raced the rebuild: the list may already be stale, skip caching
+        if (Boolean.TRUE.equals(loading.remove(userId))) return;
+
+        lists.put(userId, new Entry(new ArrayList<>(chats), System.nanoTime()));
+
+        Iterator<String> it = lists.keySet().iterator();
+        while (lists.size() > maxUsers && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // Both sides see the conversation jump to the top; only the receiver gets +1 unread
+    public synchronized void onSend(Message message) {
+        // Group sends arrive per batch of members through onGroupSend
+        if (message.getReceiverId() == null) return;
+        if (!enabled || message.getSenderId().equals(message.getReceiverId())) return;
+
+        markDirty(message.getSenderId());
+        markDirty(message.getReceiverId());
+
+        moveToTop(message.getSenderId(), message, 0);
+        moveToTop(message.getReceiverId(), message, 1);
+    }
+
+    // One batch of a group's members; everyone but the sender gets +1 unread
+    public synchronized void onGroupSend(List<String> memberIds, Message message) {
+        if (!enabled) return;
+
+        for (String memberId : memberIds) {
+            markDirty(memberId);
+            moveToTop(memberId, message, memberId.equals(message.getSenderId()) ? 0 : 1);
+        }
+    }
+
+    public synchronized void onRead(String conversationId, String userId) {
+        markDirty(userId);
+
+        Entry entry = enabled ? lists.get(userId) : null;
+        if (entry == null) return;
+
+        entry.chats.replaceAll(chat -> chat.conversationId.equals(conversationId)
+                ? copy(chat, chat.lastMessage, chat.lastUpdated, 0)
+                : chat);
+    }
+
+    public synchronized void invalidate(String userId) {
+        markDirty(userId);
+        lists.remove(userId);
+    }
+
+    public synchronized int size() {
+        return lists.size();
+    }
+
+    // ---------- HELPERS ----------
+
+    private void markDirty(String userId) {
+        loading.computeIfPresent(userId, (id, dirty) -> Boolean.TRUE);
+    }
+
+    private void moveToTop(String userId, Message message, int unreadDelta) {
+        Entry entry = lists.get(userId);
+        if (entry == null) return;
+
+        RecentChatResponse current = null;
+        for (Iterator<RecentChatResponse> it = entry.chats.iterator(); it.hasNext(); ) {
+            RecentChatResponse chat = it.next();
+            if (chat.conversationId.equals(message.getConversationId())) {
+                current = chat;
+                it.remove();
+                break;
+            }
+        }
+
+        // New conversation: we don't know the friend's profile here, rebuild on next read
+        if (current == null) {
+            lists.remove(userId);
+            return;
+        }
+
+        entry.chats.add(0, copy(
+                current,
+                message.getContent(),
+                message.getTimestamp().toString(),
+                current.unreadCount + unreadDelta
+        ));
+    }
+
+    // Handed-out lists share these objects, so never mutate one in place
+    private RecentChatResponse copy(RecentChatResponse chat, String lastMessage, String lastUpdated, int unreadCount) {
+        RecentChatResponse copy = new RecentChatResponse(
+                chat.conversationId,
+                chat.friendId,
+                chat.displayName,
+                chat.profilePhoto,
+                lastMessage,
+                lastUpdated,
+                unreadCount
+        );
+        copy.group = chat.group;
+        return copy;
+    }
+
+    private static final class Entry {
+        final List<RecentChatResponse> chats;
+        final long loadedAt;
+
+        Entry(List<RecentChatResponse> chats, long loadedAt) {
+            this.chats = chats;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.arpit.chatapp.chat;
+
+import com.arpit.chatapp.exception.BadRequestException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Makes sends with a client message id idempotent, so clients can retry
+ * and pipeline sends without creating duplicates.
+ * <p>
+ * Two levels, both keyed by (sender, client message id):
+ * <ul>
+ *   <li>An in-memory table of recent sends, bounded by {@code max-entries}
+ *       and {@code window}. A retry that lands on the same node waits on the
+ *       original's future and gets its response without touching Mongo.</li>
+ *   <li>The stored messages. A send this node doesn't remember first looks
+ *       its key up on the {@code sender_client_message_id} index, before any
+ *       seq is allocated, so a retry that reaches another node (or this one
+ *       after the window) is answered with the stored message and burns no
+ *       conversation or sync seq. A retry racing its original past that
+ *       lookup is still caught by the unique index on insert; only that
+ *       race costs the seqs it took.</li>
+ * </ul>
+ * A send that fails before its message is stored leaves nothing behind, so
+ * the client's retry goes through. Under the BUCKET layout the lookup still
+ * works, but the race has no backstop: a unique index can't look inside
+ * buckets.
+ */
+@Component
+public class SendDeduplicator {
+
+    private final MessageRepository messageRepo;
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxEntries;
+
+    // Insertion-ordered: the head is always the oldest entry; every access goes through `this`
+    private final LinkedHashMap<String, Entry> recent = new LinkedHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong storeHits = new AtomicLong();
+
+    public SendDeduplicator(
+            MessageRepository messageRepo,
+            @Value("${chat.send.dedup.enabled:true}") boolean enabled,
+            @Value("${chat.send.dedup.window:10m}") Duration window,
+            @Value("${chat.send.dedup.max-entries:100000}") int maxEntries,
+            MeterRegistry meterRegistry
+    ) {
+        this.messageRepo = messageRepo;
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxEntries = maxEntries;
+
+        FunctionCounter.builder("chat.send.dedup.memory-hits", memoryHits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.send.dedup.store-hits", storeHits, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.send.dedup.entries", this, SendDeduplicator::size).register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code send} once per (senderId, clientMessageId). Later calls get
+     * the original response, marked {@link SendMessageResponse#isReplay()}.
+     * {@code send} must store the message with its client message id, so a
+     * second store fails with {@link DuplicateKeyException}.
+     */
+    public SendMessageResponse send(
+            String senderId,
+            String conversationId,
+            String clientMessageId,
+            Supplier<SendMessageResponse> send
+    ) {
+        if (!enabled || clientMessageId == null) return send.get();
+
+        String key = senderId + ":" + clientMessageId;
+        CompletableFuture<SendMessageResponse> mine = new CompletableFuture<>();
+
+        // 1. Same node: join the original, whether it is done or still in flight
+        CompletableFuture<SendMessageResponse> original = register(key, mine);
+        if (original != null) {
+            memoryHits.incrementAndGet();
+            return replay(await(original), conversationId);
+        }
+
+        try {
+            // 2. First time here: a send already stored elsewhere is replayed before it takes any seq
+            SendMessageResponse response = stored(senderId, clientMessageId);
+            if (response == null) {
+                try {
+                    response = send.get();
+                    mine.complete(response);
+                    return response;
+                } catch (DuplicateKeyException e) {
+                    // 3. Raced the original past the lookup: the unique index caught it
+                    response = stored(senderId, clientMessageId);
+                    if (response == null) throw e; // some other unique key: not a retry
+                }
+            }
+            storeHits.incrementAndGet();
+            mine.complete(response);
+            return replay(response, conversationId);
+        } catch (RuntimeException e) {
+            forget(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public synchronized int size() {
+        return recent.size();
+    }
+
+    // ---------- MEMORY ----------
+
+    private synchronized CompletableFuture<SendMessageResponse> register(
+            String key,
+            CompletableFuture<SendMessageResponse> future
+    ) {
+        long now = System.nanoTime();
+
+        // Drop what aged out of the window, then what overflows the bound (oldest first)
+        Iterator<Entry> it = recent.values().iterator();
+        while (it.hasNext()) {
+            Entry head = it.next();
+            if (now - head.createdAt <= windowNanos && recent.size() < maxEntries) break;
+            it.remove();
+        }
+
+        Entry existing = recent.get(key);
+        if (existing != null) return existing.future;
+
+        recent.put(key, new Entry(future, now));
+        return null;
+    }
+
+    private synchronized void forget(String key, CompletableFuture<SendMessageResponse> future) {
+        Entry entry = recent.get(key);
+        if (entry != null && entry.future == future) recent.remove(key);
+    }
+
+    private SendMessageResponse await(CompletableFuture<SendMessageResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    // ---------- STORE ----------
+
+    private SendMessageResponse stored(String senderId, String clientMessageId) {
+        Message m = messageRepo.findByClientMessageId(senderId, clientMessageId);
+        if (m == null) return null;
+
+        return new SendMessageResponse(
+                m.getId(),
+                m.getConversationId(),
+                m.getSenderId(),
+                m.getReceiverId(),
+                m.getContent(),
+                m.getTimestamp().toString(),
+                m.getSeq(),
+                m.getClientMessageId()
+        );
+    }
+
+    // ---------- HELPERS ----------
+
+    // Reusing an id for a different conversation is a client bug, not a retry
+    private SendMessageResponse replay(SendMessageResponse original, String conversationId) {
+        if (!original.getConversationId().equals(conversationId)) {
+            throw new BadRequestException("clientMessageId was already used for another message");
+        }
+        return original.asReplay();
+    }
+
+    private static final class Entry {
+        final CompletableFuture<SendMessageResponse> future;
+        final long createdAt;
+
+        Entry(CompletableFuture<SendMessageResponse> future, long createdAt) {
+            this.future = future;
+            this.createdAt = createdAt;
+        }
+    }
+}
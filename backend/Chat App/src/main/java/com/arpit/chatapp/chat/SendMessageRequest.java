@@ -5,6 +5,9 @@ public class SendMessageRequest {
     private String receiverId;
     private String content;
 
+    // Optional, unique per sender: a retry with the same id is not sent twice
+    private String clientMessageId;
+
     public String getReceiverId() {
         return receiverId;
     }
@@ -20,5 +23,12 @@ public class SendMessageRequest {
     public void setContent(String content) {
         this.content = content;
     }
-}
 
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
+}
@@ -1,5 +1,7 @@
 package com.arpit.chatapp.chat;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class SendMessageResponse {
 
     private String messageId;
@@ -9,13 +11,25 @@ public class SendMessageResponse {
     private String content;
     private String timestamp;
 
+    // Position in the conversation; a jump of more than 1 is a gap to refetch, or a hole a failed send left
+    private long seq;
+
+    // Echoed so a client with several sends in flight can match each ack
+    private String clientMessageId;
+
+    // Server-side only: this is the stored result of an earlier send
+    @JsonIgnore
+    private boolean replay;
+
     public SendMessageResponse(
             String messageId,
             String conversationId,
             String senderId,
             String receiverId,
             String content,
-            String timestamp
+            String timestamp,
+            long seq,
+            String clientMessageId
     ) {
         this.messageId = messageId;
         this.conversationId = conversationId;
@@ -23,6 +37,16 @@ public class SendMessageResponse {
         this.receiverId = receiverId;
         this.content = content;
         this.timestamp = timestamp;
+        this.seq = seq;
+        this.clientMessageId = clientMessageId;
+    }
+
+    // Copy for a deduplicated retry; the original may be shared between callers
+    public SendMessageResponse asReplay() {
+        SendMessageResponse copy = new SendMessageResponse(
+                messageId, conversationId, senderId, receiverId, content, timestamp, seq, clientMessageId);
+        copy.replay = true;
+        return copy;
     }
 
     public String getMessageId() {
@@ -48,4 +72,17 @@ public class SendMessageResponse {
     public String getTimestamp() {
         return timestamp;
     }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    @JsonIgnore
+    public boolean isReplay() {
+        return replay;
+    }
 }
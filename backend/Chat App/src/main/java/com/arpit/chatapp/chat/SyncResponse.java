@@ -0,0 +1,46 @@
+package com.arpit.chatapp.chat;
+
+import java.util.List;
+
+public class SyncResponse {
+
+    // Pass as ?since= next time
+    private long seq;
+
+    // New messages, in the order they happened
+    private List<SendMessageResponse> messages;
+
+    // Conversations whose metadata, counters or receipts changed
+    private List<ConversationDelta> conversations;
+
+    // More changes are waiting: call again with `seq` right away
+    private boolean hasMore;
+
+    public SyncResponse(
+            long seq,
+            List<SendMessageResponse> messages,
+            List<ConversationDelta> conversations,
+            boolean hasMore
+    ) {
+        this.seq = seq;
+        this.messages = messages;
+        this.conversations = conversations;
+        this.hasMore = hasMore;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public List<SendMessageResponse> getMessages() {
+        return messages;
+    }
+
+    public List<ConversationDelta> getConversations() {
+        return conversations;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,113 @@
+package com.arpit.chatapp.chat;
+
+import com.arpit.chatapp.exception.BadRequestException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * "What changed since I last looked": everything a reconnecting client
+ * needs in one response, read off the per-user sequence indexes instead
+ * of re-fetching chats and whole histories.
+ */
+@Service
+public class SyncService {
+
+    private static final int MAX_MESSAGES = 500;
+
+    private final UserSequenceService sequences;
+    private final MessageRepository messageRepo;
+    private final ConversationRepository conversationRepo;
+
+    public SyncService(
+            UserSequenceService sequences,
+            MessageRepository messageRepo,
+            ConversationRepository conversationRepo
+    ) {
+        this.sequences = sequences;
+        this.messageRepo = messageRepo;
+        this.conversationRepo = conversationRepo;
+    }
+
+    public SyncResponse sync(String userId, long since, int limit) {
+        if (userId == null || since < 0) {
+            throw new BadRequestException("Invalid sync request");
+        }
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_MESSAGES));
+
+        // Read the marks first: changes stamped after them wait for the next call.
+        // Up to `settled` every change is written; past it one can still be in flight
+        long settled = sequences.settled(userId);
+        long upTo = sequences.current(userId);
+        if (upTo <= since) {
+            return new SyncResponse(since, List.of(), List.of(), false);
+        }
+
+        List<Message> rows = messageRepo.findForSync(userId, since, upTo, pageSize + 1);
+        // Only unread settled changes make another page: recent ones come again next call
+        boolean hasMore = rows.size() > pageSize && rows.get(pageSize).seqFor(userId) <= settled;
+        List<Message> page = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+
+        // Conversations are current snapshots, so sending one early is harmless
+        List<Conversation> changed = conversationRepo.findChangedSince(userId, since);
+
+        // Never past `settled`: a value handed out below a newer one we saw may not be
+        // written yet. Recent rows are sent now and re-read next call (ids dedupe them)
+        long seq = since;
+        if (hasMore) {
+            for (Message m : page) {
+                seq = Math.max(seq, m.seqFor(userId));
+            }
+        } else {
+            // Every settled change was in this page or in the conversations
+            seq = Math.max(since, Math.min(settled, upTo));
+        }
+
+        List<ConversationDelta> conversations = changed.stream()
+                .map(conv -> toDelta(conv, userId))
+                .toList();
+
+        return new SyncResponse(
+                seq,
+                page.stream().map(this::toResponse).toList(),
+                conversations,
+                hasMore
+        );
+    }
+
+    // ---------- HELPERS ----------
+
+    private SendMessageResponse toResponse(Message m) {
+        return new SendMessageResponse(
+                m.getId(),
+                m.getConversationId(),
+                m.getSenderId(),
+                m.getReceiverId(),
+                m.getContent(),
+                m.getTimestamp().toString(),
+                m.getSeq(),
+                m.getClientMessageId()
+        );
+    }
+
+    private ConversationDelta toDelta(Conversation conv, String userId) {
+        String friendId = conv.getParticipantIds().stream()
+                .filter(id -> !id.equals(userId))
+                .findFirst()
+                .orElse(userId);
+
+        Integer unread = conv.getUnreadCounts() != null ? conv.getUnreadCounts().get(userId) : null;
+        ReadMarker friendMarker = conv.getReadMarkers() != null ? conv.getReadMarkers().get(friendId) : null;
+
+        return new ConversationDelta(
+                conv.getId(),
+                friendId,
+                conv.getLastMessage(),
+                conv.getLastMessageId(),
+                conv.getLastUpdated() != null ? conv.getLastUpdated().toString() : null,
+                unread != null ? unread : 0,
+                friendMarker != null ? friendMarker.getMessageId() : null
+        );
+    }
+}
@@ -0,0 +1,86 @@
+package com.arpit.chatapp.chat;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Per-user change counter. Every message and conversation change a user
+ * can see is stamped with the next value, so "what changed since N" is a
+ * range scan instead of a re-fetch.
+ * <p>
+ * A value is handed out before the change that carries it is written, so
+ * the counter alone doesn't say what sync may skip past. {@code mark} and
+ * {@code prev} are snapshots of it, taken at most once per settle window:
+ * every value up to a snapshot was handed out before its time (see
+ * {@link UserSequenceService#settled}).
+ */
+@Document(collection = "user_sequences")
+public class UserSequence {
+
+    // The user's id
+    @Id
+    private String id;
+
+    private long seq;
+    // When seq was last advanced
+    private Instant at;
+
+    private Long mark;
+    private Instant markAt;
+    private Long prev;
+    private Instant prevAt;
+
+    // The last few bulk allocations, so each caller can find its own block
+    private List<Allocation> allocs;
+
+    public String getId() {
+        return id;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Instant getAt() {
+        return at;
+    }
+
+    public Long getMark() {
+        return mark;
+    }
+
+    public Instant getMarkAt() {
+        return markAt;
+    }
+
+    public Long getPrev() {
+        return prev;
+    }
+
+    public Instant getPrevAt() {
+        return prevAt;
+    }
+
+    public List<Allocation> getAllocs() {
+        return allocs;
+    }
+
+    public static class Allocation {
+
+        // The allocating call's token
+        private String b;
+        // Last value of its block
+        private long to;
+
+        public String getB() {
+            return b;
+        }
+
+        public long getTo() {
+            return to;
+        }
+    }
+}
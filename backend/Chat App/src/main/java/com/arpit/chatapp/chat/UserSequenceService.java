@@ -0,0 +1,182 @@
+package com.arpit.chatapp.chat;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class UserSequenceService {
+
+    // Bulk allocations kept on each counter for read-back; more concurrent ones than this fall back
+    private static final int KEPT_ALLOCATIONS = 16;
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration settleWindow;
+
+    public UserSequenceService(
+            MongoTemplate mongoTemplate,
+            @Value("${chat.sync.settle-window:10s}") Duration settleWindow
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.settleWindow = settleWindow;
+    }
+
+    // Atomic $inc + return: concurrent callers on any node never share a value
+    public long next(String userId) {
+        return allocate(Map.of(userId, 1)).get(userId);
+    }
+
+    /**
+     * Blocks of values for several users at once: {@code counts.get(u)} values
+     * for user u, returned as the first value of its block. One bulk write plus
+     * one read whatever the number of users (one findAndModify for a single user).
+     */
+    public Map<String, Long> allocate(Map<String, Integer> counts) {
+        Map<String, Long> first = new HashMap<>();
+        if (counts.isEmpty()) return first;
+
+        if (counts.size() == 1) {
+            Map.Entry<String, Integer> only = counts.entrySet().iterator().next();
+            first.put(only.getKey(), allocateOne(only.getKey(), only.getValue()));
+            return first;
+        }
+
+        String token = new ObjectId().toHexString();
+        Instant now = Instant.now();
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserSequence.class);
+        counts.forEach((userId, n) -> bulk.upsert(byId(userId), advance(n, token, now)));
+        bulk.execute();
+
+        Query readBack = new Query(Criteria.where("_id").in(counts.keySet()));
+        readBack.fields().include("allocs");
+        for (UserSequence sequence : mongoTemplate.find(readBack, UserSequence.class)) {
+            if (sequence.getAllocs() == null) continue;
+            sequence.getAllocs().stream()
+                    .filter(a -> token.equals(a.getB()))
+                    .findFirst()
+                    .ifPresent(a -> first.put(sequence.getId(), a.getTo() - counts.get(sequence.getId()) + 1));
+        }
+
+        // Our entry was pushed out by other writers: take a fresh block, the lost one stays a gap
+        counts.forEach((userId, n) -> {
+            if (!first.containsKey(userId)) first.put(userId, allocateOne(userId, n));
+        });
+        return first;
+    }
+
+    /**
+     * Stamps direct messages into both participants' change streams (once for
+     * a self-chat), allocating for the whole batch in one go. Group messages
+     * have no receiver and are left alone.
+     */
+    public void stamp(List<Message> messages) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Message m : messages) {
+            if (m.getReceiverId() == null) continue;
+            counts.merge(m.getSenderId(), 1, Integer::sum);
+            if (!m.getSenderId().equals(m.getReceiverId())) counts.merge(m.getReceiverId(), 1, Integer::sum);
+        }
+
+        Map<String, Long> next = allocate(counts);
+        for (Message m : messages) {
+            if (m.getReceiverId() == null) continue;
+            long senderSeq = next.merge(m.getSenderId(), 1L, Long::sum) - 1;
+            m.setSenderSeq(senderSeq);
+            m.setReceiverSeq(m.getSenderId().equals(m.getReceiverId())
+                    ? senderSeq
+                    : next.merge(m.getReceiverId(), 1L, Long::sum) - 1);
+        }
+    }
+
+    // Highest value handed out so far (0 if the user never had a change)
+    public long current(String userId) {
+        UserSequence sequence = mongoTemplate.findOne(byId(userId), UserSequence.class);
+        return sequence != null ? sequence.getSeq() : 0L;
+    }
+
+    /**
+     * Highest value whose change is surely written: every value up to it was
+     * handed out at least a settle window ago, and a write takes less than
+     * that. Sync may move a cursor up to here; past it, a value can still be
+     * in flight.
+     */
+    public long settled(String userId) {
+        return settled(mongoTemplate.findOne(byId(userId), UserSequence.class), Instant.now(), settleWindow);
+    }
+
+    static long settled(UserSequence sequence, Instant now, Duration settleWindow) {
+        if (sequence == null) return 0L;
+
+        Instant before = now.minus(settleWindow);
+        if (sequence.getAt() == null || !sequence.getAt().isAfter(before)) return sequence.getSeq();
+        if (sequence.getMarkAt() != null && !sequence.getMarkAt().isAfter(before)) return sequence.getMark();
+        // prev is at least a window older than mark
+        return sequence.getPrev() != null ? sequence.getPrev() : 0L;
+    }
+
+    // ---------- HELPERS ----------
+
+    private long allocateOne(String userId, int n) {
+        UserSequence sequence = mongoTemplate.findAndModify(
+                byId(userId),
+                advance(n, new ObjectId().toHexString(), Instant.now()),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                UserSequence.class
+        );
+        return sequence.getSeq() - n + 1;
+    }
+
+    // Adds n to seq in one pipeline stage, where every field reads the old document: the value
+    // before the add becomes the new mark once the current mark is a settle window old
+    private AggregationUpdate advance(int n, String token, Instant now) {
+        Date at = Date.from(now);
+        Document seq = new Document("$ifNull", List.of("$seq", 0L));
+        Document to = new Document("$add", List.of(seq, (long) n));
+        Document rotate = new Document("$lte", List.of(
+                new Document("$ifNull", List.of("$markAt", new Date(0))),
+                Date.from(now.minus(settleWindow))
+        ));
+        Document allocs = new Document("$slice", List.of(
+                new Document("$concatArrays", List.of(
+                        new Document("$ifNull", List.of("$allocs", List.of())),
+                        List.of(new Document("b", token).append("to", to))
+                )),
+                -KEPT_ALLOCATIONS
+        ));
+
+        Document set = new Document()
+                .append("prev", cond(rotate, "$mark", "$prev"))
+                .append("prevAt", cond(rotate, "$markAt", "$prevAt"))
+                .append("mark", cond(rotate, seq, "$mark"))
+                .append("markAt", cond(rotate, at, "$markAt"))
+                .append("seq", to)
+                .append("at", at)
+                .append("allocs", allocs);
+
+        return AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+    }
+
+    private Document cond(Object condition, Object then, Object otherwise) {
+        return new Document("$cond", List.of(condition, then, otherwise));
+    }
+
+    private Query byId(String userId) {
+        return new Query(Criteria.where("_id").is(userId));
+    }
+}
@@ -1,18 +1,73 @@
 package com.arpit.chatapp.config;
 
+import com.arpit.chatapp.presence.PresenceInterceptor;
+import com.arpit.chatapp.security.StompAuthInterceptor;
+import com.arpit.chatapp.websocket.CompactEncoding;
+import com.arpit.chatapp.websocket.IndexedSubscriptionRegistry;
+import com.arpit.chatapp.websocket.OutboundBuffers;
+import com.arpit.chatapp.websocket.TypingRelay;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.HandshakeHandler;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthInterceptor stompAuthInterceptor;
+    private final PresenceInterceptor presenceInterceptor;
+    private final TypingRelay typingRelay;
+    private final OutboundBuffers outboundBuffers;
+    private final CompactEncoding compactEncoding;
+    private final TaskScheduler brokerScheduler;
+    private final long heartbeatMillis;
+    private final boolean permessageDeflate;
+
+    public WebSocketConfig(
+            StompAuthInterceptor stompAuthInterceptor,
+            PresenceInterceptor presenceInterceptor,
+            TypingRelay typingRelay,
+            OutboundBuffers outboundBuffers,
+            CompactEncoding compactEncoding,
+            @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler brokerScheduler,
+            @Value("${chat.ws.heartbeat:PT10S}") Duration heartbeat,
+            @Value("${chat.ws.permessage-deflate:true}") boolean permessageDeflate
+    ) {
+        this.stompAuthInterceptor = stompAuthInterceptor;
+        this.presenceInterceptor = presenceInterceptor;
+        this.typingRelay = typingRelay;
+        this.outboundBuffers = outboundBuffers;
+        this.compactEncoding = compactEncoding;
+        this.brokerScheduler = brokerScheduler;
+        this.heartbeatMillis = heartbeat.toMillis();
+        this.permessageDeflate = permessageDeflate;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic", "/queue");
+        // Heartbeats both ways: dead sockets get closed, live ones keep presence fresh
+        registry.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{heartbeatMillis, heartbeatMillis})
+                .setTaskScheduler(brokerScheduler);
         registry.setApplicationDestinationPrefixes("/app");
         registry.setUserDestinationPrefix("/user");
     }
@@ -22,6 +77,60 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*") // 🔓 ALLOW ALL
+                .setHandshakeHandler(handshakeHandler())
                 .withSockJS();
+
+        // Plain WebSocket, no SockJS framing: binary frames, so the compact encoding works here only
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(handshakeHandler())
+                .addInterceptors(compactEncoding.binaryTransport());
+    }
+
+    // 🔥 Principal on CONNECT: /user/queue/... resolves per user, not per topic name
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Typing frames stop here, on the socket thread, before the inbound pool
+        registration.interceptors(stompAuthInterceptor, presenceInterceptor, typingRelay, compactEncoding);
+    }
+
+    // Chat frames swap to their compact body for the sockets that asked for it
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(compactEncoding);
+    }
+
+    // Per-socket outbound buffer: pending frames coalesce, slow consumers get evicted
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(outboundBuffers::decorate);
+    }
+
+    // The container (Tomcat) offers permessage-deflate to every client that asks; off = never negotiated
+    private HandshakeHandler handshakeHandler() {
+        if (permessageDeflate) return new DefaultHandshakeHandler();
+
+        return new DefaultHandshakeHandler(new StandardWebSocketUpgradeStrategy() {
+            @Override
+            public List<WebSocketExtension> getSupportedExtensions(ServerHttpRequest request) {
+                return super.getSupportedExtensions(request).stream()
+                        .filter(extension -> !"permessage-deflate".equals(extension.getName()))
+                        .toList();
+            }
+        });
+    }
+
+    // Per-session user queues looked up by map instead of a scan of every subscription
+    @Bean
+    public static BeanPostProcessor indexedSubscriptionRegistry() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleBrokerMessageHandler broker) {
+                    broker.setSubscriptionRegistry(new IndexedSubscriptionRegistry());
+                }
+                return bean;
+            }
+        };
     }
 }
@@ -2,6 +2,7 @@ package com.arpit.chatapp.dashboard;
 
 import com.arpit.chatapp.auth.User;
 import com.arpit.chatapp.auth.UserRepository;
+import com.arpit.chatapp.chat.ConversationRepository;
 import com.arpit.chatapp.chat.MessageRepository;
 import com.arpit.chatapp.follower.Follower;
 import com.arpit.chatapp.follower.FollowerRepository;
@@ -20,17 +21,20 @@ public class DashboardService {
     private final UserRepository userRepo;
     private final FollowerRepository followerRepo;
     private final MessageRepository messageRepo;
+    private final ConversationRepository conversationRepo;
 
     public DashboardService(
             UserProfileRepository profileRepo,
             UserRepository userRepo,
             FollowerRepository followerRepo,
-            MessageRepository messageRepo
+            MessageRepository messageRepo,
+            ConversationRepository conversationRepo
     ) {
         this.profileRepo = profileRepo;
         this.userRepo = userRepo;
         this.followerRepo = followerRepo;
         this.messageRepo = messageRepo;
+        this.conversationRepo = conversationRepo;
     }
 
     public DashboardResponse getDashboard(String userId) {
@@ -49,11 +53,12 @@ public class DashboardService {
                 });
 
         // ================= COUNTS (SAFE) =================
+        // Unread state lives on the conversations (read watermarks + counters)
         long unreadMsgs = safeCount(() ->
-                messageRepo.countUnreadMessages(userId));
+                conversationRepo.sumUnreadMessages(userId));
 
         long unreadChats = safeCount(() ->
-                messageRepo.countUnreadConversations(userId));
+                conversationRepo.countUnreadConversations(userId));
 
         long totalChats = safeCount(() ->
                 messageRepo.countRepliedConversations(userId));
@@ -0,0 +1,43 @@
+package com.arpit.chatapp.presence;
+
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.security.Principal;
+import java.util.List;
+
+@Controller
+public class PresenceController {
+
+    private final PresenceService presenceService;
+
+    public PresenceController(PresenceService presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    /**
+     * 🔹 GET /users/{userId}/presence
+     * Initial state for a chat header; changes then arrive on /user/queue/presence
+     */
+    @GetMapping("/users/{userId}/presence")
+    @ResponseBody
+    public PresenceResponse getPresence(@PathVariable String userId) {
+        return presenceService.get(userId);
+    }
+
+    /**
+     * Client sends to:
+     * /app/presence.watch
+     * with the userIds whose conversations it has open (empty = none)
+     */
+    @MessageMapping("/presence.watch")
+    public void watch(@Payload List<String> userIds, Principal principal, SimpMessageHeaderAccessor headers) {
+        if (principal == null) return;
+        presenceService.watch(headers.getSessionId(), principal.getName(), userIds);
+    }
+}
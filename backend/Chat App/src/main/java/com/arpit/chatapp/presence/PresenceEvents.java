@@ -0,0 +1,32 @@
+package com.arpit.chatapp.presence;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+/**
+ * Socket lifecycle into {@link PresenceService}. Anonymous sessions
+ * have no one to be present as and are ignored.
+ */
+@Component
+public class PresenceEvents {
+
+    private final PresenceService presenceService;
+
+    public PresenceEvents(PresenceService presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        if (event.getUser() == null) return;
+        presenceService.connected(event.getUser().getName());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        if (event.getUser() == null) return;
+        presenceService.disconnected(event.getUser().getName(), event.getSessionId());
+    }
+}
@@ -0,0 +1,22 @@
+package com.arpit.chatapp.presence;
+
+/**
+ * A user's presence as others see it. Both fields are empty when the
+ * user hides their last seen.
+ */
+public class PresenceResponse {
+
+    public String userId;
+    public boolean online;
+    public String lastSeen;
+
+    public PresenceResponse(String userId, boolean online, String lastSeen) {
+        this.userId = userId;
+        this.online = online;
+        this.lastSeen = lastSeen;
+    }
+
+    public static PresenceResponse hidden(String userId) {
+        return new PresenceResponse(userId, false, null);
+    }
+}
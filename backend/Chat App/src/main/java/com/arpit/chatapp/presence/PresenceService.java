@@ -0,0 +1,389 @@
+package com.arpit.chatapp.presence;
+
+import com.arpit.chatapp.follower.FollowerRepository;
+import com.arpit.chatapp.user.UserPrivacy;
+import com.arpit.chatapp.user.UserPrivacyRepository;
+import com.arpit.chatapp.websocket.UserDelivery;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Who is online, and when everyone else was last seen.
+ * <p>
+ * Fed by socket connects, disconnects and every inbound frame (STOMP
+ * heartbeats included, see {@link PresenceInterceptor}). Live state is a
+ * map entry per connected user; a heartbeat only stamps it. Last seen
+ * reaches Mongo once per {@code flush-interval} as one bulk write of the
+ * users active since the previous flush, however many heartbeats they
+ * sent. Online/offline changes are pushed once per
+ * {@code push-interval} to followers and to sessions that have the
+ * user's conversation open ({@code /app/presence.watch}): each
+ * recipient gets one frame with every change it should see, and users
+ * with {@link UserPrivacy#isShowLastSeen()} off are never pushed.
+ * <p>
+ * Live state is per node; the cluster-wide view is in
+ * {@link UserPresence#getNodes()}. Each node records the users it holds
+ * there when they go online or offline here (in the push, before anything
+ * is sent) and refreshes it with every flush. Going offline on one node
+ * is only pushed if no other node still holds the user, and a read on a
+ * node without the user's socket asks the same record. An entry not
+ * refreshed for three flush intervals (its node died) no longer counts.
+ */
+@Service
+public class PresenceService {
+
+    public static final String PRESENCE_QUEUE = "/queue/presence";
+
+    private final MongoTemplate mongoTemplate;
+    private final UserPresenceRepository presenceRepo;
+    private final UserPrivacyRepository privacyRepo;
+    private final FollowerRepository followerRepo;
+    private final UserDelivery userDelivery;
+    private final String nodeField;
+    private final long staleAfterMillis;
+
+    // userId -> live state on this node; kept until offline and flushed
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    // userId -> when it last went online/offline, for the next push
+    private final Map<String, Long> changed = new ConcurrentHashMap<>();
+
+    // subject -> sessionId -> watching userId
+    private final Map<String, Map<String, String>> watchers = new ConcurrentHashMap<>();
+
+    // sessionId -> subjects it watches, to undo on re-watch and disconnect
+    private final Map<String, Set<String>> watching = new ConcurrentHashMap<>();
+
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong flushedUsers = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong pushedFrames = new AtomicLong();
+
+    public PresenceService(
+            MongoTemplate mongoTemplate,
+            UserPresenceRepository presenceRepo,
+            UserPrivacyRepository privacyRepo,
+            FollowerRepository followerRepo,
+            UserDelivery userDelivery,
+            @Value("${chat.presence.flush-interval:PT30S}") Duration flushInterval,
+            MeterRegistry meterRegistry
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.presenceRepo = presenceRepo;
+        this.privacyRepo = privacyRepo;
+        this.followerRepo = followerRepo;
+        this.userDelivery = userDelivery;
+        // Dots would nest the field
+        this.nodeField = "nodes." + userDelivery.getNodeId().replace('.', '_');
+        this.staleAfterMillis = flushInterval.multipliedBy(3).toMillis();
+
+        Gauge.builder("chat.presence.online", this, PresenceService::onlineCount).register(meterRegistry);
+        FunctionCounter.builder("chat.presence.heartbeats", heartbeats, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.presence.flushed-users", flushedUsers, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.presence.flushes", flushes, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.presence.pushed-frames", pushedFrames, AtomicLong::get).register(meterRegistry);
+    }
+
+    // ✅ FEED
+
+    public void connected(String userId) {
+        long now = System.currentTimeMillis();
+        states.compute(userId, (id, state) -> {
+            if (state == null) state = new State();
+            if (state.sessions.incrementAndGet() == 1) changed.put(id, now);
+            state.stamp(now);
+            return state;
+        });
+    }
+
+    public void disconnected(String userId, String sessionId) {
+        unwatch(sessionId);
+
+        long now = System.currentTimeMillis();
+        states.computeIfPresent(userId, (id, state) -> {
+            if (state.sessions.decrementAndGet() <= 0) {
+                state.sessions.set(0);
+                changed.put(id, now);
+            }
+            state.stamp(now);
+            return state;
+        });
+    }
+
+    // Hot path: every inbound frame of a connected user. Memory only
+    public void touch(String userId) {
+        State state = states.get(userId);
+        if (state == null) return;
+
+        state.stamp(System.currentTimeMillis());
+        heartbeats.incrementAndGet();
+    }
+
+    // The session has these users' conversations open; replaces what it watched before
+    public void watch(String sessionId, String watcherId, List<String> subjects) {
+        unwatch(sessionId);
+        if (subjects == null || subjects.isEmpty()) return;
+
+        Set<String> set = new LinkedHashSet<>(subjects);
+        set.remove(null);
+        watching.put(sessionId, set);
+        for (String subject : set) {
+            watchers.computeIfAbsent(subject, id -> new ConcurrentHashMap<>()).put(sessionId, watcherId);
+        }
+    }
+
+    // ✅ READ
+    public PresenceResponse get(String userId) {
+        if (!showsLastSeen(privacyRepo.findById(userId).orElse(null))) {
+            return PresenceResponse.hidden(userId);
+        }
+
+        State state = states.get(userId);
+        if (state != null && state.isOnline()) {
+            return new PresenceResponse(userId, true, Instant.ofEpochMilli(state.lastSeen).toString());
+        }
+
+        // Not connected here: another node may hold the user
+        UserPresence stored = presenceRepo.findById(userId).orElse(null);
+        boolean online = stored != null && onAnotherNode(stored, System.currentTimeMillis());
+
+        Instant lastSeen = stored != null ? stored.getLastSeen() : null;
+        if (state != null && (lastSeen == null || state.lastSeen > lastSeen.toEpochMilli())) {
+            lastSeen = Instant.ofEpochMilli(state.lastSeen);
+        }
+        return new PresenceResponse(userId, online, lastSeen != null ? lastSeen.toString() : null);
+    }
+
+    // ✅ BATCHES
+
+    // One bulk write for everyone seen since the last flush; $max keeps concurrent nodes from going backwards
+    @Scheduled(
+            initialDelayString = "${chat.presence.flush-interval:PT30S}",
+            fixedDelayString = "${chat.presence.flush-interval:PT30S}"
+    )
+    public void flush() {
+        Map<String, Long> seen = new HashMap<>();
+        states.forEach((userId, state) -> {
+            if (state.dirty) {
+                state.dirty = false;
+                seen.put(userId, state.lastSeen);
+            }
+        });
+
+        if (!seen.isEmpty()) {
+            try {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserPresence.class);
+                // The node entry rides along: refreshed while the user is connected here
+                seen.forEach((userId, at) -> bulk.upsert(
+                        byId(userId),
+                        withNode(new Update().max("lastSeen", Instant.ofEpochMilli(at)), userId, at)
+                ));
+                bulk.execute();
+
+                flushes.incrementAndGet();
+                flushedUsers.addAndGet(seen.size());
+            } catch (RuntimeException e) {
+                // Try again next round
+                seen.keySet().forEach(userId -> {
+                    State state = states.get(userId);
+                    if (state != null) state.dirty = true;
+                });
+                System.out.println("⚠️ Presence flush failed: " + e.getMessage());
+                return;
+            }
+        }
+
+        // Offline and persisted: Mongo has it now
+        seen.keySet().forEach(userId ->
+                states.computeIfPresent(userId, (id, state) -> !state.isOnline() && !state.dirty ? null : state));
+    }
+
+    @Scheduled(
+            initialDelayString = "${chat.presence.push-interval:PT1S}",
+            fixedDelayString = "${chat.presence.push-interval:PT1S}"
+    )
+    public void push() {
+        if (changed.isEmpty()) return;
+
+        Map<String, Long> batch = new HashMap<>();
+        for (String userId : List.copyOf(changed.keySet())) {
+            Long at = changed.remove(userId);
+            if (at != null) batch.put(userId, at);
+        }
+
+        Map<String, UserPrivacy> privacy = new HashMap<>();
+        Map<String, Set<String>> followers = new HashMap<>();
+        Set<String> elsewhere;
+        try {
+            elsewhere = recordNodes(batch);
+            privacyRepo.findAllById(batch.keySet()).forEach(p -> privacy.put(p.getUserId(), p));
+            followerRepo.findAllById(batch.keySet()).forEach(f -> followers.put(f.getUserId(), f.getFollowers()));
+        } catch (RuntimeException e) {
+            // Back in the queue for the next push; a newer change that came in meanwhile wins
+            batch.forEach((userId, at) -> changed.merge(userId, at, Math::max));
+            System.out.println("⚠️ Presence push failed: " + e.getMessage());
+            return;
+        }
+
+        // recipient -> the changes it should see
+        Map<String, List<PresenceResponse>> byRecipient = new HashMap<>();
+        batch.forEach((userId, at) -> {
+            // Offline here but still connected on another node: nothing changed for anyone else
+            if (elsewhere.contains(userId)) return;
+            if (!showsLastSeen(privacy.get(userId))) return;
+
+            PresenceResponse update = new PresenceResponse(userId, isOnline(userId), Instant.ofEpochMilli(at).toString());
+            for (String recipient : audience(userId, followers.get(userId))) {
+                byRecipient.computeIfAbsent(recipient, id -> new ArrayList<>()).add(update);
+            }
+        });
+
+        // Recipients that see the same changes share one encoded frame
+        Map<List<PresenceResponse>, List<String>> byChanges = new LinkedHashMap<>();
+        byRecipient.forEach((recipient, updates) ->
+                byChanges.computeIfAbsent(updates, u -> new ArrayList<>()).add(recipient));
+
+        byChanges.forEach((updates, recipients) -> {
+            userDelivery.send(recipients, PRESENCE_QUEUE, userDelivery.encode(updates));
+            pushedFrames.addAndGet(recipients.size());
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+
+        // Let go of everyone still connected here rather than wait for the entries to go stale
+        List<String> online = states.entrySet().stream().filter(e -> e.getValue().isOnline()).map(Map.Entry::getKey).toList();
+        if (online.isEmpty()) return;
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserPresence.class);
+            online.forEach(userId -> bulk.updateOne(byId(userId), new Update().unset(nodeField)));
+            bulk.execute();
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Presence node cleanup failed: " + e.getMessage());
+        }
+    }
+
+    // ---------- HELPERS ----------
+
+    // Writes this node's part of the batch's presence; returns those offline here but held by another node
+    private Set<String> recordNodes(Map<String, Long> batch) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserPresence.class);
+        List<String> offline = new ArrayList<>();
+        batch.forEach((userId, at) -> {
+            bulk.upsert(byId(userId), withNode(new Update(), userId, at));
+            if (!isOnline(userId)) offline.add(userId);
+        });
+        bulk.execute();
+
+        Set<String> elsewhere = new HashSet<>();
+        if (offline.isEmpty()) return elsewhere;
+
+        long now = System.currentTimeMillis();
+        presenceRepo.findAllById(offline).forEach(p -> {
+            if (onAnotherNode(p, now)) elsewhere.add(p.getUserId());
+        });
+        return elsewhere;
+    }
+
+    private Update withNode(Update update, String userId, long at) {
+        return isOnline(userId) ? update.set(nodeField, Instant.ofEpochMilli(at)) : update.unset(nodeField);
+    }
+
+    private boolean onAnotherNode(UserPresence presence, long now) {
+        if (presence.getNodes() == null) return false;
+
+        String self = nodeField.substring("nodes.".length());
+        for (Map.Entry<String, Instant> node : presence.getNodes().entrySet()) {
+            if (node.getKey().equals(self) || node.getValue() == null) continue;
+            if (now - node.getValue().toEpochMilli() <= staleAfterMillis) return true;
+        }
+        return false;
+    }
+
+    private static Query byId(String userId) {
+        return new Query(Criteria.where("_id").is(userId));
+    }
+
+    private Set<String> audience(String userId, Set<String> followers) {
+        Set<String> audience = new LinkedHashSet<>();
+        if (followers != null) audience.addAll(followers);
+
+        Map<String, String> sessions = watchers.get(userId);
+        if (sessions != null) audience.addAll(sessions.values());
+
+        audience.remove(userId);
+        return audience;
+    }
+
+    private void unwatch(String sessionId) {
+        Set<String> subjects = watching.remove(sessionId);
+        if (subjects == null) return;
+
+        for (String subject : subjects) {
+            watchers.computeIfPresent(subject, (id, sessions) -> {
+                sessions.remove(sessionId);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+    }
+
+    private boolean isOnline(String userId) {
+        State state = states.get(userId);
+        return state != null && state.isOnline();
+    }
+
+    // No privacy document yet means the defaults, which show last seen
+    private static boolean showsLastSeen(UserPrivacy privacy) {
+        return privacy == null || privacy.isShowLastSeen();
+    }
+
+    private int onlineCount() {
+        int online = 0;
+        for (State state : states.values()) {
+            if (state.isOnline()) online++;
+        }
+        return online;
+    }
+
+    private static final class State {
+
+        final AtomicInteger sessions = new AtomicInteger();
+        volatile long lastSeen;
+        volatile boolean dirty;
+
+        void stamp(long now) {
+            lastSeen = now;
+            dirty = true;
+        }
+
+        boolean isOnline() {
+            return sessions.get() > 0;
+        }
+    }
+}
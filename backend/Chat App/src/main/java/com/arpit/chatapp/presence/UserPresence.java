@@ -0,0 +1,53 @@
+package com.arpit.chatapp.presence;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Last time a user was seen on a socket, and which nodes hold a socket
+ * for them. Last seen is written in batches by {@link PresenceService},
+ * so it may trail live activity by up to one flush interval; while the
+ * user is online the in-memory state wins.
+ */
+@Document(collection = "user_presence")
+public class UserPresence {
+
+    @Id
+    private String userId;
+
+    private Instant lastSeen;
+
+    // nodeId -> when that node last confirmed it holds a socket for the user;
+    // removed on its last disconnect, left to go stale if the node dies
+    private Map<String, Instant> nodes = new HashMap<>();
+
+    public UserPresence() {}
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Instant getLastSeen() {
+        return lastSeen;
+    }
+
+    public Map<String, Instant> getNodes() {
+        return nodes;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public void setLastSeen(Instant lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
+    public void setNodes(Map<String, Instant> nodes) {
+        this.nodes = nodes;
+    }
+}
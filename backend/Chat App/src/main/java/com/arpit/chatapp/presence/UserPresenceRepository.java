@@ -0,0 +1,7 @@
+package com.arpit.chatapp.presence;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface UserPresenceRepository
+        extends MongoRepository<UserPresence, String> {
+}
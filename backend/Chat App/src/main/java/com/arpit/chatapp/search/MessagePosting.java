@@ -0,0 +1,88 @@
+package com.arpit.chatapp.search;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One entry of a postings list: {@code term} occurs in {@code messageId}.
+ * Lists are partitioned by participant, so a message is indexed once for
+ * its sender and once for its receiver and a search only ever scans the
+ * caller's own postings.
+ */
+@Document(collection = "message_postings")
+@CompoundIndexes({
+        // Newest-first scan of one user's list for one term
+        @CompoundIndex(name = "user_term_ts", def = "{ 'userId': 1, 'term': 1, 'timestamp': -1 }"),
+        // Intersection probes, and makes re-indexing a message a no-op
+        @CompoundIndex(name = "user_term_msg", def = "{ 'userId': 1, 'term': 1, 'messageId': 1 }", unique = true)
+})
+public class MessagePosting {
+
+    @Id
+    private String id;
+
+    private String userId;
+    private String term;
+    private String messageId;
+    private String conversationId;
+    private Instant timestamp;
+
+    // Occurrences of the term in the message
+    private int tf;
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public void setTerm(String term) {
+        this.term = term;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Instant timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getTf() {
+        return tf;
+    }
+
+    public void setTf(int tf) {
+        this.tf = tf;
+    }
+}
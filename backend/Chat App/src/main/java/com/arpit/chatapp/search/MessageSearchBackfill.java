@@ -0,0 +1,76 @@
+package com.arpit.chatapp.search;
+
+import com.arpit.chatapp.chat.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Indexes messages sent before search existed.
+ * <p>
+ * Streams `messages` through a cursor and indexes in batches; postings
+ * are unique per (user, term, message), so re-runs only fill gaps.
+ * Off by default ({@code chat.search.backfill.enabled}).
+ */
+@Component
+public class MessageSearchBackfill {
+
+    private static final int MESSAGES_PER_BATCH = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageSearchService searchService;
+    private final boolean enabled;
+
+    public MessageSearchBackfill(
+            MongoTemplate mongoTemplate,
+            MessageSearchService searchService,
+            @Value("${chat.search.backfill.enabled:false}") boolean enabled
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.searchService = searchService;
+        this.enabled = enabled;
+    }
+
+    // After the migrations so postings carry the final conversation ids
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(4)
+    public void backfill() {
+        if (!enabled || !searchService.isEnabled()) return;
+
+        Query query = new Query();
+        query.fields().exclude("isRead");
+
+        List<Message> batch = new ArrayList<>(MESSAGES_PER_BATCH);
+        long indexed = 0;
+
+        try (Stream<Message> stream = mongoTemplate.stream(query, Message.class)) {
+            Iterator<Message> it = stream.iterator();
+
+            while (it.hasNext()) {
+                batch.add(it.next());
+
+                if (batch.size() == MESSAGES_PER_BATCH) {
+                    searchService.indexAll(batch);
+                    indexed += batch.size();
+                    batch = new ArrayList<>(MESSAGES_PER_BATCH);
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            searchService.indexAll(batch);
+            indexed += batch.size();
+        }
+
+        System.out.println("🔎 Indexed " + indexed + " messages for search");
+    }
+}
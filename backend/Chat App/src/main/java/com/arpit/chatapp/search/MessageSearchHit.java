@@ -0,0 +1,58 @@
+package com.arpit.chatapp.search;
+
+public class MessageSearchHit {
+
+    private String messageId;
+    private String conversationId;
+    private String senderId;
+    private String receiverId;
+    private String content;
+    private String timestamp;
+    private double score;
+
+    public MessageSearchHit(
+            String messageId,
+            String conversationId,
+            String senderId,
+            String receiverId,
+            String content,
+            String timestamp,
+            double score
+    ) {
+        this.messageId = messageId;
+        this.conversationId = conversationId;
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.content = content;
+        this.timestamp = timestamp;
+        this.score = score;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public String getSenderId() {
+        return senderId;
+    }
+
+    public String getReceiverId() {
+        return receiverId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,51 @@
+package com.arpit.chatapp.search;
+
+import java.util.List;
+
+public class MessageSearchResponse {
+
+    // Best match first
+    private List<MessageSearchHit> results;
+
+    private int page;
+    private int size;
+
+    private boolean hasMore;
+
+    // Only the newest chat.search.max-candidates matches of the rarest term were ranked
+    private boolean truncated;
+
+    public MessageSearchResponse(
+            List<MessageSearchHit> results,
+            int page,
+            int size,
+            boolean hasMore,
+            boolean truncated
+    ) {
+        this.results = results;
+        this.page = page;
+        this.size = size;
+        this.hasMore = hasMore;
+        this.truncated = truncated;
+    }
+
+    public List<MessageSearchHit> getResults() {
+        return results;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
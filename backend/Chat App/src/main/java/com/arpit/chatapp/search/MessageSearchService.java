@@ -0,0 +1,256 @@
+package com.arpit.chatapp.search;
+
+import com.arpit.chatapp.chat.Message;
+import com.arpit.chatapp.chat.MessageArchive;
+import com.arpit.chatapp.chat.MessageRepository;
+import com.arpit.chatapp.exception.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over a user's own messages.
+ * <p>
+ * Index: {@code message_postings}, one entry per (participant, term, message),
+ * appended as messages are sent. Query: every term must match. The rarest
+ * term's postings become the candidates, each further term is an indexed
+ * probe restricted to those candidates, then candidates are ranked by
+ * tf-idf with newer messages winning ties. Only the requested page of
+ * messages is loaded.
+ * <p>
+ * Candidates are capped at {@code chat.search.max-candidates}: when the
+ * rarest term has more postings than that, only its newest ones are
+ * considered, older matches are not found, and the response says so with
+ * {@code truncated}. The cap is what keeps a query on common words bounded.
+ */
+@Service
+public class MessageSearchService {
+
+    private static final int MAX_PAGE_SIZE = 50;
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageRepository messageRepo;
+    private final MessageArchive archive;
+
+    private final boolean enabled;
+    private final int maxCandidates;
+
+    public MessageSearchService(
+            MongoTemplate mongoTemplate,
+            MessageRepository messageRepo,
+            MessageArchive archive,
+            @Value("${chat.search.enabled:true}") boolean enabled,
+            @Value("${chat.search.max-candidates:5000}") int maxCandidates
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageRepo = messageRepo;
+        this.archive = archive;
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ✅ INDEX
+
+    public void index(Message message) {
+        indexAll(List.of(message));
+    }
+
+    // One unordered insertMany for the whole batch; already-indexed entries are skipped
+    public void indexAll(Collection<Message> messages) {
+        if (!enabled) return;
+
+        List<MessagePosting> postings = new ArrayList<>();
+        for (Message m : messages) {
+            Map<String, Integer> terms = Tokenizer.termFrequencies(m.getContent());
+
+            for (String userId : participants(m)) {
+                terms.forEach((term, tf) -> postings.add(posting(userId, term, tf, m)));
+            }
+        }
+        if (postings.isEmpty()) return;
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MessagePosting.class)
+                    .insert(postings)
+                    .execute();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(err -> err.getCode() == 11000);
+            if (!onlyDuplicates) throw e;
+        }
+    }
+
+    // ✅ SEARCH
+
+    public MessageSearchResponse search(String userId, String q, int page, int size) {
+        if (userId == null || q == null) {
+            throw new BadRequestException("Invalid search request");
+        }
+
+        Set<String> terms = Tokenizer.termFrequencies(q).keySet();
+        if (terms.isEmpty()) {
+            throw new BadRequestException("Query has no searchable terms");
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageIndex = Math.max(0, page);
+
+        // 1. Document frequency per term (capped: only the ordering and idf need it)
+        Map<String, Long> df = new HashMap<>();
+        for (String term : terms) {
+            df.put(term, mongoTemplate.count(termQuery(userId, term).limit(maxCandidates), MessagePosting.class));
+        }
+
+        List<String> byRarity = terms.stream()
+                .sorted(Comparator.comparing(df::get))
+                .toList();
+
+        if (df.get(byRarity.get(0)) == 0) {
+            return new MessageSearchResponse(List.of(), pageIndex, pageSize, false, false);
+        }
+
+        // 2. Candidates: the rarest term's newest postings; one past the cap tells whether any were left out
+        String rarest = byRarity.get(0);
+        Query first = termQuery(userId, rarest)
+                .with(Sort.by(Sort.Direction.DESC, "timestamp"))
+                .limit(maxCandidates + 1);
+        first.fields().include("messageId", "conversationId", "timestamp", "tf");
+
+        List<MessagePosting> postings = mongoTemplate.find(first, MessagePosting.class);
+        boolean truncated = postings.size() > maxCandidates;
+        if (truncated) postings = postings.subList(0, maxCandidates);
+
+        Map<String, Candidate> candidates = new HashMap<>();
+        for (MessagePosting p : postings) {
+            Candidate c = new Candidate(p.getMessageId(), p.getConversationId(), p.getTimestamp());
+            c.score += weight(p.getTf(), df.get(rarest));
+            candidates.put(p.getMessageId(), c);
+        }
+
+        // 3. Intersect with every other term, rarest first so the set shrinks fastest
+        for (String term : byRarity.subList(1, byRarity.size())) {
+            if (candidates.isEmpty()) break;
+
+            Query probe = termQuery(userId, term);
+            probe.addCriteria(Criteria.where("messageId").in(candidates.keySet()));
+            probe.fields().include("messageId", "tf");
+
+            Map<String, Candidate> matched = new HashMap<>();
+            for (MessagePosting p : mongoTemplate.find(probe, MessagePosting.class)) {
+                Candidate c = candidates.get(p.getMessageId());
+                c.score += weight(p.getTf(), df.get(term));
+                matched.put(p.getMessageId(), c);
+            }
+            candidates = matched;
+        }
+
+        // 4. Rank, then load only this page's messages
+        List<Candidate> ranked = candidates.values().stream()
+                .sorted(Comparator.comparingDouble((Candidate c) -> c.score).reversed()
+                        .thenComparing(c -> c.timestamp, Comparator.reverseOrder()))
+                .toList();
+
+        int from = Math.min(pageIndex * pageSize, ranked.size());
+        int to = Math.min(from + pageSize, ranked.size());
+        List<Candidate> slice = ranked.subList(from, to);
+
+        Map<String, Message> messages = messageRepo
+                .findByIds(slice.stream().map(c -> c.messageId).toList())
+                .stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity()));
+
+        // Hits that aged out of the hot collection come from their archive segments
+        slice.stream()
+                .filter(c -> !messages.containsKey(c.messageId))
+                .collect(Collectors.groupingBy(c -> c.conversationId))
+                .forEach((conversationId, missing) -> archive.findByIds(
+                        conversationId,
+                        missing.stream().map(c -> c.messageId).toList(),
+                        missing.stream().map(c -> c.timestamp).min(Comparator.naturalOrder()).orElseThrow(),
+                        missing.stream().map(c -> c.timestamp).max(Comparator.naturalOrder()).orElseThrow()
+                ).forEach(m -> messages.put(m.getId(), m)));
+
+        List<MessageSearchHit> hits = slice.stream()
+                .filter(c -> messages.containsKey(c.messageId))
+                .map(c -> toHit(messages.get(c.messageId), c.score))
+                .toList();
+
+        return new MessageSearchResponse(hits, pageIndex, pageSize, to < ranked.size(), truncated);
+    }
+
+    // ---------- HELPERS ----------
+
+    private Set<String> participants(Message m) {
+        Set<String> users = new LinkedHashSet<>();
+        users.add(m.getSenderId());
+        // Group messages are indexed for their sender only
+        if (m.getReceiverId() != null) users.add(m.getReceiverId());
+        return users;
+    }
+
+    private MessagePosting posting(String userId, String term, int tf, Message m) {
+        MessagePosting p = new MessagePosting();
+        p.setUserId(userId);
+        p.setTerm(term);
+        p.setMessageId(m.getId());
+        p.setConversationId(m.getConversationId());
+        p.setTimestamp(m.getTimestamp());
+        p.setTf(tf);
+        return p;
+    }
+
+    private Query termQuery(String userId, String term) {
+        return new Query(Criteria.where("userId").is(userId).and("term").is(term));
+    }
+
+    // Log-scaled tf times idf; df is capped at maxCandidates, so very common terms tie
+    private double weight(int tf, long df) {
+        double idf = Math.log(1.0 + (double) maxCandidates / Math.max(1, df));
+        return (1.0 + Math.log(tf)) * idf;
+    }
+
+    private MessageSearchHit toHit(Message m, double score) {
+        return new MessageSearchHit(
+                m.getId(),
+                m.getConversationId(),
+                m.getSenderId(),
+                m.getReceiverId(),
+                m.getContent(),
+                m.getTimestamp().toString(),
+                score
+        );
+    }
+
+    private static final class Candidate {
+        final String messageId;
+        final String conversationId;
+        final Instant timestamp;
+        double score;
+
+        Candidate(String messageId, String conversationId, Instant timestamp) {
+            this.messageId = messageId;
+            this.conversationId = conversationId;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.arpit.chatapp.search;
+
+import com.arpit.chatapp.security.CurrentUser;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/users/me")
+public class SearchController {
+
+    private final MessageSearchService searchService;
+
+    public SearchController(MessageSearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    // ✅ SEARCH MY MESSAGES
+    @GetMapping("/messages/search")
+    public MessageSearchResponse search(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            HttpServletRequest request
+    ) {
+        return searchService.search(CurrentUser.of(request), q, page, size);
+    }
+}
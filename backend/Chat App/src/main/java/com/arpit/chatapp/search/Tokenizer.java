@@ -0,0 +1,41 @@
+package com.arpit.chatapp.search;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Splits text into index terms: NFKC-normalized, lower-cased runs of
+ * letters and digits. Messages and queries go through the same rules,
+ * so whatever a message was indexed under can be searched for.
+ */
+public final class Tokenizer {
+
+    private static final int MIN_LENGTH = 2;
+    private static final int MAX_LENGTH = 32;
+
+    // Keeps a pasted log dump from exploding into thousands of postings
+    private static final int MAX_TERMS = 128;
+
+    private Tokenizer() {}
+
+    /**
+     * Term → occurrences, in order of first appearance.
+     */
+    public static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        if (text == null || text.isBlank()) return terms;
+
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() < MIN_LENGTH) continue;
+            if (token.length() > MAX_LENGTH) token = token.substring(0, MAX_LENGTH);
+
+            if (terms.size() >= MAX_TERMS && !terms.containsKey(token)) continue;
+            terms.merge(token, 1, Integer::sum);
+        }
+        return terms;
+    }
+}
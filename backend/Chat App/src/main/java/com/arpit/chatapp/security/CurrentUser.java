@@ -0,0 +1,23 @@
+package com.arpit.chatapp.security;
+
+import com.arpit.chatapp.exception.UnauthorizedException;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * The caller of a REST request, as {@link JwtFilter} put it on the request
+ * from the bearer token. Endpoints that act for a user take it from here,
+ * never from a parameter the client chooses.
+ */
+public final class CurrentUser {
+
+    private CurrentUser() {
+    }
+
+    public static String of(HttpServletRequest request) {
+        String userId = (String) request.getAttribute("userId");
+        if (userId == null || userId.isBlank()) {
+            throw new UnauthorizedException("Not authenticated");
+        }
+        return userId;
+    }
+}
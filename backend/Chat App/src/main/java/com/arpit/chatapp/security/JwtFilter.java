@@ -1,5 +1,6 @@
 package com.arpit.chatapp.security;
 
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -24,10 +25,15 @@ public class JwtFilter extends OncePerRequestFilter {
 
         if (header != null && header.startsWith("Bearer ")) {
             String token = header.substring(7);
-            String userId = jwtUtil.extractUserId(token);
-
-            // 🔥 THIS IS THE KEY LINE
-            request.setAttribute("userId", userId);
+            try {
+                String userId = jwtUtil.extractUserId(token);
+
+                // 🔥 THIS IS THE KEY LINE
+                request.setAttribute("userId", userId);
+            } catch (JwtException | IllegalArgumentException e) {
+                // Bad or expired token: no user, so endpoints that need one answer 401
+                System.out.println("⚠️ Invalid token: " + e.getMessage());
+            }
         }
 
         filterChain.doFilter(request, response);
@@ -0,0 +1,87 @@
+package com.arpit.chatapp.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Authenticates a socket once, on CONNECT: the JWT in the frame's
+ * {@code Authorization} header is verified and its subject bound to the
+ * session as a {@link UserPrincipal}. Every later frame of the session
+ * carries that principal, so handlers take the sender from it and never
+ * parse a token (or trust a client-supplied id) again. SockJS can't send
+ * headers on the handshake, so CONNECT is the first place the token is
+ * seen.
+ * <p>
+ * A CONNECT without a valid token, or a SEND / SUBSCRIBE on a session
+ * that has no principal, is rejected: the client gets an ERROR frame and
+ * the socket is closed.
+ */
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    private final JwtUtil jwtUtil;
+
+    private final AtomicLong authenticated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public StompAuthInterceptor(JwtUtil jwtUtil, MeterRegistry meterRegistry) {
+        this.jwtUtil = jwtUtil;
+
+        FunctionCounter.builder("chat.ws.auth.authenticated", authenticated, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.ws.auth.rejected", rejected, AtomicLong::get).register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) return message;
+
+        switch (accessor.getCommand()) {
+            case CONNECT, STOMP -> accessor.setUser(new UserPrincipal(authenticate(message, accessor)));
+            case SEND, SUBSCRIBE -> {
+                if (accessor.getUser() == null) throw reject(message, "Not authenticated");
+            }
+            default -> {
+                // Heartbeats, UNSUBSCRIBE, DISCONNECT, ...: nothing to check
+            }
+        }
+        return message;
+    }
+
+    // ---------- HELPERS ----------
+
+    private String authenticate(Message<?> message, StompHeaderAccessor accessor) {
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw reject(message, "Missing bearer token");
+        }
+
+        String userId;
+        try {
+            userId = jwtUtil.extractUserId(header.substring(7));
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ WS connect with invalid token: " + e.getMessage());
+            throw reject(message, "Invalid token");
+        }
+        if (userId == null || userId.isBlank()) throw reject(message, "Invalid token");
+
+        authenticated.incrementAndGet();
+        return userId;
+    }
+
+    // A MessagingException reaches the client as the ERROR frame's message, unwrapped
+    private MessageDeliveryException reject(Message<?> message, String reason) {
+        rejected.incrementAndGet();
+        return new MessageDeliveryException(message, reason);
+    }
+}
@@ -0,0 +1,15 @@
+package com.arpit.chatapp.security;
+
+import java.security.Principal;
+
+/**
+ * The user a socket session belongs to. Its name is the userId, so
+ * {@code /user/{userId}/...} destinations resolve to that user's sessions.
+ */
+public record UserPrincipal(String userId) implements Principal {
+
+    @Override
+    public String getName() {
+        return userId;
+    }
+}
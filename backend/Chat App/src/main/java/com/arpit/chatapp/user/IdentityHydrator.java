@@ -0,0 +1,96 @@
+package com.arpit.chatapp.user;
+
+import com.arpit.chatapp.auth.User;
+import com.arpit.chatapp.auth.UserRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves display identities for a whole response at once:
+ * one projected $in query per collection, no matter how many rows.
+ */
+@Component
+public class IdentityHydrator {
+
+    private static final String UNKNOWN = "Unknown";
+
+    private final UserRepository userRepo;
+    private final UserProfileRepository profileRepo;
+
+    public IdentityHydrator(UserRepository userRepo, UserProfileRepository profileRepo) {
+        this.userRepo = userRepo;
+        this.profileRepo = profileRepo;
+    }
+
+    /**
+     * Ids that don't exist in `users` are absent from the result.
+     */
+    public Map<String, UserIdentity> hydrate(Collection<String> userIds) {
+
+        Set<String> ids = userIds.stream()
+                .filter(id -> id != null)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        if (ids.isEmpty()) return Map.of();
+
+        return hydrateUsers(userRepo.findIdentitiesByIdIn(ids));
+    }
+
+    /**
+     * For callers that already hold the User documents: only profiles are fetched.
+     */
+    public Map<String, UserIdentity> hydrateUsers(Collection<User> users) {
+
+        if (users.isEmpty()) return Map.of();
+
+        Set<String> ids = users.stream()
+                .map(User::getId)
+                .collect(Collectors.toSet());
+
+        Map<String, UserProfile> profiles = profileRepo.findIdentitiesByUserIdIn(ids).stream()
+                .collect(Collectors.toMap(UserProfile::getUserId, Function.identity()));
+
+        Map<String, UserIdentity> result = new HashMap<>();
+        for (User user : users) {
+            result.put(user.getId(), toIdentity(user, profiles.get(user.getId())));
+        }
+        return result;
+    }
+
+    public UserIdentity hydrateOne(String userId) {
+        return hydrate(Set.of(userId)).get(userId);
+    }
+
+    /**
+     * Placeholder for ids whose user document is gone.
+     */
+    public UserIdentity unknown(String userId) {
+        return new UserIdentity(userId, UNKNOWN, null, null);
+    }
+
+    // 🔹 The single place that decides profile.displayName vs user.name
+    private UserIdentity toIdentity(User user, UserProfile profile) {
+
+        String displayName = profile != null && hasText(profile.getDisplayName())
+                ? profile.getDisplayName()
+                : (hasText(user.getName()) ? user.getName() : UNKNOWN);
+
+        return new UserIdentity(
+                user.getId(),
+                displayName,
+                user.getEmail(),
+                profile != null ? profile.getProfilePhoto() : null
+        );
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
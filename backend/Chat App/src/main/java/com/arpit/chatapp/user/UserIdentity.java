@@ -0,0 +1,25 @@
+package com.arpit.chatapp.user;
+
+/**
+ * The slice of a user every list/chat response needs: who they are
+ * and how to render them. Built only by {@link IdentityHydrator}.
+ */
+public class UserIdentity {
+
+    private final String userId;
+    private final String displayName;
+    private final String email;
+    private final String profilePhoto;
+
+    public UserIdentity(String userId, String displayName, String email, String profilePhoto) {
+        this.userId = userId;
+        this.displayName = displayName;
+        this.email = email;
+        this.profilePhoto = profilePhoto;
+    }
+
+    public String getUserId() { return userId; }
+    public String getDisplayName() { return displayName; }
+    public String getEmail() { return email; }
+    public String getProfilePhoto() { return profilePhoto; }
+}
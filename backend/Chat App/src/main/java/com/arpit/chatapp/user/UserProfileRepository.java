@@ -1,7 +1,15 @@
 package com.arpit.chatapp.user;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface UserProfileRepository
         extends MongoRepository<UserProfile, String> {
+
+    // Bulk identity lookup — skips the heavy resume sections
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ 'displayName': 1, 'profilePhoto': 1 }")
+    List<UserProfile> findIdentitiesByUserIdIn(Collection<String> userIds);
 }
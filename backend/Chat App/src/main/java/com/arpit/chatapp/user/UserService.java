@@ -2,29 +2,31 @@ package com.arpit.chatapp.user;
 
 import com.arpit.chatapp.auth.User;
 import com.arpit.chatapp.auth.UserRepository;
+import com.arpit.chatapp.exception.NotFoundException;
 import com.arpit.chatapp.follower.Follower;
 import com.arpit.chatapp.follower.FollowerRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepo;
-    private final UserProfileRepository profileRepo;
     private final FollowerRepository followerRepo;
+    private final IdentityHydrator identityHydrator;
 
     public UserService(
             UserRepository userRepo,
-            UserProfileRepository profileRepo,
-            FollowerRepository followerRepo
+            FollowerRepository followerRepo,
+            IdentityHydrator identityHydrator
     ) {
         this.userRepo = userRepo;
-        this.profileRepo = profileRepo;
         this.followerRepo = followerRepo;
+        this.identityHydrator = identityHydrator;
     }
 
     /**
@@ -40,9 +42,14 @@ public class UserService {
         Set<String> myFollowing =
                 me != null ? me.getFollowing() : Collections.emptySet();
 
-        return userRepo.findAll().stream()
+        List<User> others = userRepo.findAll().stream()
                 .filter(u -> !u.getId().equals(currentUserId))
-                .map(u -> mapToUserListResponse(u, myFollowers, myFollowing))
+                .toList();
+
+        Map<String, UserIdentity> identities = identityHydrator.hydrateUsers(others);
+
+        return others.stream()
+                .map(u -> mapToUserListResponse(identities.get(u.getId()), myFollowers, myFollowing))
                 .toList();
     }
 
@@ -51,48 +58,38 @@ public class UserService {
      */
     public UserListResponse getUserById(String targetUserId, String myUserId) {
 
-        User user = userRepo.findById(targetUserId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UserIdentity identity = identityHydrator.hydrateOne(targetUserId);
 
-        UserProfile profile =
-                profileRepo.findById(targetUserId).orElse(null);
+        if (identity == null) {
+            throw new NotFoundException("User not found");
+        }
 
         Follower me = followerRepo.findById(myUserId).orElse(null);
 
-        boolean isFollowing =
-                me != null && me.getFollowing().contains(targetUserId);
+        Set<String> myFollowers =
+                me != null ? me.getFollowers() : Collections.emptySet();
 
-        boolean isFollower =
-                me != null && me.getFollowers().contains(targetUserId);
+        Set<String> myFollowing =
+                me != null ? me.getFollowing() : Collections.emptySet();
 
-        return new UserListResponse(
-                user.getId(),
-                profile != null ? profile.getDisplayName() : user.getName(),
-                user.getEmail(),
-                profile != null ? profile.getProfilePhoto() : null,
-                isFollowing,
-                isFollower
-        );
+        return mapToUserListResponse(identity, myFollowers, myFollowing);
     }
 
     /**
      * 🔹 Shared mapper
      */
     private UserListResponse mapToUserListResponse(
-            User user,
+            UserIdentity identity,
             Set<String> myFollowers,
             Set<String> myFollowing
     ) {
-        UserProfile profile =
-                profileRepo.findById(user.getId()).orElse(null);
-
         return new UserListResponse(
-                user.getId(),
-                profile != null ? profile.getDisplayName() : user.getName(),
-                user.getEmail(),
-                profile != null ? profile.getProfilePhoto() : null,
-                myFollowing.contains(user.getId()),
-                myFollowers.contains(user.getId())
+                identity.getUserId(),
+                identity.getDisplayName(),
+                identity.getEmail(),
+                identity.getProfilePhoto(),
+                myFollowing.contains(identity.getUserId()),
+                myFollowers.contains(identity.getUserId())
         );
     }
 }
@@ -2,10 +2,17 @@ package com.arpit.chatapp.websocket;
 
 public class ChatMessage {
 
+    // Set server-side from the session's principal; whatever the client sends is ignored
     private String senderId;
     private String receiverId;
+
+    // Group sends (/app/group.send) name the group instead of a receiver
+    private String groupId;
     private String content;
 
+    // Optional, unique per sender: a retry with the same id is not sent twice
+    private String clientMessageId;
+
     public ChatMessage() {}
 
     public String getSenderId() {
@@ -31,4 +38,20 @@ public class ChatMessage {
     public void setContent(String content) {
         this.content = content;
     }
+
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
 }
@@ -1,24 +1,36 @@
 package com.arpit.chatapp.websocket;
 
 import com.arpit.chatapp.chat.ChatService;
+import com.arpit.chatapp.chat.GroupService;
 import com.arpit.chatapp.chat.SendMessageResponse;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 @Controller
 public class ChatWebSocketController {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserDelivery userDelivery;
     private final ChatService chatService;
+    private final GroupService groupService;
+    private final SendPipeline sendPipeline;
 
     public ChatWebSocketController(
-            SimpMessagingTemplate messagingTemplate,
-            ChatService chatService
+            UserDelivery userDelivery,
+            ChatService chatService,
+            GroupService groupService,
+            SendPipeline sendPipeline
     ) {
-        this.messagingTemplate = messagingTemplate;
+        this.userDelivery = userDelivery;
         this.chatService = chatService;
+        this.groupService = groupService;
+        this.sendPipeline = sendPipeline;
     }
 
     /**
@@ -26,27 +38,57 @@ public class ChatWebSocketController {
      * /app/chat.send
      */
     @MessageMapping("/chat.send")
-    public void sendMessage(@Payload ChatMessage message) {
+    public void sendMessage(@Payload ChatMessage message, Principal principal, SimpMessageHeaderAccessor headers) {
+        // 🔥 The sender is whoever the socket authenticated as on CONNECT, not what the payload claims
+        message.setSenderId(principal.getName());
+
+        // 🔥 Persist + deliver on the send pipeline: this inbound thread is free right away
+        sendPipeline.submit(message.getSenderId(), headers, message.getClientMessageId(), () -> deliver(message));
+    }
+
+    /**
+     * Client sends to:
+     * /app/group.send
+     */
+    @MessageMapping("/group.send")
+    public void sendGroupMessage(@Payload ChatMessage message, Principal principal, SimpMessageHeaderAccessor headers) {
+        message.setSenderId(principal.getName());
+        sendPipeline.submit(message.getSenderId(), headers, message.getClientMessageId(), () -> deliverGroup(message));
+    }
+
+    // ---------- HELPERS ----------
+
+    private void deliver(ChatMessage message) {
 
         // 🔥 SAVE MESSAGE USING EXISTING CHAT SERVICE
         SendMessageResponse savedMessage = chatService.sendMessage(
                 message.getSenderId(),
                 message.getReceiverId(),
-                message.getContent()
+                message.getContent(),
+                message.getClientMessageId()
         );
 
-        System.out.println(savedMessage);
+        // 🔥 SEND TO RECEIVER (REAL-TIME) AND BACK TO SENDER, on whichever node they are
+        // A retried send was already delivered: only the sender needs the ack again
+        Set<String> recipients = new LinkedHashSet<>();
+        if (!savedMessage.isReplay()) recipients.add(message.getReceiverId());
+        recipients.add(message.getSenderId());
 
-        // 🔥 SEND TO RECEIVER (REAL-TIME)
-        messagingTemplate.convertAndSend(
-                "/topic/chat/" + message.getReceiverId(),
-                savedMessage
-        );
+        userDelivery.send(recipients, savedMessage);
+    }
 
-        // 🔥 SEND BACK TO SENDER
-        messagingTemplate.convertAndSend(
-                "/topic/chat/" + message.getSenderId(),
-                savedMessage
+    private void deliverGroup(ChatMessage message) {
+
+        SendMessageResponse savedMessage = groupService.sendMessage(
+                message.getSenderId(),
+                message.getGroupId(),
+                message.getContent(),
+                message.getClientMessageId()
         );
+
+        // Members (sender included) get it through GroupDelivery; a retry only needs its ack
+        if (savedMessage.isReplay()) {
+            userDelivery.send(List.of(message.getSenderId()), savedMessage);
+        }
     }
 }
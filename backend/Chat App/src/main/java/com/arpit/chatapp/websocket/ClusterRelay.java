@@ -0,0 +1,26 @@
+package com.arpit.chatapp.websocket;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries socket deliveries between nodes, so a message sent on one node
+ * reaches a user whose socket is held by another. Every node publishes
+ * what it delivers; every node hears every envelope (its own included)
+ * and forwards only to the sessions it holds.
+ * <p>
+ * Selected by {@code chat.cluster.relay}: {@code in-process} (default,
+ * single node and tests) or {@code mongo}.
+ */
+public interface ClusterRelay {
+
+    void publish(RelayEnvelope envelope);
+
+    // Several at once, for senders that batch (one write on relays that store envelopes)
+    default void publishAll(List<RelayEnvelope> envelopes) {
+        envelopes.forEach(this::publish);
+    }
+
+    // Called once at startup; envelopes arrive on a relay thread, in publish order per publisher
+    void subscribe(Consumer<RelayEnvelope> listener);
+}
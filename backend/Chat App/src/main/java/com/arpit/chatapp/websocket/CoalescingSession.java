@@ -0,0 +1,222 @@
+package com.arpit.chatapp.websocket;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One socket's outbound buffer. {@link #sendMessage} only queues and
+ * returns; a flusher thread writes whatever has queued up since the last
+ * write as a single WebSocket message (STOMP frames are NUL-terminated,
+ * so several concatenate into one message that clients split again), up
+ * to {@code maxFrameBytes} per write. Text and binary frames (compact
+ * encoding) coalesce separately, in order.
+ * <p>
+ * A session whose buffer passes {@code bufferBytes}, or whose oldest
+ * pending (or in-flight) write is older than {@code timeLimitMillis}, is
+ * evicted: the send fails with {@link SessionLimitExceededException}, and
+ * the broker closes the socket with {@link #RESYNC}. The client
+ * reconnects and catches up from the sync endpoint. Those checks run on
+ * the next send; {@link #expire} applies the time limit to a session that
+ * gets no more sends, and closes it itself.
+ */
+public class CoalescingSession extends WebSocketSessionDecorator {
+
+    public static final CloseStatus RESYNC = CloseStatus.SESSION_NOT_RELIABLE.withReason("resync");
+
+    private final OutboundBuffers buffers;
+    private final Executor flusher;
+    private final int bufferBytes;
+    private final long timeLimitMillis;
+    private final int maxFrameBytes;
+
+    private final Queue<Pending> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // When the write in progress started; 0 = none
+    private volatile long sendingSince;
+    private volatile boolean evicted;
+
+    CoalescingSession(
+            WebSocketSession delegate,
+            OutboundBuffers buffers,
+            Executor flusher,
+            int bufferBytes,
+            long timeLimitMillis,
+            int maxFrameBytes
+    ) {
+        super(delegate);
+        this.buffers = buffers;
+        this.flusher = flusher;
+        this.bufferBytes = bufferBytes;
+        this.timeLimitMillis = timeLimitMillis;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    public int getBufferDepth() {
+        return depth.get();
+    }
+
+    public long getBufferBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (evicted) throw new SessionLimitExceededException("Session evicted", RESYNC);
+
+        long now = System.currentTimeMillis();
+        buffer.add(new Pending(message, now));
+        depth.incrementAndGet();
+        bytes.addAndGet(message.getPayloadLength());
+
+        checkLimits(now);
+
+        if (scheduled.compareAndSet(false, true)) flusher.execute(this::flush);
+    }
+
+    /**
+     * Evicts and closes the session if a write has been stuck, or a message
+     * queued, for longer than the time limit. Returns whether it did.
+     */
+    boolean expire(long now) {
+        if (evicted) return false;
+        String reason = overTimeLimit(now);
+        if (reason == null) return false;
+
+        evict();
+        System.out.println("⚠️ " + reason + " for session " + getId() + "; closing");
+        try {
+            getDelegate().close(RESYNC);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("⚠️ Close failed for session " + getId() + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    // ---------- HELPERS ----------
+
+    private void checkLimits(long now) {
+        String reason = bytes.get() > bufferBytes
+                ? "Buffer over " + bufferBytes + " bytes"
+                : overTimeLimit(now);
+        if (reason == null) return;
+
+        evict();
+        throw new SessionLimitExceededException(reason + " for session " + getId(), RESYNC);
+    }
+
+    private String overTimeLimit(long now) {
+        Pending oldest = buffer.peek();
+        long since = sendingSince;
+
+        if (since > 0 && now - since > timeLimitMillis) {
+            return "Write pending over " + timeLimitMillis + " ms";
+        }
+        if (oldest != null && now - oldest.queuedAt() > timeLimitMillis) {
+            return "Message queued over " + timeLimitMillis + " ms";
+        }
+        return null;
+    }
+
+    private void evict() {
+        evicted = true;
+        buffer.clear();
+        depth.set(0);
+        bytes.set(0);
+        buffers.evicted();
+    }
+
+    private void flush() {
+        try {
+            while (!evicted && isOpen()) {
+                Pending head = buffer.peek();
+                if (head == null) break;
+
+                // A run of text (or of binary) frames coalesces; anything else goes out on its own, in order
+                if (head.message() instanceof TextMessage) {
+                    flushText();
+                } else if (head.message() instanceof BinaryMessage) {
+                    flushBinary();
+                } else {
+                    buffer.poll();
+                    dequeued(head.message());
+                    write(head.message(), 1);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // The socket is going away; its close event cleans up
+            System.out.println("⚠️ Outbound write failed for session " + getId() + ": " + e.getMessage());
+        } finally {
+            scheduled.set(false);
+            // Anything queued after the loop's last look gets its own flush
+            if (!buffer.isEmpty() && !evicted && scheduled.compareAndSet(false, true)) flusher.execute(this::flush);
+        }
+    }
+
+    private void flushText() throws IOException {
+        StringBuilder text = new StringBuilder();
+        int count = 0;
+        Pending next;
+        while ((next = buffer.peek()) != null
+                && next.message() instanceof TextMessage t
+                && (count == 0 || text.length() + t.getPayloadLength() <= maxFrameBytes)) {
+            buffer.poll();
+            text.append(t.getPayload());
+            count++;
+            dequeued(t);
+        }
+        write(new TextMessage(text), count);
+    }
+
+    private void flushBinary() throws IOException {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        int count = 0;
+        Pending next;
+        while ((next = buffer.peek()) != null
+                && next.message() instanceof BinaryMessage b
+                && (count == 0 || binary.size() + b.getPayloadLength() <= maxFrameBytes)) {
+            buffer.poll();
+            ByteBuffer payload = b.getPayload().duplicate();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            binary.writeBytes(bytes);
+            count++;
+            dequeued(b);
+        }
+        write(new BinaryMessage(binary.toByteArray()), count);
+    }
+
+    private void write(WebSocketMessage<?> message, int coalesced) throws IOException {
+        sendingSince = System.currentTimeMillis();
+        try {
+            getDelegate().sendMessage(message);
+        } finally {
+            sendingSince = 0;
+        }
+        buffers.wrote(coalesced);
+    }
+
+    private void dequeued(WebSocketMessage<?> message) {
+        depth.decrementAndGet();
+        bytes.addAndGet(-message.getPayloadLength());
+    }
+
+    private record Pending(WebSocketMessage<?> message, long queuedAt) {}
+}
@@ -0,0 +1,311 @@
+package com.arpit.chatapp.websocket;
+
+import com.arpit.chatapp.chat.Conversation;
+import com.arpit.chatapp.chat.SendMessageResponse;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Binary form of {@link SendMessageResponse} for sockets that negotiated
+ * it (see {@link CompactEncoding}); {@code frontend/src/websocket/compact.js}
+ * reads it. No field names, ids as raw bytes, the timestamp as numbers:
+ * <pre>
+ * version(1) flags(1) messageId [conversationId] senderId receiverId
+ * content timestamp seq clientMessageId
+ * </pre>
+ * Numbers are unsigned LEB128 varints. Strings are varint(UTF-8 length + 1)
+ * then the bytes, 0 meaning null. Ids are a varint tag: 0 null, 1 a 12-byte
+ * ObjectId, 2 a 16-byte UUID, n + 3 an n-byte UTF-8 string. Every value
+ * decodes back to the exact string the JSON form carries.
+ */
+public final class CompactCodec {
+
+    static final int VERSION = 1;
+
+    // conversationId is directId(senderId, receiverId) and is left out
+    private static final int DIRECT = 1;
+    // timestamp is an Instant: epoch seconds then nanos
+    private static final int INSTANT = 2;
+
+    private static final int ID_NULL = 0;
+    private static final int ID_OBJECT_ID = 1;
+    private static final int ID_UUID = 2;
+    private static final int ID_STRING = 3;
+
+    // Lowercase hex digit values by char, -1 for anything else
+    private static final byte[] HEX = new byte[128];
+
+    static {
+        Arrays.fill(HEX, (byte) -1);
+        for (int i = 0; i < 16; i++) HEX["0123456789abcdef".charAt(i)] = (byte) i;
+    }
+
+    private CompactCodec() {
+    }
+
+    public static byte[] encode(SendMessageResponse r) {
+        Instant instant = instant(r.getTimestamp());
+        boolean direct = isDirect(r.getConversationId(), r.getSenderId(), r.getReceiverId());
+
+        Out out = new Out(64 + (r.getContent() != null ? r.getContent().length() * 3 : 0));
+        out.write(VERSION);
+        out.write((direct ? DIRECT : 0) | (instant != null ? INSTANT : 0));
+
+        out.id(r.getMessageId());
+        if (!direct) out.id(r.getConversationId());
+        out.id(r.getSenderId());
+        out.id(r.getReceiverId());
+        out.string(r.getContent());
+        if (instant != null) {
+            out.varint(instant.getEpochSecond());
+            out.varint(instant.getNano());
+        } else {
+            out.string(r.getTimestamp());
+        }
+        out.varint(r.getSeq());
+        out.id(r.getClientMessageId());
+        return out.toByteArray();
+    }
+
+    public static SendMessageResponse decode(byte[] bytes) {
+        In in = new In(bytes);
+        int version = in.read();
+        if (version != VERSION) throw new IllegalArgumentException("Unknown compact version " + version);
+        int flags = in.read();
+
+        String messageId = in.id();
+        String conversationId = (flags & DIRECT) == 0 ? in.id() : null;
+        String senderId = in.id();
+        String receiverId = in.id();
+        String content = in.string();
+        String timestamp = (flags & INSTANT) != 0
+                ? Instant.ofEpochSecond(in.varint(), in.varint()).toString()
+                : in.string();
+        long seq = in.varint();
+        String clientMessageId = in.id();
+
+        if ((flags & DIRECT) != 0) conversationId = Conversation.directId(senderId, receiverId);
+        return new SendMessageResponse(
+                messageId, conversationId, senderId, receiverId, content, timestamp, seq, clientMessageId);
+    }
+
+    // ---------- HELPERS ----------
+
+    // Same as directId(a, b).equals(conversationId), without building the string
+    private static boolean isDirect(String conversationId, String a, String b) {
+        if (conversationId == null || a == null || b == null) return false;
+        boolean ordered = a.compareTo(b) <= 0;
+        String first = ordered ? a : b;
+        String second = ordered ? b : a;
+        return conversationId.length() == first.length() + 1 + second.length()
+                && conversationId.startsWith(first)
+                && conversationId.charAt(first.length()) == '_'
+                && conversationId.endsWith(second);
+    }
+
+    // Only the exact form Instant.toString prints (years 1970-9999), so it decodes to the same string.
+    // By hand: Instant.parse costs more than the rest of the encoding together
+    private static Instant instant(String t) {
+        if (t == null) return null;
+        int n = t.length();
+        if ((n != 20 && n != 24 && n != 27 && n != 30)
+                || t.charAt(4) != '-' || t.charAt(7) != '-' || t.charAt(10) != 'T'
+                || t.charAt(13) != ':' || t.charAt(16) != ':' || t.charAt(n - 1) != 'Z') {
+            return null;
+        }
+
+        int year = digits(t, 0, 4);
+        int month = digits(t, 5, 2);
+        int day = digits(t, 8, 2);
+        int hour = digits(t, 11, 2);
+        int minute = digits(t, 14, 2);
+        int second = digits(t, 17, 2);
+        if (year < 1970 || month < 0 || day < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) {
+            return null;
+        }
+
+        int nanos = 0;
+        if (n > 20) {
+            int fraction = digits(t, 20, n - 21);
+            // Trailing 000 would have been printed shorter
+            if (t.charAt(19) != '.' || fraction < 0 || fraction % 1000 == 0) return null;
+            nanos = fraction * (n == 24 ? 1_000_000 : n == 27 ? 1_000 : 1);
+        }
+
+        try {
+            long days = LocalDate.of(year, month, day).toEpochDay();
+            return Instant.ofEpochSecond(days * 86_400 + hour * 3_600 + minute * 60 + second, nanos);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    // -1 unless all digits
+    private static int digits(String s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int hexDigit(char c) {
+        return c < 128 ? HEX[c] : -1;
+    }
+
+    // Not a ByteArrayOutputStream: its writes are synchronized, one lock per byte
+    private static final class Out {
+
+        private byte[] buf;
+        private int count;
+
+        Out(int size) {
+            buf = new byte[size];
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void string(String value) {
+            if (value == null) {
+                write(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1L);
+            write(utf8);
+        }
+
+        void id(String value) {
+            if (value == null) {
+                write(ID_NULL);
+                return;
+            }
+            int length = value.length();
+            if ((length == 24 && hex(ID_OBJECT_ID, value, false)) || (length == 36 && hex(ID_UUID, value, true))) {
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + (long) ID_STRING);
+            write(utf8);
+        }
+
+        // The tag, then the value as bytes if it is lowercase hex (with a UUID's dashes,
+        // which are dropped); otherwise writes nothing. One pass: this is most of the encoding
+        private boolean hex(int tag, String value, boolean uuid) {
+            int at = count;
+            ensure(1 + value.length() / 2);
+            buf[at++] = (byte) tag;
+
+            for (int i = 0; i < value.length(); ) {
+                if (uuid && (i == 8 || i == 13 || i == 18 || i == 23)) {
+                    if (value.charAt(i++) != '-') return false;
+                    continue;
+                }
+                int high = hexDigit(value.charAt(i));
+                int low = hexDigit(value.charAt(i + 1));
+                if ((high | low) < 0) return false;
+                buf[at++] = (byte) (high << 4 | low);
+                i += 2;
+            }
+            count = at;
+            return true;
+        }
+
+        private void ensure(int more) {
+            if (count + more > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + more));
+        }
+    }
+
+    private static final class In {
+
+        private final byte[] bytes;
+        private int pos;
+
+        In(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int read() {
+            if (pos >= bytes.length) throw new IllegalArgumentException("Truncated compact message");
+            return bytes[pos++] & 0xFF;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+                if (shift > 56) throw new IllegalArgumentException("Varint too long");
+            }
+        }
+
+        String string() {
+            long length = varint();
+            return length == 0 ? null : utf8((int) (length - 1));
+        }
+
+        String id() {
+            long tag = varint();
+            if (tag == ID_NULL) return null;
+            if (tag == ID_OBJECT_ID) return new ObjectId(take(12)).toHexString();
+            if (tag == ID_UUID) return new UUID(long64(), long64()).toString();
+            return utf8((int) (tag - ID_STRING));
+        }
+
+        private long long64() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) value = (value << 8) | read();
+            return value;
+        }
+
+        private String utf8(int length) {
+            return new String(bytes, skip(length), length, StandardCharsets.UTF_8);
+        }
+
+        private byte[] take(int length) {
+            int from = skip(length);
+            return Arrays.copyOfRange(bytes, from, from + length);
+        }
+
+        // Start of the next length bytes, which are then consumed
+        private int skip(int length) {
+            if (length < 0 || pos + length > bytes.length) {
+                throw new IllegalArgumentException("Truncated compact message");
+            }
+            int from = pos;
+            pos += length;
+            return from;
+        }
+    }
+}
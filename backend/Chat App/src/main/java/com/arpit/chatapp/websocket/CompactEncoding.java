@@ -0,0 +1,131 @@
+package com.arpit.chatapp.websocket;
+
+import com.arpit.chatapp.chat.SendMessageResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-socket choice between JSON and {@link CompactCodec} for chat
+ * messages.
+ * <p>
+ * A client asks with {@code chat-encoding: compact} on CONNECT. Only
+ * sockets on the plain WebSocket endpoint qualify: SockJS carries text
+ * only, and the compact form goes out as binary frames. Every chat frame
+ * is encoded both ways once, when it is built ({@link #attach}); the
+ * broker fans out the JSON frame as before, and on the way out to a
+ * socket that negotiated, the body is swapped for the compact bytes with
+ * {@code content-type: application/octet-stream}. Clients tell the two
+ * apart by that header, so one that asked but landed on SockJS still
+ * reads JSON.
+ */
+@Component
+public class CompactEncoding implements ChannelInterceptor {
+
+    public static final String HEADER = "chat-encoding";
+    public static final String COMPACT = "compact";
+
+    // Frame header carrying the compact body next to the JSON one; never written to the wire
+    static final String PAYLOAD_HEADER = "chatCompactPayload";
+    // Session attribute set on handshakes that can carry binary frames
+    static final String BINARY_TRANSPORT = "chatBinaryTransport";
+
+    private final boolean enabled;
+
+    private final Set<String> compactSessions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong compactFrames = new AtomicLong();
+
+    public CompactEncoding(
+            @Value("${chat.ws.compact.enabled:true}") boolean enabled,
+            MeterRegistry meterRegistry
+    ) {
+        this.enabled = enabled;
+
+        Gauge.builder("chat.ws.compact.sessions", compactSessions, Set::size).register(meterRegistry);
+        FunctionCounter.builder("chat.ws.compact.frames", compactFrames, AtomicLong::get).register(meterRegistry);
+    }
+
+    // For the plain WebSocket endpoint's handshake
+    public HandshakeInterceptor binaryTransport() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                           WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                attributes.put(BINARY_TRANSPORT, Boolean.TRUE);
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Exception exception) {
+            }
+        };
+    }
+
+    // Adds the compact body to a frame about to be delivered (chat messages only)
+    public Message<?> attach(Object payload, Message<?> frame) {
+        if (!enabled || !(payload instanceof SendMessageResponse response)) return frame;
+        return attach(frame, CompactCodec.encode(response));
+    }
+
+    Message<?> attach(Message<?> frame, byte[] compact) {
+        if (compact == null) return frame;
+        return MessageBuilder.fromMessage(frame).setHeader(PAYLOAD_HEADER, compact).build();
+    }
+
+    // Inbound: CONNECT / DISCONNECT. Outbound: the body swap
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) return message;
+
+        if (type == SimpMessageType.CONNECT) {
+            StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+            Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+            if (enabled && accessor != null && accessor.getCommand() == StompCommand.CONNECT
+                    && COMPACT.equals(accessor.getFirstNativeHeader(HEADER))
+                    && attributes != null && Boolean.TRUE.equals(attributes.get(BINARY_TRANSPORT))) {
+                compactSessions.add(sessionId);
+            }
+        } else if (type == SimpMessageType.DISCONNECT) {
+            compactSessions.remove(sessionId);
+        } else if (type == SimpMessageType.MESSAGE
+                && message.getHeaders().get(PAYLOAD_HEADER) instanceof byte[] compact) {
+            return compactSessions.contains(sessionId) ? swap(message, compact) : message;
+        }
+        return message;
+    }
+
+    // ---------- HELPERS ----------
+
+    private Message<?> swap(Message<?> message, byte[] compact) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.removeHeader(PAYLOAD_HEADER);
+        compactFrames.incrementAndGet();
+        return MessageBuilder.createMessage(compact, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,86 @@
+package com.arpit.chatapp.websocket;
+
+import com.arpit.chatapp.chat.GroupMemberRepository;
+import com.arpit.chatapp.chat.GroupMessageSent;
+import com.arpit.chatapp.chat.RecentChatsCache;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes group messages to every member's socket.
+ * <p>
+ * The payload is serialized once per message and the same frame goes to
+ * each member (see {@link UserDelivery}; one relay envelope per batch).
+ * Members are read off one cursor in batches of {@code delivery-batch},
+ * and each batch also updates the members' cached chat lists. Work runs
+ * on {@code delivery-threads} single-thread lanes picked by conversation,
+ * so a group's messages arrive in send order while the sender's request
+ * returns right away.
+ */
+@Component
+public class GroupDelivery {
+
+    private final UserDelivery userDelivery;
+    private final GroupMemberRepository memberRepo;
+    private final RecentChatsCache recentChatsCache;
+    private final int batchSize;
+    private final ExecutorService[] lanes;
+
+    public GroupDelivery(
+            UserDelivery userDelivery,
+            GroupMemberRepository memberRepo,
+            RecentChatsCache recentChatsCache,
+            @Value("${chat.group.delivery-batch:500}") int batchSize,
+            @Value("${chat.group.delivery-threads:2}") int threads
+    ) {
+        this.userDelivery = userDelivery;
+        this.memberRepo = memberRepo;
+        this.recentChatsCache = recentChatsCache;
+        this.batchSize = batchSize;
+
+        this.lanes = new ExecutorService[Math.max(1, threads)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "group-delivery-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @EventListener
+    public void onGroupMessage(GroupMessageSent event) {
+        String conversationId = event.message().getConversationId();
+        lanes[Math.floorMod(conversationId.hashCode(), lanes.length)].execute(() -> deliver(event));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ExecutorService lane : lanes) lane.shutdown();
+        for (ExecutorService lane : lanes) lane.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // ---------- HELPERS ----------
+
+    private void deliver(GroupMessageSent event) {
+        try {
+            // Immutable headers: the template copies them per destination, the payload is shared
+            Message<?> frame = userDelivery.encode(event.response());
+
+            memberRepo.forEachMemberBatch(event.message().getConversationId(), batchSize, members -> {
+                userDelivery.send(members, frame);
+                recentChatsCache.onGroupSend(members, event.message());
+            });
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Group delivery failed for " + event.response().getMessageId() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.arpit.chatapp.websocket;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Relay over a {@link Bus} shared inside one JVM. In the app it is the
+ * single-node default (nobody else is on the bus); tests put several
+ * nodes on one bus to stand in for a cluster.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.relay", havingValue = "in-process", matchIfMissing = true)
+public class InProcessRelay implements ClusterRelay {
+
+    private final Bus bus;
+
+    public InProcessRelay() {
+        this(new Bus());
+    }
+
+    public InProcessRelay(Bus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public void publish(RelayEnvelope envelope) {
+        bus.publish(envelope);
+    }
+
+    @Override
+    public void subscribe(Consumer<RelayEnvelope> listener) {
+        bus.subscribe(listener);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        bus.shutdown();
+    }
+
+    /**
+     * Each subscriber gets its own delivery thread, like a node reading its
+     * own cursor: a slow node never holds up the others.
+     */
+    public static final class Bus {
+
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+        public void publish(RelayEnvelope envelope) {
+            for (Subscriber s : subscribers) {
+                s.executor.execute(() -> s.listener.accept(envelope));
+            }
+        }
+
+        public void subscribe(Consumer<RelayEnvelope> listener) {
+            ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "relay-in-process-" + subscribers.size());
+                t.setDaemon(true);
+                return t;
+            });
+            subscribers.add(new Subscriber(listener, executor));
+        }
+
+        public void shutdown() throws InterruptedException {
+            for (Subscriber s : subscribers) s.executor.shutdown();
+            for (Subscriber s : subscribers) s.executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        private record Subscriber(Consumer<RelayEnvelope> listener, ExecutorService executor) {}
+    }
+}
@@ -0,0 +1,94 @@
+package com.arpit.chatapp.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Subscription lookup for the simple broker with exact-match destinations
+ * under {@code /queue/} kept in a map.
+ * <p>
+ * User destinations resolve to one broker destination per session
+ * ({@code /queue/chat-user{sessionId}}), so every one is distinct and the
+ * default registry's cache (1024 destinations) never holds them: each
+ * send then scans every subscription on the node. Here such a send is a
+ * map lookup, and delivering to a user costs one per session they have.
+ * Destinations under {@code /queue/} match literally (no patterns, no
+ * selectors); everything else is left to the default registry.
+ */
+public class IndexedSubscriptionRegistry extends DefaultSubscriptionRegistry {
+
+    static final String INDEXED_PREFIX = "/queue/";
+
+    // destination -> sessionId -> subscriptionIds
+    private final Map<String, Map<String, Map<String, Boolean>>> byDestination = new ConcurrentHashMap<>();
+
+    // sessionId -> subscriptionId -> destination, to undo unsubscribes and disconnects
+    private final Map<String, Map<String, String>> bySession = new ConcurrentHashMap<>();
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination, Message<?> message) {
+        if (!destination.startsWith(INDEXED_PREFIX)) {
+            super.addSubscriptionInternal(sessionId, subscriptionId, destination, message);
+            return;
+        }
+
+        bySession.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, destination);
+        byDestination.computeIfAbsent(destination, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, Boolean.TRUE);
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        Map<String, String> subscriptions = bySession.get(sessionId);
+        String destination = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+
+        if (destination == null) {
+            super.removeSubscriptionInternal(sessionId, subscriptionId, message);
+            return;
+        }
+        release(destination, sessionId, subscriptionId);
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Map<String, String> subscriptions = bySession.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.forEach((subscriptionId, destination) -> release(destination, sessionId, subscriptionId));
+        }
+        super.unregisterAllSubscriptions(sessionId);
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        if (!destination.startsWith(INDEXED_PREFIX)) {
+            return super.findSubscriptionsInternal(destination, message);
+        }
+
+        MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
+        Map<String, Map<String, Boolean>> sessions = byDestination.get(destination);
+        if (sessions != null) {
+            sessions.forEach((sessionId, subscriptionIds) ->
+                    subscriptionIds.keySet().forEach(subscriptionId -> result.add(sessionId, subscriptionId)));
+        }
+        return result;
+    }
+
+    // ---------- HELPERS ----------
+
+    // Atomically drops the destination once its last subscription is gone
+    private void release(String destination, String sessionId, String subscriptionId) {
+        byDestination.computeIfPresent(destination, (d, sessions) -> {
+            sessions.computeIfPresent(sessionId, (id, subscriptionIds) -> {
+                subscriptionIds.remove(subscriptionId);
+                return subscriptionIds.isEmpty() ? null : subscriptionIds;
+            });
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+}
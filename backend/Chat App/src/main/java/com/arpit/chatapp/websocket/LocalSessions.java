@@ -0,0 +1,35 @@
+package com.arpit.chatapp.websocket;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Which users have a socket on this node, keyed by the principal bound
+ * on CONNECT (see {@code StompAuthInterceptor}). Backed by the broker's
+ * user registry, which also resolves {@code /user/{userId}/queue/chat}
+ * to that user's sessions, so a lookup costs one map read. Deliveries
+ * (local or relayed) skip users that aren't here instead of handing the
+ * broker frames nobody receives.
+ */
+@Component
+public class LocalSessions {
+
+    // What clients subscribe to; the broker sees one destination per session
+    public static final String USER_QUEUE = "/queue/chat";
+
+    private final SimpUserRegistry userRegistry;
+
+    public LocalSessions(SimpUserRegistry userRegistry, MeterRegistry meterRegistry) {
+        this.userRegistry = userRegistry;
+
+        Gauge.builder("chat.sessions.local-users", userRegistry, SimpUserRegistry::getUserCount).register(meterRegistry);
+    }
+
+    public boolean isLocal(String userId) {
+        SimpUser user = userRegistry.getUser(userId);
+        return user != null && user.hasSessions();
+    }
+}
@@ -0,0 +1,271 @@
+package com.arpit.chatapp.websocket;
+
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Relay over a capped collection ({@code ws_relay}) that every node
+ * tails. A publish is one insert; a tailable await cursor hands each node
+ * the new envelopes in {@code $natural} (insertion) order. The cap bounds
+ * storage: old envelopes fall off once every node has long since read them.
+ * <p>
+ * Works on a standalone server as well as a replica set (a change stream
+ * on {@code messages} would need the latter, and would only carry
+ * messages). Envelopes are never selected by {@code _id}: ObjectIds come
+ * from the publishing node's clock and counter, so they don't follow
+ * insertion order across nodes. Each publisher (one per process) numbers
+ * its own envelopes from a local counter instead, so publishing never
+ * waits on another node. A node that loses its cursor resumes per
+ * publisher: everything above the highest number below which it saw all of
+ * that publisher's envelopes, minus what it already saw above it.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.relay", havingValue = "mongo")
+public class MongoRelay implements ClusterRelay {
+
+    static final String COLLECTION = "ws_relay";
+    private static final long RETRY_MS = 1_000;
+    // Numbers seen above a publisher's contiguous mark; past this, a gap (an insert
+    // that failed after taking its number) is given up on
+    private static final int MAX_OUT_OF_ORDER = 4_096;
+
+    private final MongoTemplate mongoTemplate;
+    private final long cappedBytes;
+
+    private final List<Consumer<RelayEnvelope>> listeners = new CopyOnWriteArrayList<>();
+
+    // This process's envelopes: a fresh id per start, so a restarted node's numbers start over cleanly
+    private final String publisher = UUID.randomUUID().toString();
+    private final AtomicLong published = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread tailer;
+
+    public MongoRelay(
+            MongoTemplate mongoTemplate,
+            @Value("${chat.cluster.mongo.capped-bytes:67108864}") long cappedBytes
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.cappedBytes = cappedBytes;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        tailer = new Thread(this::tailLoop, "relay-mongo-tailer");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (tailer == null) return;
+
+        tailer.interrupt();
+        tailer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Override
+    public void publish(RelayEnvelope envelope) {
+        collection().insertOne(document(envelope));
+    }
+
+    // One insertMany; the numbers are taken in list order, so a batch arrives in order
+    @Override
+    public void publishAll(List<RelayEnvelope> envelopes) {
+        if (envelopes.isEmpty()) return;
+        collection().insertMany(envelopes.stream().map(this::document).toList());
+    }
+
+    @Override
+    public void subscribe(Consumer<RelayEnvelope> listener) {
+        listeners.add(listener);
+    }
+
+    private Document document(RelayEnvelope envelope) {
+        Document doc = new Document()
+                .append("publisher", publisher)
+                .append("seq", published.incrementAndGet())
+                .append("origin", envelope.origin())
+                .append("userIds", envelope.userIds())
+                .append("queue", envelope.queue())
+                .append("contentType", envelope.contentType())
+                .append("payload", new Binary(envelope.payload()));
+        if (envelope.compactPayload() != null) {
+            doc.append("compactPayload", new Binary(envelope.compactPayload()));
+        }
+        return doc;
+    }
+
+    // ---------- TAILER ----------
+
+    private void tailLoop() {
+        Map<String, Watermark> seen = null;
+
+        while (running) {
+            try {
+                ensureCollection();
+
+                // Start from "now": what was published before we came up isn't ours to deliver
+                if (seen == null) seen = newestPerPublisher();
+
+                MongoCollection<Document> collection = collection();
+                try (MongoCursor<Document> cursor = collection
+                        .find(resumeFrom(seen))
+                        .sort(Sorts.ascending("$natural"))
+                        .cursorType(CursorType.TailableAwait)
+                        .maxAwaitTime(1, TimeUnit.SECONDS)
+                        .iterator()) {
+
+                    while (running) {
+                        Document doc = cursor.tryNext();
+                        if (doc == null) continue;
+
+                        // The seed carries no number and no delivery; a resume re-reads some we had.
+                        // A publisher we haven't seen started after us: all of its numbers are new
+                        String from = doc.getString("publisher");
+                        Long seq = doc.getLong("seq");
+                        if (from == null || seq == null) continue;
+                        if (seen.computeIfAbsent(from, p -> new Watermark(0, MAX_OUT_OF_ORDER)).accept(seq)) {
+                            dispatch(doc);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (!running) return;
+                System.out.println("⚠️ Relay cursor lost, resuming: " + e.getMessage());
+                sleepQuietly();
+            }
+        }
+    }
+
+    // One pass over the capped collection at startup: each publisher's highest number so far
+    private Map<String, Watermark> newestPerPublisher() {
+        Map<String, Watermark> seen = new HashMap<>();
+        collection().aggregate(List.of(
+                Aggregates.match(Filters.exists("publisher")),
+                Aggregates.group("$publisher", Accumulators.max("seq", "$seq"))
+        )).forEach(doc -> seen.put(doc.getString("_id"), new Watermark(doc.getLong("seq"), MAX_OUT_OF_ORDER)));
+        return seen;
+    }
+
+    // Everything we may not have seen, and at least the newest envelope: a tailable
+    // cursor whose query matches nothing is dead on arrival
+    private Bson resumeFrom(Map<String, Watermark> seen) {
+        Document newest = collection().find().sort(Sorts.descending("$natural")).limit(1).first();
+        if (newest == null) return new Document();
+
+        List<Bson> unseen = new ArrayList<>();
+        seen.forEach((from, watermark) -> unseen.add(Filters.and(
+                Filters.eq("publisher", from), Filters.gt("seq", watermark.contiguous()))));
+        unseen.add(Filters.nin("publisher", seen.keySet()));
+        unseen.add(Filters.eq("_id", newest.get("_id")));
+        return Filters.or(unseen);
+    }
+
+    private void dispatch(Document doc) {
+        // The seed document carries no delivery
+        if (doc.getString("origin") == null) return;
+
+        Binary compact = doc.get("compactPayload", Binary.class);
+        RelayEnvelope envelope = new RelayEnvelope(
+                doc.getString("origin"),
+                doc.getList("userIds", String.class),
+                doc.getString("queue"),
+                doc.getString("contentType"),
+                doc.get("payload", Binary.class).getData(),
+                compact != null ? compact.getData() : null
+        );
+        for (Consumer<RelayEnvelope> listener : listeners) {
+            listener.accept(envelope);
+        }
+    }
+
+    // ---------- HELPERS ----------
+
+    // Capped, and never empty: a tailable cursor on an empty collection dies at once
+    private void ensureCollection() {
+        if (!mongoTemplate.collectionExists(COLLECTION)) {
+            try {
+                mongoTemplate.createCollection(COLLECTION, CollectionOptions.empty().capped().size(cappedBytes));
+            } catch (RuntimeException e) {
+                // Another node created it first
+            }
+        }
+        if (collection().estimatedDocumentCount() == 0) {
+            collection().insertOne(new Document("seed", true));
+        }
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(COLLECTION);
+    }
+
+    /**
+     * Which of one publisher's envelope numbers a node has seen. Numbers are
+     * taken before the insert and publishes run concurrently, so they can
+     * arrive out of order: {@code contiguous} is the
+     * highest one below which all were seen, and those above it are kept
+     * until the gap below them fills.
+     */
+    static final class Watermark {
+
+        private final int maxOutOfOrder;
+        private final TreeSet<Long> above = new TreeSet<>();
+        private long contiguous;
+
+        Watermark(long start, int maxOutOfOrder) {
+            this.contiguous = start;
+            this.maxOutOfOrder = maxOutOfOrder;
+        }
+
+        long contiguous() {
+            return contiguous;
+        }
+
+        // False for a number seen before (or given up on)
+        boolean accept(long seq) {
+            if (seq <= contiguous || !above.add(seq)) return false;
+
+            while (!above.isEmpty() && (above.first() == contiguous + 1 || above.size() > maxOutOfOrder)) {
+                contiguous = above.pollFirst();
+            }
+            return true;
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(RETRY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.arpit.chatapp.websocket;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts a {@link CoalescingSession} under every socket and keeps the
+ * meters for all of them.
+ * <p>
+ * The broker's own per-session decorator sits above ours and hands us
+ * one message at a time; since ours never blocks, that layer never
+ * buffers, and batching and limits are decided here. Writes run on
+ * {@code threads} flusher threads, so a slow client holds one of them
+ * instead of an outbound channel thread.
+ * <p>
+ * A blocking write can't be interrupted, and a client that stops reading
+ * may get no further sends to trip the limits on. {@link #sweep} closes
+ * such sessions once their write passes {@code time-limit}; closing the
+ * socket is what makes the stuck write fail and frees its thread. Until
+ * then the thread is held, so size {@code threads} for the number of
+ * clients expected to stall within one {@code time-limit}.
+ */
+@Component
+public class OutboundBuffers {
+
+    private final int bufferBytes;
+    private final long timeLimitMillis;
+    private final int maxFrameBytes;
+    private final ExecutorService flusher;
+
+    private final Map<String, CoalescingSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public OutboundBuffers(
+            @Value("${chat.ws.outbound.buffer-bytes:524288}") int bufferBytes,
+            @Value("${chat.ws.outbound.time-limit:PT10S}") Duration timeLimit,
+            @Value("${chat.ws.outbound.max-frame-bytes:65536}") int maxFrameBytes,
+            @Value("${chat.ws.outbound.threads:16}") int threads,
+            MeterRegistry meterRegistry
+    ) {
+        this.bufferBytes = bufferBytes;
+        this.timeLimitMillis = timeLimit.toMillis();
+        this.maxFrameBytes = maxFrameBytes;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.flusher = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ws-outbound-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Gauge.builder("chat.ws.outbound.sessions", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.buffered-messages", this, OutboundBuffers::bufferedMessages).register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.buffered-bytes", this, OutboundBuffers::bufferedBytes).register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.max-session-depth", this, OutboundBuffers::maxSessionDepth).register(meterRegistry);
+        FunctionCounter.builder("chat.ws.outbound.messages", messages, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.ws.outbound.frames", frames, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.ws.outbound.evictions", evictions, AtomicLong::get).register(meterRegistry);
+    }
+
+    // For WebSocketTransportRegistration.addDecoratorFactory
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                CoalescingSession buffered = wrap(session);
+                sessions.put(session.getId(), buffered);
+                super.afterConnectionEstablished(buffered);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, status);
+            }
+        };
+    }
+
+    // Only a sweep notices a stalled client that gets no more sends
+    @Scheduled(fixedDelayString = "${chat.ws.outbound.sweep-interval:PT1S}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        for (CoalescingSession session : sessions.values()) session.expire(now);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // ---------- HELPERS ----------
+
+    CoalescingSession wrap(WebSocketSession session) {
+        return new CoalescingSession(session, this, flusher, bufferBytes, timeLimitMillis, maxFrameBytes);
+    }
+
+    void wrote(int coalesced) {
+        messages.addAndGet(coalesced);
+        frames.incrementAndGet();
+    }
+
+    void evicted() {
+        evictions.incrementAndGet();
+    }
+
+    private long bufferedMessages() {
+        long total = 0;
+        for (CoalescingSession s : sessions.values()) total += s.getBufferDepth();
+        return total;
+    }
+
+    private long bufferedBytes() {
+        long total = 0;
+        for (CoalescingSession s : sessions.values()) total += s.getBufferBytes();
+        return total;
+    }
+
+    private int maxSessionDepth() {
+        int max = 0;
+        for (CoalescingSession s : sessions.values()) max = Math.max(max, s.getBufferDepth());
+        return max;
+    }
+}
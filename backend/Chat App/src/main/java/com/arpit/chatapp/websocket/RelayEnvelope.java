@@ -0,0 +1,23 @@
+package com.arpit.chatapp.websocket;
+
+import java.util.List;
+
+/**
+ * One delivery on the relay: an already-encoded frame body and the users
+ * it is for. Encoded once by the publishing node, forwarded as-is.
+ *
+ * @param origin         node id of the publisher
+ * @param userIds        recipients; each node forwards to the ones it holds sessions for
+ * @param queue          user destination, e.g. {@code /queue/chat}
+ * @param contentType    MIME type of {@code payload}
+ * @param payload        the frame body
+ * @param compactPayload the same in {@link CompactCodec} form, or null
+ */
+public record RelayEnvelope(
+        String origin,
+        List<String> userIds,
+        String queue,
+        String contentType,
+        byte[] payload,
+        byte[] compactPayload
+) {}
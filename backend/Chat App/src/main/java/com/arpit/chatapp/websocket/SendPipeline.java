@@ -0,0 +1,209 @@
+package com.arpit.chatapp.websocket;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs socket sends off the {@code clientInboundChannel} threads.
+ * <p>
+ * In {@code async} mode (default) a send joins its sender's queue and
+ * the inbound thread goes straight back to other sessions. Queues are
+ * drained by a pool of {@code threads} workers, one send at a time per
+ * sender, so a sender's messages persist in order and a slow Mongo write
+ * holds up that sender only, not the pool every session's frames go
+ * through. At most {@code max-pending} sends wait in total; past that a
+ * send is refused rather than buffered without bound. {@code sync} runs
+ * the send on the inbound thread as before.
+ * <p>
+ * Either way, once the send is persisted a client that put a
+ * {@code receipt} header on its SEND frame gets a STOMP RECEIPT, and a
+ * send that fails gets a {@link SendFailure} on {@code /user/queue/errors}
+ * (that session only).
+ */
+@Component
+public class SendPipeline {
+
+    public static final String ERROR_QUEUE = "/queue/errors";
+
+    private final MessageChannel clientOutboundChannel;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final boolean async;
+    private final int maxPending;
+    private final ThreadPoolExecutor workers;
+
+    // sender -> sends not yet run; present while a worker is draining it
+    private final Map<String, Deque<Runnable>> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+
+    public SendPipeline(
+            @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+            @Qualifier("clientInboundChannelExecutor") Executor inboundExecutor,
+            SimpMessagingTemplate messagingTemplate,
+            @Value("${chat.ws.send.mode:async}") String mode,
+            @Value("${chat.ws.send.threads:64}") int threads,
+            @Value("${chat.ws.send.max-pending:10000}") int maxPending,
+            MeterRegistry meterRegistry
+    ) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.messagingTemplate = messagingTemplate;
+        this.async = !"sync".equalsIgnoreCase(mode);
+        this.maxPending = maxPending;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "ws-send-" + threadCount.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        FunctionCounter.builder("chat.ws.send.accepted", accepted, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.ws.send.persisted", persisted, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.ws.send.failed", failed, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.ws.send.refused", refused, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.ws.send.queue-depth", pending, AtomicInteger::get).register(meterRegistry);
+
+        // What the inbound pool itself is holding: frames waiting for a thread
+        if (inboundExecutor instanceof ThreadPoolTaskExecutor inbound) {
+            Gauge.builder("chat.ws.inbound.queue-depth", inbound, e -> e.getThreadPoolExecutor().getQueue().size())
+                    .register(meterRegistry);
+            Gauge.builder("chat.ws.inbound.active", inbound, ThreadPoolTaskExecutor::getActiveCount)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Runs {@code send} (which persists and delivers) for the session in
+     * {@code headers}, then acknowledges it. {@code orderingKey} is
+     * usually the sender: sends with the same key run in order.
+     */
+    public void submit(String orderingKey, SimpMessageHeaderAccessor headers, String clientMessageId, Runnable send) {
+        String sessionId = headers.getSessionId();
+        String receiptId = headers.getFirstNativeHeader("receipt");
+        Runnable task = () -> run(sessionId, receiptId, clientMessageId, send);
+
+        if (!async) {
+            task.run();
+            return;
+        }
+
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            refused.incrementAndGet();
+            fail(sessionId, receiptId, clientMessageId, "Too many pending sends, retry shortly");
+            return;
+        }
+        accepted.incrementAndGet();
+
+        String key = String.valueOf(orderingKey);
+        boolean[] idle = {false};
+        queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                idle[0] = true;
+            }
+            queue.add(task);
+            return queue;
+        });
+        if (idle[0]) workers.execute(() -> drain(key));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // ---------- HELPERS ----------
+
+    // One send, then back of the line: a busy sender can't hog a worker
+    private void drain(String key) {
+        Runnable[] next = {null};
+        queues.computeIfPresent(key, (k, queue) -> {
+            next[0] = queue.poll();
+            return queue;
+        });
+
+        try {
+            next[0].run();
+        } finally {
+            pending.decrementAndGet();
+
+            boolean[] more = {false};
+            queues.computeIfPresent(key, (k, queue) -> {
+                more[0] = !queue.isEmpty();
+                return more[0] ? queue : null;
+            });
+            if (more[0]) workers.execute(() -> drain(key));
+        }
+    }
+
+    private void run(String sessionId, String receiptId, String clientMessageId, Runnable send) {
+        try {
+            send.run();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            fail(sessionId, receiptId, clientMessageId, e.getMessage());
+            return;
+        }
+
+        persisted.incrementAndGet();
+        if (receiptId != null && sessionId != null) receipt(sessionId, receiptId);
+    }
+
+    private void receipt(String sessionId, String receiptId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.RECEIPT);
+        accessor.setSessionId(sessionId);
+        accessor.setReceiptId(receiptId);
+        clientOutboundChannel.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    // Addressed to the session (not the user): other devices didn't send it
+    private void fail(String sessionId, String receiptId, String clientMessageId, String error) {
+        System.out.println("⚠️ WS send failed: " + error);
+        if (sessionId == null) return;
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+
+        messagingTemplate.convertAndSendToUser(
+                sessionId,
+                ERROR_QUEUE,
+                new SendFailure(receiptId, clientMessageId, error),
+                accessor.getMessageHeaders()
+        );
+    }
+
+    public record SendFailure(String receiptId, String clientMessageId, String error) {}
+}
@@ -0,0 +1,174 @@
+package com.arpit.chatapp.websocket;
+
+import com.arpit.chatapp.chat.Conversation;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Typing indicators: {@code /app/typing} in, {@code /user/queue/typing}
+ * out, nothing stored. On a cluster relay that goes through Mongo, each
+ * tick that has anything to deliver costs one relay write (see below).
+ * <p>
+ * Frames are taken off the inbound channel in {@code preSend}, on the
+ * socket's own thread, before the channel hands messages to its pool:
+ * typing never queues behind (or ahead of) persistent sends. Each
+ * (conversation, user) keeps only its latest signal, and one thread
+ * delivers what is pending every {@code interval} as one batch, so a key
+ * is delivered at most once per interval however often the client sends,
+ * and the relay sees one publish per interval however many keys are due. A signal
+ * older than {@code stale-after} by then is dropped, as are new keys
+ * while {@code max-pending} are already waiting.
+ * <p>
+ * Direct chats only: a group would need its member list, which lives in
+ * Mongo.
+ */
+@Component
+public class TypingRelay implements ChannelInterceptor {
+
+    public static final String DESTINATION = "/app/typing";
+    public static final String TYPING_QUEUE = "/queue/typing";
+
+    private final UserDelivery userDelivery;
+    private final ObjectMapper objectMapper;
+    private final long intervalMillis;
+    private final long staleAfterMillis;
+    private final int maxPending;
+
+    // conversationId:userId -> latest signal not yet delivered
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong droppedStale = new AtomicLong();
+    private final AtomicLong droppedFull = new AtomicLong();
+
+    private ScheduledExecutorService ticker;
+
+    public TypingRelay(
+            UserDelivery userDelivery,
+            ObjectMapper objectMapper,
+            @Value("${chat.typing.interval:PT0.5S}") Duration interval,
+            @Value("${chat.typing.stale-after:PT3S}") Duration staleAfter,
+            @Value("${chat.typing.max-pending:50000}") int maxPending,
+            MeterRegistry meterRegistry
+    ) {
+        this.userDelivery = userDelivery;
+        this.objectMapper = objectMapper;
+        this.intervalMillis = interval.toMillis();
+        this.staleAfterMillis = staleAfter.toMillis();
+        this.maxPending = maxPending;
+
+        FunctionCounter.builder("chat.typing.received", received, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.typing.coalesced", coalesced, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.typing.delivered", delivered, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.typing.dropped-stale", droppedStale, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.typing.dropped-full", droppedFull, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.typing.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "typing-relay");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                flush(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                System.out.println("⚠️ Typing flush failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) ticker.shutdownNow();
+    }
+
+    // Typing frames end here (null = not forwarded); everything else passes through
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !DESTINATION.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+            return message;
+        }
+
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        if (user != null && message.getPayload() instanceof byte[] body) {
+            try {
+                TypingRequest request = objectMapper.readValue(body, TypingRequest.class);
+                offer(user.getName(), request.receiverId(), request.typing(), System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                // A malformed indicator isn't worth an error frame
+            }
+        }
+        return null;
+    }
+
+    // ---------- HELPERS ----------
+
+    void offer(String userId, String receiverId, boolean typing, long now) {
+        if (receiverId == null || receiverId.equals(userId)) return;
+        received.incrementAndGet();
+
+        String conversationId = Conversation.directId(userId, receiverId);
+        String key = conversationId + ":" + userId;
+        Pending signal = new Pending(receiverId, new TypingSignal(conversationId, userId, typing), now);
+
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            droppedFull.incrementAndGet();
+            return;
+        }
+        if (pending.put(key, signal) != null) coalesced.incrementAndGet();
+    }
+
+    void flush(long now) {
+        List<UserDelivery.Delivery> due = new ArrayList<>();
+        for (String key : List.copyOf(pending.keySet())) {
+            Pending signal = pending.remove(key);
+            if (signal == null) continue;
+
+            if (now - signal.receivedAt() > staleAfterMillis) {
+                droppedStale.incrementAndGet();
+                continue;
+            }
+
+            due.add(new UserDelivery.Delivery(List.of(signal.receiverId()), userDelivery.encode(signal.signal())));
+        }
+
+        // The whole tick is one relay publish, however many keys were due
+        userDelivery.sendAll(TYPING_QUEUE, due);
+        delivered.addAndGet(due.size());
+    }
+
+    public record TypingRequest(String receiverId, boolean typing) {}
+
+    public record TypingSignal(String conversationId, String userId, boolean typing) {}
+
+    private record Pending(String receiverId, TypingSignal signal, long receivedAt) {}
+}
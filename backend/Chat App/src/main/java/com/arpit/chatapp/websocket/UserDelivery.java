@@ -0,0 +1,152 @@
+package com.arpit.chatapp.websocket;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one way chat payloads reach users' sockets, wherever they are
+ * connected. A payload is encoded once, handed to the broker on each
+ * local recipient's {@code /user/queue/chat}, and published on the
+ * {@link ClusterRelay} so every other node does the same for the
+ * sessions it holds.
+ */
+@Component
+public class UserDelivery {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final LocalSessions sessions;
+    private final ClusterRelay relay;
+    private final CompactEncoding compactEncoding;
+    private final String nodeId;
+
+    private final AtomicLong localFrames = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+
+    public UserDelivery(
+            SimpMessagingTemplate messagingTemplate,
+            LocalSessions sessions,
+            ClusterRelay relay,
+            CompactEncoding compactEncoding,
+            @Value("${chat.cluster.node-id:}") String nodeId,
+            MeterRegistry meterRegistry
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.sessions = sessions;
+        this.relay = relay;
+        this.compactEncoding = compactEncoding;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+
+        FunctionCounter.builder("chat.delivery.local-frames", localFrames, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.relay.published", published, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("chat.relay.received", received, AtomicLong::get).register(meterRegistry);
+
+        relay.subscribe(this::onEnvelope);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void send(Collection<String> userIds, Object payload) {
+        send(userIds, encode(payload));
+    }
+
+    // For callers delivering one payload in several batches: encode once, send per batch
+    // (chat messages also in compact form, for the sockets that asked for it)
+    public Message<?> encode(Object payload) {
+        return compactEncoding.attach(payload, messagingTemplate.getMessageConverter().toMessage(payload, null));
+    }
+
+    public void send(Collection<String> userIds, Message<?> frame) {
+        send(userIds, LocalSessions.USER_QUEUE, frame);
+    }
+
+    // Same, on another of the users' queues (e.g. /queue/presence)
+    public void send(Collection<String> userIds, String queue, Message<?> frame) {
+        deliverLocal(userIds, queue, frame);
+
+        // Other nodes may hold sessions for the same users (other devices)
+        try {
+            relay.publish(envelope(userIds, queue, frame));
+            published.incrementAndGet();
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Relay publish failed: " + e.getMessage());
+        }
+    }
+
+    // Many small frames, each for its own users, in one relay publish
+    public void sendAll(String queue, List<Delivery> deliveries) {
+        if (deliveries.isEmpty()) return;
+
+        List<RelayEnvelope> envelopes = new ArrayList<>(deliveries.size());
+        for (Delivery d : deliveries) {
+            deliverLocal(d.userIds(), queue, d.frame());
+            envelopes.add(envelope(d.userIds(), queue, d.frame()));
+        }
+
+        try {
+            relay.publishAll(envelopes);
+            published.addAndGet(envelopes.size());
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Relay publish failed: " + e.getMessage());
+        }
+    }
+
+    public record Delivery(Collection<String> userIds, Message<?> frame) {}
+
+    // ---------- HELPERS ----------
+
+    private RelayEnvelope envelope(Collection<String> userIds, String queue, Message<?> frame) {
+        Object contentType = frame.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        return new RelayEnvelope(
+                nodeId,
+                List.copyOf(userIds),
+                queue,
+                contentType != null ? contentType.toString() : null,
+                bytes(frame.getPayload()),
+                frame.getHeaders().get(CompactEncoding.PAYLOAD_HEADER, byte[].class)
+        );
+    }
+
+    private void onEnvelope(RelayEnvelope envelope) {
+        // Our own deliveries were made locally before publishing
+        if (nodeId.equals(envelope.origin())) return;
+        received.incrementAndGet();
+
+        MessageBuilder<byte[]> frame = MessageBuilder.withPayload(envelope.payload());
+        if (envelope.contentType() != null) {
+            frame.setHeader(MessageHeaders.CONTENT_TYPE, MimeType.valueOf(envelope.contentType()));
+        }
+        String queue = envelope.queue() != null ? envelope.queue() : LocalSessions.USER_QUEUE;
+        deliverLocal(envelope.userIds(), queue, compactEncoding.attach(frame.build(), envelope.compactPayload()));
+    }
+
+    private byte[] bytes(Object payload) {
+        return payload instanceof byte[] b ? b : payload.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void deliverLocal(Collection<String> userIds, String queue, Message<?> frame) {
+        for (String userId : userIds) {
+            if (!sessions.isLocal(userId)) continue;
+
+            // What convertAndSendToUser does, minus re-encoding the payload per user
+            messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + userId + queue, frame);
+            localFrames.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.arpit.chatapp.chat;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stored size and read cost of the compressed content path on a synthetic
+ * corpus (mostly short chat lines, some pasted code and logs). Prints a
+ * report; asserts only on round-trips and that something was saved.
+ */
+class ContentCodecTest {
+
+    private static final int MESSAGES = 10_000;
+    private static final int PAGE = 50;
+
+    private final MappingMongoConverter converter = converter();
+
+    @Test
+    void compressesLargeContentAndRoundTrips() {
+        List<Message> corpus = corpus(new Random(42));
+
+        MessageRepositoryImpl plain = new MessageRepositoryImpl(null, MessageLayout.DOCUMENT, 100, false, 1024);
+        MessageRepositoryImpl packed = new MessageRepositoryImpl(null, MessageLayout.DOCUMENT, 100, true, 1024);
+
+        List<Message> plainRows = new ArrayList<>();
+        List<Message> packedRows = new ArrayList<>();
+        long plainBytes = 0;
+        long packedBytes = 0;
+        int compressed = 0;
+
+        for (Message m : corpus) {
+            Message a = plain.storedForm(m, true);
+            Message b = packed.storedForm(m, true);
+            plainBytes += bsonSize(a);
+            packedBytes += bsonSize(b);
+            if (b.getCodec() != null) compressed++;
+
+            assertThat(b.getContent()).isEqualTo(m.getContent());
+            plainRows.add(a);
+            packedRows.add(b);
+        }
+
+        // Warm up, then time building a page of responses (the only place content is decoded)
+        readAll(plainRows);
+        readAll(packedRows);
+        double plainMicros = readAll(plainRows);
+        double packedMicros = readAll(packedRows);
+
+        System.out.printf("corpus:     %d messages, %d compressed (%.1f%%)%n",
+                MESSAGES, compressed, 100.0 * compressed / MESSAGES);
+        System.out.printf("stored:     plain=%.2f MB  compressed=%.2f MB  saved=%.1f%%%n",
+                plainBytes / 1e6, packedBytes / 1e6, 100.0 * (plainBytes - packedBytes) / plainBytes);
+        System.out.printf("read page:  plain=%.1f us  compressed=%.1f us  (%d messages, decode only)%n",
+                plainMicros, packedMicros, PAGE);
+
+        assertThat(compressed).isPositive();
+        assertThat(packedBytes).isLessThan(plainBytes);
+        assertThat(packed.storedForm(message("hey, lunch?"), true).getCodec()).isNull();
+    }
+
+    // ---------- HARNESS ----------
+
+    // Same mapping the app uses, without a database behind it
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext context = new MongoMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private long bsonSize(Message m) {
+        Document document = new Document();
+        converter.write(m, document);
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+    }
+
+    // Average microseconds per page of MessageResponses
+    private double readAll(List<Message> rows) {
+        long start = System.nanoTime();
+        long chars = 0;
+        for (Message m : rows) {
+            MessageResponse r = new MessageResponse(
+                    m.getId(), m.getSenderId(), m.getReceiverId(), m.getContent(),
+                    m.getTimestamp().toString(), m.getSeq(), false);
+            chars += r.getContent().length();
+        }
+        assertThat(chars).isPositive();
+        return (System.nanoTime() - start) / 1e3 / ((double) rows.size() / PAGE);
+    }
+
+    private List<Message> corpus(Random random) {
+        List<Message> corpus = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            int kind = random.nextInt(100);
+            String content = kind < 85 ? chatLine(random)
+                    : kind < 95 ? codeSnippet(random)
+                    : logDump(random);
+            Message m = message(content);
+            m.setSeq((long) i + 1);
+            corpus.add(m);
+        }
+        return corpus;
+    }
+
+    private Message message(String content) {
+        Message m = new Message();
+        m.setId(new ObjectId().toHexString());
+        m.setConversationId("u1_u2");
+        m.setSenderId("u1");
+        m.setReceiverId("u2");
+        m.setContent(content);
+        m.setTimestamp(Instant.now());
+        m.setSeq(1L);
+        return m;
+    }
+
+    private static final String[] WORDS = {
+            "ok", "sure", "the", "build", "is", "green", "again", "can", "you", "check",
+            "deploy", "tomorrow", "lunch", "meeting", "moved", "thanks", "why", "failing", "on", "main"
+    };
+
+    private String chatLine(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int words = 3 + random.nextInt(25);
+        for (int i = 0; i < words; i++) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    private String codeSnippet(Random random) {
+        StringBuilder sb = new StringBuilder("```java\n");
+        int methods = 5 + random.nextInt(20);
+        for (int i = 0; i < methods; i++) {
+            sb.append("    public List<Message> find").append(random.nextInt(1000))
+                    .append("(String conversationId, int limit) {\n")
+                    .append("        Query query = new Query(Criteria.where(\"conversationId\").is(conversationId));\n")
+                    .append("        return mongoTemplate.find(query.limit(limit), Message.class);\n")
+                    .append("    }\n\n");
+        }
+        return sb.append("```").toString();
+    }
+
+    private String logDump(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int lines = 20 + random.nextInt(100);
+        for (int i = 0; i < lines; i++) {
+            sb.append("2026-10-18T10:").append(10 + random.nextInt(50)).append(':')
+                    .append(10 + random.nextInt(50)).append('.').append(random.nextInt(1000))
+                    .append("Z  INFO 4211 --- [nio-8080-exec-").append(random.nextInt(10))
+                    .append("] c.a.chatapp.chat.ChatService : sent message ")
+                    .append(new ObjectId().toHexString()).append(" in ").append(random.nextInt(40)).append("ms\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.arpit.chatapp.chat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Send latency and write amplification of both fan-out modes as a group
+ * grows, against a member store that charges a fixed round-trip plus a
+ * per-document write cost. Also measures the real CPU of encoding the
+ * socket payload once per message vs once per member. Prints a report;
+ * asserts only on the document counts and the mode switch.
+ */
+class GroupFanoutTest {
+
+    private static final int[] GROUP_SIZES = {10, 100, 1_000, 5_000};
+    private static final int SENDS = 20;
+    private static final long RTT_MICROS = 1_000;
+    private static final long PER_DOC_MICROS = 10;
+
+    private int members;
+
+    @Test
+    void readFanoutKeepsSendCostFlatAsGroupsGrow() {
+        GroupMemberRepository memberRepo = mock(GroupMemberRepository.class, withSettings().stubOnly());
+        when(memberRepo.recordSend(anyString(), anyString(), anyLong())).thenAnswer(inv -> {
+            roundTrip(members);
+            return (long) members;
+        });
+        doAnswer(inv -> { roundTrip(1); return null; })
+                .when(memberRepo).recordOwnSend(anyString(), anyString(), anyLong());
+
+        GroupFanout fanout = new GroupFanout(
+                memberRepo, mock(ConversationRepository.class), 100, new SimpleMeterRegistry());
+
+        ObjectMapper mapper = JsonMapper.builder().build();
+        SendMessageResponse payload = new SendMessageResponse(
+                new ObjectId().toHexString(), "g_1", "u1", null,
+                "standup moved to 10:30, same room", Instant.now().toString(), 42, "c-1");
+
+        System.out.printf("%8s %6s | %14s %12s | %14s %12s | %16s %16s%n",
+                "members", "auto", "write: us/send", "docs/send", "read: us/send", "docs/send",
+                "encode once us", "encode each us");
+
+        for (int size : GROUP_SIZES) {
+            members = size;
+
+            Result write = run(fanout, group(size, FanoutMode.WRITE));
+            Result read = run(fanout, group(size, FanoutMode.READ));
+
+            double once = encode(mapper, payload, 1);
+            double each = encode(mapper, payload, size);
+
+            System.out.printf("%8d %6s | %14.0f %12d | %14.0f %12d | %16.1f %16.1f%n",
+                    size, fanout.modeFor(size), write.micros, write.docs, read.micros, read.docs, once, each);
+
+            assertThat(write.docs).isEqualTo(size);
+            assertThat(read.docs).isEqualTo(1);
+        }
+
+        assertThat(fanout.modeFor(100)).isEqualTo(FanoutMode.WRITE);
+        assertThat(fanout.modeFor(101)).isEqualTo(FanoutMode.READ);
+    }
+
+    @Test
+    void unreadFollowsTheGroupsMode() {
+        GroupFanout fanout = new GroupFanout(
+                mock(GroupMemberRepository.class), mock(ConversationRepository.class), 100, new SimpleMeterRegistry());
+        GroupMember member = GroupMember.of("g_1", "u2", 7);
+
+        Conversation read = group(500, FanoutMode.READ);
+        read.setSeq(10);
+        assertThat(fanout.unread(read, member)).isEqualTo(3);
+
+        // On WRITE the counter is authoritative (fresh row: nothing counted yet)
+        Conversation write = group(5, FanoutMode.WRITE);
+        write.setSeq(10);
+        assertThat(fanout.unread(write, member)).isZero();
+    }
+
+    // ---------- HARNESS ----------
+
+    private Result run(GroupFanout fanout, Conversation group) {
+        fanout.onSend(group, "u1", 1); // warm up
+
+        long docs = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < SENDS; i++) {
+            docs = fanout.onSend(group, "u1", i + 2);
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / SENDS;
+        return new Result(micros, docs);
+    }
+
+    // Average microseconds to produce `copies` JSON payloads of one message
+    private double encode(ObjectMapper mapper, SendMessageResponse payload, int copies) {
+        for (int i = 0; i < 2_000; i++) mapper.writeValueAsBytes(payload); // warm up
+
+        int rounds = 20;
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < copies; i++) bytes += mapper.writeValueAsBytes(payload).length;
+        }
+        assertThat(bytes).isPositive();
+        return (System.nanoTime() - start) / 1e3 / rounds;
+    }
+
+    private Conversation group(int size, FanoutMode mode) {
+        Conversation group = new Conversation();
+        group.setId("g_" + size);
+        group.setType(ConversationType.GROUP);
+        group.setMemberCount(size);
+        group.setFanout(mode);
+        return group;
+    }
+
+    private void roundTrip(int documents) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(RTT_MICROS + PER_DOC_MICROS * documents));
+    }
+
+    private record Result(double micros, long docs) {}
+}
@@ -0,0 +1,173 @@
+package com.arpit.chatapp.chat;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Direct vs group-commit writes against repositories that simulate a Mongo
+ * round-trip (fixed RTT, limited server concurrency). Both paths pay the same
+ * trips ChatService does: nextSeq per message, then stamp + append + record,
+ * which the pipeline pays once per batch. Prints throughput and latency for
+ * both paths; asserts only on correctness and round-trip counts.
+ */
+class MessageWritePipelineTest {
+
+    private static final int SENDERS = 64;
+    private static final int MESSAGES = 6_400;
+    private static final long RTT_MICROS = 1_000;
+    private static final Semaphore SERVER = new Semaphore(8);
+
+    private final AtomicInteger roundTrips = new AtomicInteger();
+    private final AtomicInteger allocations = new AtomicInteger();
+
+    private final MessageRepository messageRepo = mock(MessageRepository.class, withSettings().stubOnly());
+    private final ConversationRepository conversationRepo = mock(ConversationRepository.class, withSettings().stubOnly());
+    private final UserSequenceService sequences = mock(UserSequenceService.class, withSettings().stubOnly());
+
+    @Test
+    void groupCommitAcksEveryMessageWithFewerRoundTrips() throws Exception {
+        // Per-message seq, taken before either write path (as ChatService does)
+        when(conversationRepo.nextSeq(anyString(), anyCollection())).thenAnswer(inv -> {
+            roundTrip();
+            return (long) allocations.incrementAndGet();
+        });
+        // Change-stream seqs: one bulk allocation (write + read-back) per call
+        doAnswer(inv -> { roundTrip(); roundTrip(); return null; }).when(sequences).stamp(anyList());
+
+        when(messageRepo.append(any(Message.class))).thenAnswer(inv -> {
+            roundTrip();
+            Message m = inv.getArgument(0);
+            m.setId(new ObjectId().toHexString());
+            return m;
+        });
+        when(messageRepo.appendAll(anyList())).thenAnswer(inv -> {
+            roundTrip();
+            List<Message> batch = inv.getArgument(0);
+            batch.forEach(m -> m.setId(new ObjectId().toHexString()));
+            return batch;
+        });
+        doAnswer(inv -> { roundTrip(); return null; })
+                .when(conversationRepo).recordMessage(anyString(), any(Message.class));
+        doAnswer(inv -> { roundTrip(); return null; })
+                .when(conversationRepo).recordMessages(anyList());
+
+        // ---- direct path ----
+        roundTrips.set(0);
+        allocations.set(0);
+        Result direct = run(m -> {
+            sequences.stamp(List.of(m));
+            Message saved = messageRepo.append(m);
+            conversationRepo.recordMessage(saved.getConversationId(), saved);
+            return CompletableFuture.completedFuture(saved);
+        });
+        int directTrips = roundTrips.get();
+        int directAllocations = allocations.get();
+
+        // ---- group commit ----
+        MessageWritePipeline pipeline = new MessageWritePipeline(
+                messageRepo, conversationRepo, sequences, true, 256, 5, 10_000);
+        pipeline.start();
+
+        roundTrips.set(0);
+        allocations.set(0);
+        Result grouped = run(pipeline::submit);
+        int groupedTrips = roundTrips.get();
+        int groupedAllocations = allocations.get();
+        pipeline.stop();
+
+        System.out.printf(
+                "direct:       %6.0f msg/s  p50=%5.2fms  p99=%5.2fms  round-trips=%d%n",
+                direct.throughput, direct.p50, direct.p99, directTrips);
+        System.out.printf(
+                "group-commit: %6.0f msg/s  p50=%5.2fms  p99=%5.2fms  round-trips=%d%n",
+                grouped.throughput, grouped.p50, grouped.p99, groupedTrips);
+
+        assertThat(grouped.acked).isEqualTo(MESSAGES);
+        assertThat(directAllocations).isEqualTo(MESSAGES);
+        assertThat(groupedAllocations).isEqualTo(MESSAGES);
+        // nextSeq + stamp (2) + append + record per message
+        assertThat(directTrips).isEqualTo(5 * MESSAGES);
+        // Past the shared nextSeq, batching cuts the write trips by well over 4x
+        assertThat(groupedTrips - groupedAllocations).isLessThan((directTrips - directAllocations) / 4);
+    }
+
+    // ---------- HARNESS ----------
+
+    private interface Writer {
+        CompletableFuture<Message> write(Message message);
+    }
+
+    private record Result(double throughput, double p50, double p99, int acked) {}
+
+    private Result run(Writer writer) throws Exception {
+        ExecutorService senders = Executors.newFixedThreadPool(SENDERS);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger acked = new AtomicInteger();
+
+        long start = System.nanoTime();
+        for (int s = 0; s < SENDERS; s++) {
+            int sender = s;
+            senders.submit(() -> {
+                for (int i = 0; i < MESSAGES / SENDERS; i++) {
+                    Message m = message("u" + sender, "u" + (sender + 1) % SENDERS);
+                    long t0 = System.nanoTime();
+                    m.setSeq(conversationRepo.nextSeq(m.getConversationId(), List.of(m.getSenderId(), m.getReceiverId())));
+                    Message saved = writer.write(m).join();
+                    latencies.add(System.nanoTime() - t0);
+                    if (saved.getId() != null) acked.incrementAndGet();
+                }
+            });
+        }
+        senders.shutdown();
+        assertThat(senders.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return new Result(
+                MESSAGES / seconds,
+                sorted.get(sorted.size() / 2) / 1e6,
+                sorted.get((int) (sorted.size() * 0.99)) / 1e6,
+                acked.get()
+        );
+    }
+
+    private Message message(String from, String to) {
+        Message m = new Message();
+        m.setConversationId(Conversation.directId(from, to));
+        m.setSenderId(from);
+        m.setReceiverId(to);
+        m.setContent("hello");
+        return m;
+    }
+
+    private void roundTrip() throws InterruptedException {
+        roundTrips.incrementAndGet();
+        SERVER.acquire();
+        try {
+            TimeUnit.MICROSECONDS.sleep(RTT_MICROS);
+        } finally {
+            SERVER.release();
+        }
+    }
+}
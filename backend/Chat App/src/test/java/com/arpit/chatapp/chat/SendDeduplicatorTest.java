@@ -0,0 +1,165 @@
+package com.arpit.chatapp.chat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pipelined retries of the same client message id, on one node and across
+ * nodes, against a message store that only enforces the unique
+ * (senderId, clientMessageId) index.
+ */
+class SendDeduplicatorTest {
+
+    // The messages collection, by its unique (senderId, clientMessageId) key
+    private final Map<String, Message> stored = new ConcurrentHashMap<>();
+    private final AtomicInteger sends = new AtomicInteger();
+
+    private final MessageRepository messageRepo = mock(MessageRepository.class);
+
+    @Test
+    void concurrentRetriesSendOnceAndReplayTheOriginal() throws Exception {
+        SendDeduplicator dedup = deduplicator();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Supplier<SendMessageResponse> slowSend = () -> {
+            sends.incrementAndGet();
+            await(release);
+            return store("c-1");
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<SendMessageResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> dedup.send("u1", "u1_u2", "c-1", slowSend)));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        List<SendMessageResponse> responses = new ArrayList<>();
+        for (Future<SendMessageResponse> f : results) responses.add(f.get());
+        pool.shutdown();
+
+        assertThat(sends.get()).isEqualTo(1);
+        assertThat(responses).extracting(SendMessageResponse::getMessageId).containsOnly(responses.get(0).getMessageId());
+        assertThat(responses).filteredOn(r -> !r.isReplay()).hasSize(1);
+        assertThat(stored).containsOnlyKeys("u1:c-1");
+
+        // A later retry is still answered from memory; a new id sends again
+        assertThat(dedup.send("u1", "u1_u2", "c-1", slowSend).isReplay()).isTrue();
+        assertThat(dedup.send("u1", "u1_u2", "c-2", () -> store("c-2")).isReplay()).isFalse();
+        assertThat(sends.get()).isEqualTo(1);
+    }
+
+    @Test
+    void retryOnAnotherNodeReplaysTheStoredMessage() {
+        SendDeduplicator first = deduplicator();
+        SendDeduplicator second = deduplicator();
+
+        SendMessageResponse original = first.send("u1", "u1_u2", "c-1", () -> store("c-1"));
+        SendMessageResponse retried = second.send("u1", "u1_u2", "c-1", () -> {
+            sends.incrementAndGet(); // would allocate seqs
+            return store("c-1");
+        });
+
+        assertThat(retried.isReplay()).isTrue();
+        assertThat(retried.getMessageId()).isEqualTo(original.getMessageId());
+        assertThat(stored).hasSize(1);
+        // Found before the send ran: no seq was taken for the retry
+        assertThat(sends.get()).isZero();
+
+        // Same id for another conversation is a client bug, not a retry
+        assertThatThrownBy(() -> deduplicator().send("u1", "u1_u3", "c-1", () -> store("c-1")))
+                .hasMessageContaining("already used");
+    }
+
+    @Test
+    void retryRacingItsOriginalPastTheLookupIsCaughtByTheIndex() {
+        SendDeduplicator dedup = deduplicator();
+
+        // The original lands on another node between this node's lookup and its insert
+        SendMessageResponse retried = dedup.send("u1", "u1_u2", "c-1", () -> {
+            SendMessageResponse original = store("c-1");
+            assertThat(original).isNotNull();
+            return store("c-1");
+        });
+
+        assertThat(retried.isReplay()).isTrue();
+        assertThat(stored).hasSize(1);
+    }
+
+    @Test
+    void failedSendLeavesNothingBehind() {
+        SendDeduplicator dedup = deduplicator();
+
+        assertThatThrownBy(() -> dedup.send("u1", "u1_u2", "c-1", () -> {
+            throw new IllegalStateException("mongo down");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(stored).isEmpty();
+
+        SendMessageResponse retried = dedup.send("u1", "u1_u2", "c-1", () -> store("c-1"));
+        assertThat(retried.isReplay()).isFalse();
+    }
+
+    // ---------- HARNESS ----------
+
+    private SendDeduplicator deduplicator() {
+        when(messageRepo.findByClientMessageId(anyString(), anyString()))
+                .thenAnswer(inv -> stored.get(inv.getArgument(0) + ":" + inv.getArgument(1)));
+
+        return new SendDeduplicator(
+                messageRepo,
+                true,
+                Duration.ofMinutes(10),
+                1000,
+                new SimpleMeterRegistry()
+        );
+    }
+
+    // What ChatService.store does against the unique index
+    private SendMessageResponse store(String clientMessageId) {
+        Message m = new Message();
+        m.setId(new ObjectId().toHexString());
+        m.setConversationId("u1_u2");
+        m.setSenderId("u1");
+        m.setReceiverId("u2");
+        m.setContent("hi");
+        m.setTimestamp(Instant.now());
+        m.setSeq(1L);
+        m.setClientMessageId(clientMessageId);
+
+        if (stored.putIfAbsent("u1:" + clientMessageId, m) != null) {
+            throw new DuplicateKeyException("sender_client_message_id");
+        }
+        return new SendMessageResponse(
+                m.getId(), "u1_u2", "u1", "u2", "hi", m.getTimestamp().toString(), 1, clientMessageId);
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.arpit.chatapp.chat;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * The sync cursor never passes a change that may still be in flight, and
+ * batched sends get distinct, ordered change-stream seqs from one allocation.
+ */
+class SyncServiceTest {
+
+    private final UserSequenceService sequences = mock(UserSequenceService.class);
+    private final MessageRepository messageRepo = mock(MessageRepository.class);
+    private final ConversationRepository conversationRepo = mock(ConversationRepository.class);
+    private final SyncService sync = new SyncService(sequences, messageRepo, conversationRepo);
+
+    @Test
+    void cursorStopsAtTheSettledMarkButRecentChangesStillGoOut() {
+        // 4 was handed out but isn't written yet; 5 and 6 are
+        stored(1, 2, 3, 5, 6);
+        marks(3, 6);
+
+        SyncResponse response = sync.sync("u1", 0, 50);
+
+        assertThat(response.getMessages()).hasSize(5);
+        assertThat(response.getSeq()).isEqualTo(3);
+        assertThat(response.isHasMore()).isFalse();
+
+        // Next call re-reads 5 and 6, and picks up 4 once it lands
+        stored(4, 5, 6);
+        marks(6, 6);
+        SyncResponse next = sync.sync("u1", response.getSeq(), 50);
+        assertThat(next.getMessages()).extracting(SendMessageResponse::getMessageId).hasSize(3);
+        assertThat(next.getSeq()).isEqualTo(6);
+    }
+
+    @Test
+    void pagesOnlyThroughSettledChanges() {
+        stored(1, 2, 3, 4, 5);
+        marks(10, 10);
+
+        SyncResponse page = sync.sync("u1", 0, 2);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(page.getSeq()).isEqualTo(2);
+
+        // Past the page, only unsettled changes are left: no further page, cursor stays settled
+        marks(2, 10);
+        SyncResponse recent = sync.sync("u1", 0, 2);
+        assertThat(recent.isHasMore()).isFalse();
+        assertThat(recent.getSeq()).isEqualTo(2);
+    }
+
+    @Test
+    void stampsABatchFromOneAllocation() {
+        UserSequenceService real = spy(new UserSequenceService(mock(MongoTemplate.class), Duration.ofSeconds(10)));
+        List<Map<String, Integer>> allocations = new ArrayList<>();
+        doAnswer(inv -> {
+            Map<String, Integer> counts = inv.getArgument(0);
+            allocations.add(Map.copyOf(counts));
+            return new HashMap<>(Map.of("a", 10L, "b", 20L, "c", 30L));
+        }).when(real).allocate(anyMap());
+
+        Message ab1 = message("a", "b");
+        Message ab2 = message("a", "b");
+        Message ca = message("c", "a");
+        Message self = message("c", "c");
+        Message group = message("a", null);
+        real.stamp(List.of(ab1, ab2, ca, self, group));
+
+        assertThat(allocations).containsExactly(Map.of("a", 3, "b", 2, "c", 2));
+        assertThat(List.of(ab1.getSenderSeq(), ab2.getSenderSeq(), ca.getReceiverSeq())).containsExactly(10L, 11L, 12L);
+        assertThat(List.of(ab1.getReceiverSeq(), ab2.getReceiverSeq())).containsExactly(20L, 21L);
+        assertThat(List.of(ca.getSenderSeq(), self.getSenderSeq(), self.getReceiverSeq())).containsExactly(30L, 31L, 31L);
+        assertThat(group.getSenderSeq()).isNull();
+    }
+
+    // ---------- HARNESS ----------
+
+    private void marks(long settled, long current) {
+        when(sequences.settled("u1")).thenReturn(settled);
+        when(sequences.current("u1")).thenReturn(current);
+    }
+
+    // u1's messages with these change-stream seqs, as findForSync reads them
+    private void stored(long... seqs) {
+        List<Message> all = new ArrayList<>();
+        for (long seq : seqs) {
+            Message m = message("u1", "u2");
+            m.setSenderSeq(seq);
+            all.add(m);
+        }
+        when(messageRepo.findForSync(eq("u1"), anyLong(), anyLong(), anyInt())).thenAnswer(inv -> {
+            long since = inv.getArgument(1);
+            long upTo = inv.getArgument(2);
+            int limit = inv.getArgument(3);
+            return all.stream()
+                    .filter(m -> m.getSenderSeq() > since && m.getSenderSeq() <= upTo)
+                    .limit(limit)
+                    .toList();
+        });
+        when(conversationRepo.findChangedSince(eq("u1"), anyLong())).thenReturn(List.of());
+    }
+
+    private static Message message(String from, String to) {
+        Message m = new Message();
+        m.setId(new ObjectId().toHexString());
+        m.setConversationId(to != null ? Conversation.directId(from, to) : new ObjectId().toHexString());
+        m.setSenderId(from);
+        m.setReceiverId(to);
+        m.setContent("hi");
+        m.setTimestamp(Instant.now());
+        m.setSeq(1L);
+        return m;
+    }
+}
@@ -0,0 +1,187 @@
+package com.arpit.chatapp.presence;
+
+import com.arpit.chatapp.follower.Follower;
+import com.arpit.chatapp.follower.FollowerRepository;
+import com.arpit.chatapp.user.UserPrivacy;
+import com.arpit.chatapp.user.UserPrivacyRepository;
+import com.arpit.chatapp.websocket.UserDelivery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Heartbeat cost and what reaches Mongo and sockets. Prints heartbeat
+ * throughput; asserts on the number of writes and frames.
+ */
+class PresenceServiceTest {
+
+    private static final int USERS = 10_000;
+    private static final int HEARTBEATS = 1_000_000;
+    private static final int THREADS = 4;
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class, withSettings().stubOnly());
+    private final UserPrivacyRepository privacyRepo = mock(UserPrivacyRepository.class);
+    private final FollowerRepository followerRepo = mock(FollowerRepository.class);
+
+    private final UserPresenceRepository presenceRepo = mock(UserPresenceRepository.class);
+    private final UserDelivery userDelivery = delivery();
+
+    private final PresenceService presence = new PresenceService(
+            mongoTemplate, presenceRepo, privacyRepo, followerRepo, userDelivery,
+            Duration.ofSeconds(30), new SimpleMeterRegistry());
+
+    @Test
+    void heartbeatsBecomeOneBulkWritePerFlush() throws Exception {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserPresence.class)).thenReturn(bulk);
+        int[] upserts = {0};
+        when(bulk.upsert(any(Query.class), any(Update.class))).thenAnswer(inv -> {
+            upserts[0]++;
+            return bulk;
+        });
+
+        for (int u = 0; u < USERS; u++) presence.connected("u" + u);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            pool.execute(() -> {
+                for (int i = offset; i < HEARTBEATS; i += THREADS) presence.touch("u" + (i % USERS));
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        presence.flush();
+        presence.flush(); // nothing new: no write
+
+        System.out.printf("users=%d heartbeats=%d threads=%d  %.0f heartbeats/s  mongo bulk writes=1 upserts=%d%n",
+                USERS, HEARTBEATS, THREADS, HEARTBEATS / seconds, upserts[0]);
+
+        verify(mongoTemplate, times(1)).bulkOps(BulkOperations.BulkMode.UNORDERED, UserPresence.class);
+        assertThat(upserts[0]).isEqualTo(USERS);
+    }
+
+    @Test
+    void pushesOneCoalescedFramePerAudienceAndHidesPrivateUsers() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserPresence.class)).thenReturn(bulk);
+        when(userDelivery.encode(any())).thenAnswer(inv -> MessageBuilder.withPayload(inv.getArgument(0)).build());
+
+        UserPrivacy hidden = new UserPrivacy("b");
+        hidden.setShowLastSeen(false);
+        when(privacyRepo.findAllById(anyIterable())).thenReturn(List.of(hidden));
+
+        Follower a = new Follower("a");
+        a.setFollowers(Set.of("f1", "f2"));
+        Follower b = new Follower("b");
+        b.setFollowers(Set.of("f1"));
+        when(followerRepo.findAllById(anyIterable())).thenReturn(List.of(a, b));
+
+        presence.watch("session-w", "w", List.of("a"));
+
+        // A flaps within one push interval; B hides last seen
+        presence.connected("a");
+        presence.disconnected("a", "session-a1");
+        presence.connected("a");
+        presence.connected("b");
+
+        presence.push();
+        presence.push(); // nothing changed since
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> recipients = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Message<?>> frame = ArgumentCaptor.forClass(Message.class);
+        verify(userDelivery, times(1)).send(recipients.capture(), eq(PresenceService.PRESENCE_QUEUE), frame.capture());
+
+        assertThat(recipients.getValue()).containsExactlyInAnyOrder("f1", "f2", "w");
+        @SuppressWarnings("unchecked")
+        List<PresenceResponse> updates = (List<PresenceResponse>) frame.getValue().getPayload();
+        assertThat(updates).singleElement().satisfies(u -> {
+            assertThat(u.userId).isEqualTo("a");
+            assertThat(u.online).isTrue();
+        });
+    }
+
+    @Test
+    void aFailedLookupKeepsTheChangesForTheNextPush() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserPresence.class)).thenReturn(bulk);
+        when(userDelivery.encode(any())).thenAnswer(inv -> MessageBuilder.withPayload(inv.getArgument(0)).build());
+        when(privacyRepo.findAllById(anyIterable()))
+                .thenThrow(new IllegalStateException("mongo down"))
+                .thenReturn(List.of());
+        Follower a = new Follower("a");
+        a.setFollowers(Set.of("f1"));
+        when(followerRepo.findAllById(anyIterable())).thenReturn(List.of(a));
+
+        presence.connected("a");
+        presence.push();
+        verify(userDelivery, never()).send(any(), any(), any());
+
+        presence.push();
+        verify(userDelivery, times(1)).send(eq(List.of("f1")), eq(PresenceService.PRESENCE_QUEUE), any());
+    }
+
+    @Test
+    void closingOneDeviceIsNotPushedWhileAnotherNodeHoldsTheUser() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserPresence.class)).thenReturn(bulk);
+        Follower a = new Follower("a");
+        a.setFollowers(Set.of("f1"));
+        when(followerRepo.findAllById(anyIterable())).thenReturn(List.of(a));
+
+        UserPresence stored = new UserPresence();
+        stored.setUserId("a");
+        stored.setNodes(Map.of("node-b", Instant.now()));
+        when(presenceRepo.findAllById(anyIterable())).thenReturn(List.of(stored));
+        when(presenceRepo.findById("a")).thenReturn(Optional.of(stored));
+
+        // The socket on this node closes; the one on node-b stays
+        presence.connected("a");
+        presence.disconnected("a", "session-a1");
+        presence.push();
+
+        verify(userDelivery, never()).send(any(), any(), any());
+        assertThat(presence.get("a").online).isTrue();
+
+        // node-b's entry goes stale (that node died): offline everywhere
+        stored.setNodes(Map.of("node-b", Instant.now().minus(Duration.ofMinutes(2))));
+        assertThat(presence.get("a").online).isFalse();
+    }
+
+    // ---------- HARNESS ----------
+
+    private static UserDelivery delivery() {
+        UserDelivery delivery = mock(UserDelivery.class);
+        when(delivery.getNodeId()).thenReturn("node-a");
+        return delivery;
+    }
+}
@@ -0,0 +1,86 @@
+package com.arpit.chatapp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.security.Principal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class StompAuthInterceptorTest {
+
+    private static final int FRAMES = 1_000;
+
+    private final JwtUtil jwtUtil = spy(new JwtUtil());
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final StompAuthInterceptor interceptor = new StompAuthInterceptor(jwtUtil, meters);
+
+    @Test
+    void verifiesTheTokenOnceAndBindsItsSubjectForTheSession() {
+        Message<?> connect = interceptor.preSend(connect("Bearer " + jwtUtil.generateToken("alice")), null);
+        Principal user = SimpMessageHeaderAccessor.getUser(connect.getHeaders());
+        assertThat(user).isEqualTo(new UserPrincipal("alice"));
+
+        // What the STOMP handler does for the rest of the session: the bound principal rides on every frame
+        for (int i = 0; i < FRAMES; i++) {
+            assertThat(interceptor.preSend(frame(StompCommand.SEND, user), null)).isNotNull();
+        }
+
+        verify(jwtUtil, times(1)).extractUserId(anyString());
+        assertThat(meters.get("chat.ws.auth.authenticated").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAConnectWithoutAValidToken() {
+        String tampered = "Bearer " + jwtUtil.generateToken("alice") + "x";
+
+        assertThatThrownBy(() -> interceptor.preSend(connect(null), null))
+                .isInstanceOf(MessageDeliveryException.class).hasMessageContaining("Missing bearer token");
+        assertThatThrownBy(() -> interceptor.preSend(connect("Basic abc"), null))
+                .isInstanceOf(MessageDeliveryException.class).hasMessageContaining("Missing bearer token");
+        assertThatThrownBy(() -> interceptor.preSend(connect(tampered), null))
+                .isInstanceOf(MessageDeliveryException.class).hasMessageContaining("Invalid token");
+        assertThat(meters.get("chat.ws.auth.rejected").functionCounter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsSendsAndSubscriptionsFromSessionsWithoutAPrincipal() {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SEND, null), null))
+                .isInstanceOf(MessageDeliveryException.class);
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, null), null))
+                .isInstanceOf(MessageDeliveryException.class);
+
+        // Leaving needs no identity
+        assertThat(interceptor.preSend(frame(StompCommand.DISCONNECT, null), null)).isNotNull();
+    }
+
+    // ---------- HARNESS ----------
+
+    private static Message<?> connect(String authorization) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId("s1");
+        if (authorization != null) accessor.setNativeHeader("Authorization", authorization);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> frame(StompCommand command, Principal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("s1");
+        accessor.setDestination("/app/chat.send");
+        accessor.setUser(user);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
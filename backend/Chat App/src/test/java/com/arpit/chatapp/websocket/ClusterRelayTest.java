@@ -0,0 +1,150 @@
+package com.arpit.chatapp.websocket;
+
+import com.arpit.chatapp.security.UserPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Several nodes in one JVM on a shared in-process bus, users spread over
+ * them. Every message is sent from a random node and must reach exactly
+ * the node holding the receiver. Prints delivery latency through the
+ * relay; asserts only on who received what.
+ */
+class ClusterRelayTest {
+
+    private static final int NODES = 4;
+    private static final int USERS = 400;
+    private static final int MESSAGES = 4_000;
+
+    // destination -> frames seen, per node
+    private final List<Map<String, AtomicInteger>> framesByNode = new ArrayList<>();
+    private final Map<Integer, Long> sentAt = new ConcurrentHashMap<>();
+    private final long[] latencyNanos = new long[MESSAGES];
+    private CountDownLatch arrived;
+
+    @Test
+    void deliversToTheNodeHoldingTheReceiverOnly() throws Exception {
+        InProcessRelay.Bus bus = new InProcessRelay.Bus();
+        arrived = new CountDownLatch(MESSAGES);
+
+        List<UserDelivery> nodes = new ArrayList<>();
+        for (int n = 0; n < NODES; n++) {
+            nodes.add(node(n, bus));
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < MESSAGES; i++) {
+            int receiver = random.nextInt(USERS);
+            UserDelivery from = nodes.get(random.nextInt(NODES));
+
+            sentAt.put(i, System.nanoTime());
+            from.send(List.of(userId(receiver)), new Ping(i, userId(receiver)));
+        }
+
+        assertThat(arrived.await(10, TimeUnit.SECONDS)).isTrue();
+        bus.shutdown();
+
+        long[] sorted = latencyNanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("nodes=%d users=%d messages=%d  p50=%.1f us  p99=%.1f us  max=%.1f us%n",
+                NODES, USERS, MESSAGES,
+                sorted[MESSAGES / 2] / 1e3, sorted[MESSAGES * 99 / 100] / 1e3, sorted[MESSAGES - 1] / 1e3);
+
+        int total = 0;
+        for (int n = 0; n < NODES; n++) {
+            for (Map.Entry<String, AtomicInteger> e : framesByNode.get(n).entrySet()) {
+                // /user/{userId}/queue/chat
+                int user = Integer.parseInt(e.getKey().split("/")[2].substring(1));
+                assertThat(user % NODES).as("frames for %s on node %d", e.getKey(), n).isEqualTo(n);
+                total += e.getValue().get();
+            }
+        }
+        assertThat(total).isEqualTo(MESSAGES);
+    }
+
+    @Test
+    void mongoTailerSeesEachNumberOnceWhateverTheInsertOrder() {
+        // One publisher's numbers, as one node sees them
+        MongoRelay.Watermark seen = new MongoRelay.Watermark(10, 3);
+
+        // Numbers taken 11, 12, 13 but inserted 12, 13, 11; then a resume re-reads from 11
+        assertThat(List.of(seen.accept(12), seen.accept(13))).containsExactly(true, true);
+        assertThat(seen.contiguous()).isEqualTo(10);
+        assertThat(seen.accept(11)).isTrue();
+        assertThat(seen.contiguous()).isEqualTo(13);
+        assertThat(List.of(seen.accept(11), seen.accept(12), seen.accept(13), seen.accept(9))).containsOnly(false);
+
+        // 14 never arrives (its insert failed): given up on once too much piles up above it
+        for (long seq = 15; seq <= 18; seq++) assertThat(seen.accept(seq)).isTrue();
+        assertThat(seen.contiguous()).isEqualTo(18);
+        assertThat(seen.accept(14)).isFalse();
+    }
+
+    // ---------- HARNESS ----------
+
+    // Node n holds the users with id % NODES == n
+    private UserDelivery node(int n, InProcessRelay.Bus bus) {
+        Map<String, AtomicInteger> frames = new ConcurrentHashMap<>();
+        framesByNode.add(frames);
+
+        MessageChannel brokerChannel = (message, timeout) -> {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            frames.computeIfAbsent(destination, d -> new AtomicInteger()).incrementAndGet();
+            record(message);
+            return true;
+        };
+        SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+        template.setMessageConverter(new JacksonJsonMessageConverter());
+
+        DefaultSimpUserRegistry users = new DefaultSimpUserRegistry();
+        for (int u = n; u < USERS; u += NODES) {
+            connect(users, "session-" + u, userId(u));
+        }
+        LocalSessions sessions = new LocalSessions(users, new SimpleMeterRegistry());
+
+        return new UserDelivery(template, sessions, new InProcessRelay(bus),
+                new CompactEncoding(true, new SimpleMeterRegistry()), "node-" + n, new SimpleMeterRegistry());
+    }
+
+    private void record(Message<?> message) {
+        String json = new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+        int seq = Integer.parseInt(json.replaceAll(".*\"seq\":(\\d+).*", "$1"));
+        latencyNanos[seq] = System.nanoTime() - sentAt.get(seq);
+        arrived.countDown();
+    }
+
+    private static void connect(DefaultSimpUserRegistry users, String sessionId, String userId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> connected = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        users.onApplicationEvent(new SessionConnectedEvent(users, connected, new UserPrincipal(userId)));
+    }
+
+    private static String userId(int u) {
+        return "u" + u;
+    }
+
+    record Ping(int seq, String to) {}
+}
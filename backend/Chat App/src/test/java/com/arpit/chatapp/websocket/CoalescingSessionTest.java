@@ -0,0 +1,150 @@
+package com.arpit.chatapp.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Frames written per message sent to a client whose link takes a fixed
+ * time per write, and eviction of one that stops reading. Prints the
+ * coalescing ratio; asserts on what arrived and on the eviction.
+ */
+class CoalescingSessionTest {
+
+    private static final int MESSAGES = 2_000;
+    private static final long WRITE_MICROS = 500;
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final OutboundBuffers buffers = new OutboundBuffers(64 * 1024, Duration.ofSeconds(2), 64 * 1024, 4, meters);
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        buffers.stop();
+    }
+
+    @Test
+    void coalescesWhatQueuesUpDuringAWriteIntoOneFrame() throws Exception {
+        List<String> written = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        WebSocketSession socket = socket(message -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(WRITE_MICROS));
+            written.add((String) message.getPayload());
+            if (written.stream().mapToLong(w -> w.chars().filter(c -> c == 0).count()).sum() == MESSAGES) {
+                done.countDown();
+            }
+        });
+
+        CoalescingSession session = buffers.wrap(socket);
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            session.sendMessage(new TextMessage(stompFrame(i)));
+            if (i % 10 == 0) LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100)); // bursty producer
+        }
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("messages=%d frames=%d (%.1f messages/frame) write=%dus  %.0f ms%n",
+                MESSAGES, written.size(), (double) MESSAGES / written.size(), WRITE_MICROS, millis);
+
+        // Everything arrived, in order, as whole frames
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < MESSAGES; i++) expected.append(stompFrame(i));
+        assertThat(String.join("", written)).isEqualTo(expected.toString());
+        assertThat(written.size()).isLessThan(MESSAGES);
+
+        // Counted once the last write returns, just after the link saw it
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meters.get("chat.ws.outbound.messages").functionCounter().count() < MESSAGES && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(meters.get("chat.ws.outbound.messages").functionCounter().count()).isEqualTo(MESSAGES);
+    }
+
+    @Test
+    void evictsAClientThatStopsReading() throws Exception {
+        CountDownLatch stuck = new CountDownLatch(1);
+        WebSocketSession socket = socket(message -> {
+            stuck.countDown();
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(3));
+        });
+
+        CoalescingSession session = buffers.wrap(socket);
+        session.sendMessage(new TextMessage(stompFrame(0)));
+        assertThat(stuck.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Byte limit: 64 KB of 1 KB frames behind a write that never finishes
+        String kilobyte = "x".repeat(1024);
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 100; i++) session.sendMessage(new TextMessage(kilobyte));
+        }).isInstanceOf(SessionLimitExceededException.class)
+                .satisfies(e -> assertThat(((SessionLimitExceededException) e).getStatus()).isEqualTo(CoalescingSession.RESYNC));
+
+        // Stays evicted
+        assertThatThrownBy(() -> session.sendMessage(new TextMessage(stompFrame(1))))
+                .isInstanceOf(SessionLimitExceededException.class);
+        assertThat(meters.get("chat.ws.outbound.evictions").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void closesAStalledClientThatGetsNoMoreSends() throws Exception {
+        CountDownLatch stuck = new CountDownLatch(1);
+        WebSocketSession socket = socket(message -> {
+            stuck.countDown();
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(3));
+        });
+
+        CoalescingSession session = buffers.wrap(socket);
+        session.sendMessage(new TextMessage(stompFrame(0)));
+        assertThat(stuck.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Inside the limit nothing happens; past it the sweep closes the socket under the write
+        assertThat(session.expire(System.currentTimeMillis())).isFalse();
+        assertThat(session.expire(System.currentTimeMillis() + 2_500)).isTrue();
+        verify(socket).close(CoalescingSession.RESYNC);
+
+        assertThatThrownBy(() -> session.sendMessage(new TextMessage(stompFrame(1))))
+                .isInstanceOf(SessionLimitExceededException.class);
+        assertThat(session.expire(System.currentTimeMillis() + 5_000)).isFalse();
+        assertThat(meters.get("chat.ws.outbound.evictions").functionCounter().count()).isEqualTo(1);
+    }
+
+    // ---------- HARNESS ----------
+
+    private interface Link {
+        void write(WebSocketMessage<?> message);
+    }
+
+    private static WebSocketSession socket(Link link) throws Exception {
+        WebSocketSession socket = mock(WebSocketSession.class);
+        when(socket.getId()).thenReturn("s1");
+        when(socket.isOpen()).thenReturn(true);
+        doAnswer(inv -> {
+            link.write(inv.getArgument(0));
+            return null;
+        }).when(socket).sendMessage(any());
+        return socket;
+    }
+
+    private static String stompFrame(int i) {
+        return "MESSAGE\ndestination:/user/queue/chat\nsubscription:0\nmessage-id:" + i + "\n\n{\"seq\":" + i + "}\u0000";
+    }
+}
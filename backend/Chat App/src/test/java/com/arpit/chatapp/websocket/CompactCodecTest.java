@@ -0,0 +1,191 @@
+package com.arpit.chatapp.websocket;
+
+import com.arpit.chatapp.chat.Conversation;
+import com.arpit.chatapp.chat.SendMessageResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round trips, negotiation, and bytes on the wire plus encode CPU per
+ * message against the Jackson path. Prints the comparison; asserts only
+ * that the compact form is smaller.
+ */
+class CompactCodecTest {
+
+    private static final int MESSAGES = 20_000;
+    private static final int ROUNDS = 20;
+
+    private final ObjectMapper json = JsonMapper.builder().build();
+
+    @Test
+    void decodesToTheSameJsonForEveryShape() {
+        String a = new ObjectId().toHexString();
+        String b = new ObjectId().toHexString();
+        List<SendMessageResponse> shapes = List.of(
+                // Direct chat: conversation id left out, ids as bytes
+                response(new ObjectId().toHexString(), Conversation.directId(a, b), a, b, "hi 👋 ünïcode",
+                        "2026-10-18T09:15:30.123456Z", 42, UUID.randomUUID().toString()),
+                // Group: receiver is the group, conversation sent
+                response(new ObjectId().toHexString(), new ObjectId().toHexString(), a, null, "", "2026-10-18T09:15:30Z", 1, null),
+                // Ids and timestamps that only round-trip as strings
+                response("ABC", "alice_bob", "alice", "bob", null, "not a time", Long.MAX_VALUE, "client-1"),
+                response(null, null, null, null, "x".repeat(500), null, 0, new ObjectId().toHexString().toUpperCase()),
+                response("m", "c", "s", "r", "t", "2026-10-18T09:15:30.100Z", 7, UUID.randomUUID().toString().toUpperCase())
+        );
+
+        for (SendMessageResponse shape : shapes) {
+            SendMessageResponse decoded = CompactCodec.decode(CompactCodec.encode(shape));
+            assertThat(json.writeValueAsString(decoded)).isEqualTo(json.writeValueAsString(shape));
+        }
+    }
+
+    @Test
+    void swapsTheBodyOnlyForSocketsThatNegotiatedOnABinaryTransport() {
+        CompactEncoding encoding = new CompactEncoding(true, new SimpleMeterRegistry());
+        encoding.preSend(connect("native", true, true), null);
+        encoding.preSend(connect("sockjs", true, false), null);
+        encoding.preSend(connect("json", false, true), null);
+
+        SendMessageResponse response = sample(new Random(1));
+        Message<?> frame = encoding.attach(response, MessageBuilder.withPayload(json.writeValueAsBytes(response)).build());
+
+        Message<?> compact = encoding.preSend(delivery(frame, "native"), null);
+        assertThat(compact.getPayload()).isEqualTo(CompactCodec.encode(response));
+        assertThat(compact.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        assertThat(compact.getHeaders()).doesNotContainKey(CompactEncoding.PAYLOAD_HEADER);
+
+        assertThat(encoding.preSend(delivery(frame, "sockjs"), null).getPayload()).isSameAs(frame.getPayload());
+        assertThat(encoding.preSend(delivery(frame, "json"), null).getPayload()).isSameAs(frame.getPayload());
+
+        // Gone with the socket
+        encoding.preSend(disconnect("native"), null);
+        assertThat(encoding.preSend(delivery(frame, "native"), null).getPayload()).isSameAs(frame.getPayload());
+    }
+
+    @Test
+    void comparesBytesAndEncodeCpuWithJackson() {
+        Random random = new Random(42);
+        List<SendMessageResponse> messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) messages.add(sample(random));
+
+        long jsonBytes = 0, compactBytes = 0;
+        for (SendMessageResponse m : messages) {
+            jsonBytes += json.writeValueAsBytes(m).length;
+            compactBytes += CompactCodec.encode(m).length;
+        }
+        long jsonDeflated = deflatedStream(messages, m -> json.writeValueAsBytes(m));
+        long compactDeflated = deflatedStream(messages, CompactCodec::encode);
+
+        long jsonNanos = Long.MAX_VALUE, compactNanos = Long.MAX_VALUE, sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (SendMessageResponse m : messages) sink += json.writeValueAsBytes(m).length;
+            jsonNanos = Math.min(jsonNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (SendMessageResponse m : messages) sink += CompactCodec.encode(m).length;
+            compactNanos = Math.min(compactNanos, System.nanoTime() - start);
+        }
+
+        System.out.printf("bytes/message      json=%.1f  compact=%.1f  (%.0f%%)%n",
+                (double) jsonBytes / MESSAGES, (double) compactBytes / MESSAGES, 100.0 * compactBytes / jsonBytes);
+        System.out.printf("deflated/message   json=%.1f  compact=%.1f  (%.0f%%)%n",
+                (double) jsonDeflated / MESSAGES, (double) compactDeflated / MESSAGES, 100.0 * compactDeflated / jsonDeflated);
+        System.out.printf("encode ns/message  json=%.0f  compact=%.0f  (sink %d)%n",
+                (double) jsonNanos / MESSAGES, (double) compactNanos / MESSAGES, sink);
+
+        assertThat(compactBytes).isLessThan(jsonBytes);
+        assertThat(compactDeflated).isLessThan(jsonDeflated);
+    }
+
+    // ---------- HARNESS ----------
+
+    private interface Encoder {
+        byte[] encode(SendMessageResponse message);
+    }
+
+    // permessage-deflate as browsers get it from Tomcat: one raw DEFLATE stream per
+    // socket (context takeover), sync-flushed per message, minus the 4-byte tail
+    private static long deflatedStream(List<SendMessageResponse> messages, Encoder encoder) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] out = new byte[64 * 1024];
+        long total = 0;
+        try {
+            for (SendMessageResponse m : messages) {
+                deflater.setInput(encoder.encode(m));
+                int n;
+                while ((n = deflater.deflate(out, 0, out.length, Deflater.SYNC_FLUSH)) == out.length) total += n;
+                total += n - 4;
+            }
+        } finally {
+            deflater.end();
+        }
+        return total;
+    }
+
+    // Chat-shaped: ObjectId ids, a UUID per send, mostly short texts
+    private static SendMessageResponse sample(Random random) {
+        String sender = new ObjectId().toHexString();
+        String receiver = new ObjectId().toHexString();
+        String[] words = {"ok", "see", "you", "tomorrow", "sounds", "good", "haha", "what", "time", "meeting", "lunch", "?"};
+        StringBuilder content = new StringBuilder();
+        int length = 1 + (int) Math.abs(random.nextGaussian() * 8);
+        for (int i = 0; i < length; i++) content.append(i > 0 ? " " : "").append(words[random.nextInt(words.length)]);
+
+        Instant timestamp = Instant.ofEpochSecond(1_790_000_000L + random.nextInt(1_000_000), random.nextInt(1_000_000) * 1_000L);
+        return response(new ObjectId().toHexString(), Conversation.directId(sender, receiver), sender, receiver,
+                content.toString(), timestamp.toString(), random.nextInt(100_000), UUID.randomUUID().toString());
+    }
+
+    private static SendMessageResponse response(String messageId, String conversationId, String senderId, String receiverId,
+                                                String content, String timestamp, long seq, String clientMessageId) {
+        return new SendMessageResponse(messageId, conversationId, senderId, receiverId, content, timestamp, seq, clientMessageId);
+    }
+
+    private static Message<?> connect(String sessionId, boolean asks, boolean binaryTransport) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        if (asks) accessor.setNativeHeader(CompactEncoding.HEADER, CompactEncoding.COMPACT);
+        Map<String, Object> attributes = new HashMap<>();
+        if (binaryTransport) attributes.put(CompactEncoding.BINARY_TRANSPORT, Boolean.TRUE);
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> disconnect(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    // What the broker hands the outbound channel for one subscriber
+    private static Message<?> delivery(Message<?> frame, String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/user/queue/chat");
+        accessor.copyHeadersIfAbsent(frame.getHeaders());
+        return MessageBuilder.createMessage(frame.getPayload(), accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,102 @@
+package com.arpit.chatapp.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lookup cost of per-session user queues as a node's session count grows,
+ * indexed vs the broker's default registry. Prints a report; asserts only
+ * on what each lookup returns.
+ */
+class IndexedSubscriptionRegistryTest {
+
+    private static final int[] SESSION_COUNTS = {100, 1_000, 10_000};
+    private static final int LOOKUPS = 2_000;
+
+    @Test
+    void findsUserQueueSubscriptionsWithoutScanning() {
+        System.out.printf("%10s | %18s %18s%n", "sessions", "default us/lookup", "indexed us/lookup");
+
+        for (int sessions : SESSION_COUNTS) {
+            double scan = lookupMicros(new DefaultSubscriptionRegistry(), sessions);
+            double indexed = lookupMicros(new IndexedSubscriptionRegistry(), sessions);
+            System.out.printf("%10d | %18.2f %18.2f%n", sessions, scan, indexed);
+        }
+    }
+
+    @Test
+    void forgetsUnsubscribesAndDisconnects() {
+        IndexedSubscriptionRegistry registry = new IndexedSubscriptionRegistry();
+        registry.registerSubscription(subscribe("s1", "0", "/queue/chat-users1"));
+        registry.registerSubscription(subscribe("s1", "1", "/topic/messages"));
+        registry.registerSubscription(subscribe("s2", "0", "/queue/chat-users2"));
+
+        assertThat(registry.findSubscriptions(send("/queue/chat-users1"))).isEqualTo(Map.of("s1", List.of("0")));
+        assertThat(registry.findSubscriptions(send("/topic/messages"))).isEqualTo(Map.of("s1", List.of("1")));
+
+        registry.unregisterSubscription(unsubscribe("s2", "0"));
+        assertThat(registry.findSubscriptions(send("/queue/chat-users2"))).isEmpty();
+
+        registry.unregisterAllSubscriptions("s1");
+        assertThat(registry.findSubscriptions(send("/queue/chat-users1"))).isEmpty();
+        assertThat(registry.findSubscriptions(send("/topic/messages"))).isEmpty();
+    }
+
+    // ---------- HARNESS ----------
+
+    // One user queue per session, like /user/queue/chat resolves to; random targets past the cache
+    private double lookupMicros(SubscriptionRegistry registry, int sessions) {
+        for (int i = 0; i < sessions; i++) {
+            registry.registerSubscription(subscribe("s" + i, "0", "/queue/chat-users" + i));
+        }
+
+        Message<?>[] sends = new Message<?>[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            sends[i] = send("/queue/chat-users" + (i * 7919 % sessions));
+        }
+        for (Message<?> m : sends) registry.findSubscriptions(m); // warm up
+
+        List<MultiValueMap<String, String>> found = new ArrayList<>(LOOKUPS);
+        long start = System.nanoTime();
+        for (Message<?> m : sends) found.add(registry.findSubscriptions(m));
+        double micros = (System.nanoTime() - start) / 1e3 / LOOKUPS;
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertThat(found.get(i)).containsOnlyKeys("s" + (i * 7919 % sessions));
+        }
+        return micros;
+    }
+
+    private static Message<?> subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> unsubscribe(String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<?> send(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,140 @@
+package com.arpit.chatapp.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time from a SEND frame reaching the inbound pool to its RECEIPT, for
+ * senders whose writes are fast, while a few senders hit a Mongo latency
+ * spike. Sync mode runs writes on the inbound pool; async hands them to
+ * per-sender queues. Prints a report; asserts only that every send was
+ * acknowledged once.
+ */
+class SendPipelineTest {
+
+    private static final int INBOUND_THREADS = 4;
+    private static final int SENDERS = 100;
+    private static final int SLOW_SENDERS = 5;
+    private static final int SENDS_PER_SENDER = 10;
+    private static final long WRITE_MICROS = 2_000;
+    private static final long SPIKE_MICROS = 200_000;
+
+    @Test
+    void slowWritesDoNotStallOtherSessions() throws Exception {
+        System.out.printf("%6s | %18s %18s | %12s%n", "mode", "fast p50 ms", "fast p99 ms", "total ms");
+        for (String mode : List.of("sync", "async")) {
+            Result r = run(mode);
+            System.out.printf("%6s | %18.1f %18.1f | %12.0f%n", mode, r.p50, r.p99, r.totalMillis);
+        }
+    }
+
+    @Test
+    void reportsFailedSendsToTheSendingSession() throws Exception {
+        List<Message<?>> toBroker = new CopyOnWriteArrayList<>();
+        CountDownLatch reported = new CountDownLatch(1);
+        MessageChannel broker = (message, timeout) -> {
+            toBroker.add(message);
+            reported.countDown();
+            return true;
+        };
+
+        SendPipeline pipeline = pipeline("async", (m, t) -> true, broker, inboundPool());
+        pipeline.submit("u1", frame("s1", "r-1"), "c-1", () -> {
+            throw new IllegalStateException("write failed");
+        });
+
+        assertThat(reported.await(5, TimeUnit.SECONDS)).isTrue();
+        pipeline.stop();
+
+        Message<?> failure = toBroker.get(0);
+        assertThat(SimpMessageHeaderAccessor.getDestination(failure.getHeaders())).isEqualTo("/user/s1/queue/errors");
+        assertThat(new String((byte[]) failure.getPayload(), StandardCharsets.UTF_8))
+                .contains("\"receiptId\":\"r-1\"", "\"clientMessageId\":\"c-1\"", "write failed");
+    }
+
+    // ---------- HARNESS ----------
+
+    private Result run(String mode) throws Exception {
+        int total = SENDERS * SENDS_PER_SENDER;
+        Map<String, Long> handedAt = new ConcurrentHashMap<>();
+        Map<String, Long> receiptAt = new ConcurrentHashMap<>();
+        CountDownLatch acknowledged = new CountDownLatch(total);
+
+        MessageChannel outbound = (message, timeout) -> {
+            receiptAt.merge(StompHeaderAccessor.wrap(message).getReceiptId(), System.nanoTime(), (a, b) -> -1L);
+            acknowledged.countDown();
+            return true;
+        };
+
+        ThreadPoolTaskExecutor inbound = inboundPool();
+        SendPipeline pipeline = pipeline(mode, outbound, (m, t) -> true, inbound);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SENDS_PER_SENDER; i++) {
+            for (int s = 0; s < SENDERS; s++) {
+                String sender = "u" + s;
+                String receipt = sender + "-" + i;
+                long writeMicros = s < SLOW_SENDERS ? SPIKE_MICROS : WRITE_MICROS;
+
+                handedAt.put(receipt, System.nanoTime());
+                inbound.execute(() -> pipeline.submit(sender, frame("session-" + sender, receipt), receipt,
+                        () -> LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(writeMicros))));
+            }
+        }
+
+        assertThat(acknowledged.await(60, TimeUnit.SECONDS)).isTrue();
+        double totalMillis = (System.nanoTime() - start) / 1e6;
+        pipeline.stop();
+        inbound.shutdown();
+
+        assertThat(receiptAt).hasSize(total).doesNotContainValue(-1L);
+
+        double[] fast = handedAt.entrySet().stream()
+                .filter(e -> Integer.parseInt(e.getKey().substring(1, e.getKey().indexOf('-'))) >= SLOW_SENDERS)
+                .mapToDouble(e -> (receiptAt.get(e.getKey()) - e.getValue()) / 1e6)
+                .sorted()
+                .toArray();
+        return new Result(fast[fast.length / 2], fast[fast.length * 99 / 100], totalMillis);
+    }
+
+    private SendPipeline pipeline(String mode, MessageChannel outbound, MessageChannel broker, ThreadPoolTaskExecutor inbound) {
+        SimpMessagingTemplate template = new SimpMessagingTemplate(broker);
+        template.setMessageConverter(new JacksonJsonMessageConverter());
+        return new SendPipeline(outbound, inbound, template, mode, 64, 10_000, new SimpleMeterRegistry());
+    }
+
+    private ThreadPoolTaskExecutor inboundPool() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(INBOUND_THREADS);
+        executor.setMaxPoolSize(INBOUND_THREADS);
+        executor.initialize();
+        return executor;
+    }
+
+    private static SimpMessageHeaderAccessor frame(String sessionId, String receipt) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader("receipt", receipt);
+        return accessor;
+    }
+
+    private record Result(double p50, double p99, double totalMillis) {}
+}
@@ -0,0 +1,85 @@
+package com.arpit.chatapp.websocket;
+
+import com.arpit.chatapp.security.UserPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TypingRelayTest {
+
+    private static final int TYPISTS = 100;
+    private static final int SIGNALS_EACH = 1_000;
+
+    private final UserDelivery userDelivery = mock(UserDelivery.class);
+    private final TypingRelay relay = new TypingRelay(
+            userDelivery, JsonMapper.builder().build(),
+            Duration.ofMillis(500), Duration.ofSeconds(3), 50_000, new SimpleMeterRegistry());
+
+    @Test
+    void consumesTypingFramesAndPassesEverythingElse() {
+        Message<?> typing = frame(TypingRelay.DESTINATION, "{\"receiverId\":\"b\",\"typing\":true}");
+        Message<?> chat = frame("/app/chat.send", "{}");
+
+        assertThat(relay.preSend(typing, null)).isNull();
+        assertThat(relay.preSend(chat, null)).isSameAs(chat);
+    }
+
+    @Test
+    void coalescesABurstIntoOneDeliveryPerKeyWithTheLatestState() {
+        when(userDelivery.encode(any())).thenAnswer(inv -> MessageBuilder.withPayload(inv.getArgument(0)).build());
+
+        for (int i = 0; i < SIGNALS_EACH; i++) {
+            for (int u = 0; u < TYPISTS; u++) {
+                relay.offer("u" + u, "receiver", i < SIGNALS_EACH - 1, 1_000);
+            }
+        }
+        relay.flush(1_200);
+        relay.flush(1_700); // nothing new
+
+        // One batch per tick; the second tick has nothing to deliver
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UserDelivery.Delivery>> batches = ArgumentCaptor.forClass(List.class);
+        verify(userDelivery, times(2)).sendAll(eq(TypingRelay.TYPING_QUEUE), batches.capture());
+        assertThat(batches.getAllValues().get(1)).isEmpty();
+        assertThat(batches.getAllValues().get(0)).hasSize(TYPISTS).allSatisfy(d -> {
+            assertThat(d.userIds()).containsExactly("receiver");
+            assertThat(((TypingRelay.TypingSignal) d.frame().getPayload()).typing()).isFalse();
+        });
+
+        System.out.printf("typists=%d signals=%d  deliveries=%d%n", TYPISTS, TYPISTS * SIGNALS_EACH, TYPISTS);
+    }
+
+    @Test
+    void dropsSignalsThatWentStaleBeforeDelivery() {
+        relay.offer("a", "b", true, 1_000);
+        relay.flush(5_000);
+
+        verify(userDelivery).sendAll(TypingRelay.TYPING_QUEUE, List.of());
+    }
+
+    // ---------- HARNESS ----------
+
+    private static Message<?> frame(String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setUser(new UserPrincipal("a"));
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
@@ -225,12 +225,8 @@ export default function useMessageLogic() {
     const fetchMessages = async (friendUserId) => {
         try {
             setMessagesLoading(true);
-            const myUserId = localStorage.getItem("userId");
-            const res = await api.get(
-                `/users/me/messages/${friendUserId}`,
-                { params: { myUserId } }
-            );
-            setMessages(res.data);
+            const res = await api.get(`/users/me/messages/${friendUserId}`);
+            setMessages(res.data.messages);
         } catch (err) {
             console.error("Failed to fetch messages", err);
         } finally {
@@ -0,0 +1,95 @@
+// Reader for the server's compact chat message (CompactCodec.java): same
+// object as the JSON form, from a fraction of the bytes.
+// version flags messageId [conversationId] senderId receiverId content timestamp seq clientMessageId
+
+const VERSION = 1;
+const DIRECT = 1; // conversationId = directId(senderId, receiverId), left out
+const INSTANT = 2; // timestamp as epoch seconds + nanos
+
+const ID_NULL = 0;
+const ID_OBJECT_ID = 1;
+const ID_UUID = 2;
+const ID_STRING = 3;
+
+const utf8 = new TextDecoder();
+
+export const decodeCompact = (bytes) => {
+  let pos = 0;
+
+  const byte = () => {
+    if (pos >= bytes.length) throw new Error("Truncated compact message");
+    return bytes[pos++];
+  };
+
+  // Multiplication, not shifts: values can pass 32 bits
+  const varint = () => {
+    let value = 0;
+    let scale = 1;
+    for (;;) {
+      const b = byte();
+      value += (b & 0x7f) * scale;
+      if ((b & 0x80) === 0) return value;
+      scale *= 128;
+    }
+  };
+
+  const text = (length) => {
+    if (pos + length > bytes.length) throw new Error("Truncated compact message");
+    const value = utf8.decode(bytes.subarray(pos, pos + length));
+    pos += length;
+    return value;
+  };
+
+  const hex = (length) => {
+    let value = "";
+    for (let i = 0; i < length; i++) value += byte().toString(16).padStart(2, "0");
+    return value;
+  };
+
+  const string = () => {
+    const length = varint();
+    return length === 0 ? null : text(length - 1);
+  };
+
+  const id = () => {
+    const tag = varint();
+    if (tag === ID_NULL) return null;
+    if (tag === ID_OBJECT_ID) return hex(12);
+    if (tag === ID_UUID) {
+      const h = hex(16);
+      return `${h.slice(0, 8)}-${h.slice(8, 12)}-${h.slice(12, 16)}-${h.slice(16, 20)}-${h.slice(20)}`;
+    }
+    return text(tag - ID_STRING);
+  };
+
+  // As Java's Instant.toString: fraction in groups of 3 digits, none if zero
+  const instant = (seconds, nanos) => {
+    const base = new Date(seconds * 1000).toISOString().slice(0, 19);
+    if (nanos === 0) return `${base}Z`;
+    const digits = String(nanos).padStart(9, "0");
+    if (nanos % 1000000 === 0) return `${base}.${digits.slice(0, 3)}Z`;
+    if (nanos % 1000 === 0) return `${base}.${digits.slice(0, 6)}Z`;
+    return `${base}.${digits}Z`;
+  };
+
+  const version = byte();
+  if (version !== VERSION) throw new Error(`Unknown compact version ${version}`);
+  const flags = byte();
+
+  const messageId = id();
+  let conversationId = flags & DIRECT ? null : id();
+  const senderId = id();
+  const receiverId = id();
+  const content = string();
+  const timestamp = flags & INSTANT ? instant(varint(), varint()) : string();
+  const seq = varint();
+  const clientMessageId = id();
+
+  if (flags & DIRECT) {
+    conversationId = senderId <= receiverId
+      ? `${senderId}_${receiverId}`
+      : `${receiverId}_${senderId}`;
+  }
+
+  return { messageId, conversationId, senderId, receiverId, content, timestamp, seq, clientMessageId };
+};
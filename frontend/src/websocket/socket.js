@@ -1,29 +1,51 @@
 import SockJS from "sockjs-client";
 import { Client } from "@stomp/stompjs";
+import { decodeCompact } from "./compact";
 
 let stompClient = null;
+let needsResync = false;
 
-export const connectSocket = (userId, onMessage) => {
+// Opt-in: plain WebSocket (no SockJS fallback) with binary chat frames
+const COMPACT = import.meta.env.VITE_WS_COMPACT === "true";
+
+// onResync: called after reconnecting from a "resync" close (server dropped
+// frames for this socket); refetch whatever is on screen
+export const connectSocket = (userId, onMessage, onResync) => {
   if (stompClient?.connected) return;
 
   const token = localStorage.getItem("token");
 
   stompClient = new Client({
     webSocketFactory: () =>
-      new SockJS(`${import.meta.env.VITE_WS_BASE_URL}/ws`),
+      COMPACT
+        ? new WebSocket(`${import.meta.env.VITE_WS_BASE_URL.replace(/^http/, "ws")}/ws-native`)
+        : new SockJS(`${import.meta.env.VITE_WS_BASE_URL}/ws`),
 
     connectHeaders: {
       Authorization: `Bearer ${token}`,
+      ...(COMPACT && { "chat-encoding": "compact" }),
     },
 
     reconnectDelay: 5000,
     debug: () => {},
 
+    onWebSocketClose: (evt) => {
+      if (evt?.reason === "resync") needsResync = true;
+    },
+
     onConnect: () => {
       console.log("✅ WS connected as", userId);
 
-      stompClient.subscribe(`/topic/chat/${userId}`, (frame) => {
-        onMessage(JSON.parse(frame.body));
+      if (needsResync) {
+        needsResync = false;
+        onResync?.();
+      }
+
+      // Resolved server-side to this user's sessions (from the token above)
+      // The server says which form each frame is in: compact only if it agreed
+      stompClient.subscribe("/user/queue/chat", (frame) => {
+        const binary = frame.headers["content-type"]?.startsWith("application/octet-stream");
+        onMessage(binary ? decodeCompact(frame.binaryBody) : JSON.parse(frame.body));
       });
     },
   });
@@ -31,7 +53,7 @@ export const connectSocket = (userId, onMessage) => {
   stompClient.activate();
 };
 
-export const sendSocketMessage = ({ senderId, receiverId, content }) => {
+export const sendSocketMessage = ({ receiverId, content }) => {
   if (!stompClient || !stompClient.connected) {
     console.warn("⚠️ WS not connected");
     return;
@@ -42,8 +64,8 @@ export const sendSocketMessage = ({ senderId, receiverId, content }) => {
     return;
   }
 
+  // No senderId: the server takes it from the token sent on CONNECT
   const payload = {
-    senderId,
     receiverId,
     content: content.trim(),
   };
@@ -56,6 +78,16 @@ export const sendSocketMessage = ({ senderId, receiverId, content }) => {
   });
 };
 
+// Ephemeral: never stored, coalesced server-side; safe to call on every keystroke
+export const sendTypingSignal = ({ receiverId, typing }) => {
+  if (!stompClient?.connected || !receiverId) return;
+
+  stompClient.publish({
+    destination: "/app/typing",
+    body: JSON.stringify({ receiverId, typing }),
+  });
+};
+
 export const disconnectSocket = () => {
   if (stompClient) {
     stompClient.deactivate();